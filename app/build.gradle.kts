@@ -21,3 +21,12 @@ java {
 application {
     mainClass = "db_lab.App"
 }
+
+tasks.test {
+    // The most rows a query is allowed to go through with a full scan or a
+    // filesort, see `QueryPlansTest`: `./gradlew test -Ddb_lab.explainMaxRows=...`
+    systemProperty("db_lab.explainMaxRows", System.getProperty("db_lab.explainMaxRows", "1000"))
+    // See `CatalogServer`: without it `CatalogServerTest` waits for delayed
+    // acknowledgements.
+    systemProperty("sun.net.httpserver.nodelay", "true")
+}
@@ -1,28 +1,90 @@
 package db_lab;
 
+import db_lab.data.BulkImport;
 import db_lab.data.DAOException;
 import db_lab.data.DAOUtils;
+import db_lab.data.Migrations;
 import db_lab.model.Model;
+import db_lab.server.CatalogServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
 
 public final class App {
 
-    public static void main(String[] args) throws SQLException {
+    private static final int DEFAULT_PORT = 8080;
+    private static final Duration RELOAD_EVERY = Duration.ofSeconds(30);
+
+    public static void main(String[] args) throws SQLException, IOException {
+        // Supplier catalogs are imported with `app import catalog.csv`, see
+        // `BulkImport` for the format of the file.
+        //
+        if (args.length == 2 && args[0].equals("import")) {
+            importCatalog(Path.of(args[1]));
+            return;
+        }
+        // The catalog is served to the web storefront with `app serve [port]`,
+        // see `CatalogServer` for its endpoints.
+        //
+        if (args.length >= 1 && args[0].equals("serve")) {
+            serve(args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            return;
+        }
         // If you want to get a feel of the application before having implemented
         // all methods, you can pass the controller a mocked model instead:
         //
         // var model = Model.mock();
-        var connection = DAOUtils.localMySQLConnection("tessiland", "root", "");
-        var model = Model.fromConnection(connection);
-        var view = new View(() -> {
-            // We want to make sure we close the connection when we're done
-            // with our application.
-            try {
-                connection.close();
-            } catch (Exception e) {}
+        var dataSource = DAOUtils.localMySQLDataSource("tessiland", "root", "");
+        Migrations.apply(dataSource);
+        // The previews are also saved in the user's home: the next time the
+        // app starts they're shown immediately, while the model checks with
+        // the database for any product that changed in the meantime.
+        var snapshot = Path.of(System.getProperty("user.home"), ".tessiland", "previews.snapshot");
+        var model = Model.fromDataSource(dataSource, snapshot);
+        var view = new SwingView(() -> {
+            // We want to make sure we close all the pool's connections when
+            // we're done with our application.
+            dataSource.close();
         });
         var controller = new Controller(model, view);
         view.setController(controller);
         controller.userRequestedInitialPage();
     }
+
+    private static void serve(int port) throws IOException {
+        // Read once by the JDK's HTTP server, so it must be set before it
+        // starts, see `CatalogServer`.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        var dataSource = DAOUtils.localMySQLDataSource("tessiland", "root", "");
+        Migrations.apply(dataSource);
+        var server = CatalogServer.start(Model.fromDataSource(dataSource), new InetSocketAddress(port), RELOAD_EVERY);
+        System.out.println("Serving the catalog on port " + server.port());
+        Runtime
+            .getRuntime()
+            .addShutdownHook(
+                new Thread(() -> {
+                    server.close();
+                    dataSource.close();
+                })
+            );
+    }
+
+    private static void importCatalog(Path csv) throws IOException {
+        try (
+            var connection = DAOUtils.localMySQLConnection("tessiland", "root", "");
+            var reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+        ) {
+            Migrations.apply(connection);
+            var report = BulkImport.fromCsv(connection, reader);
+            System.out.println(report);
+        } catch (SQLException e) {
+            throw new DAOException(e);
+        }
+    }
 }
@@ -1,9 +1,18 @@
 package db_lab;
 
-import db_lab.data.DAOException;
 import db_lab.data.ProductPreview;
+import db_lab.model.AsyncModel;
 import db_lab.model.Model;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import javax.swing.SwingUtilities;
 
 // The controller provides a holistic description of how the outside world can
 // interact with our application: each public method is written as
@@ -29,54 +38,207 @@ public final class Controller {
     //    └────── of user's ────┘
     //            actions
     //
-    private final Model model;
+    private final AsyncModel model;
     private final View view;
+    // Runs the updates to the view: all of them (and all the calls to the
+    // controller's public methods) happen on the same thread, for Swing its
+    // event dispatch thread.
+    private final Executor viewThread;
 
+    // The model is asked for data on a separate thread, so by the time an
+    // answer arrives the user may have already moved on (e.g. they clicked on
+    // a preview and, while it was still loading, clicked on another one).
+    // Each interaction gets a new number and an answer is only shown if it
+    // belongs to the latest interaction: stale answers are just discarded.
+    private final AtomicLong latestInteraction;
+    private final AtomicReference<CompletableFuture<?>> pendingRequest;
+
+    // Resting the pointer on a preview for `HOVER_INTENT_MILLIS` (instead of
+    // just sweeping it across the list) is taken as a hint that the user is
+    // about to click on it, so its product is prefetched. If the user then
+    // stays still for `IDLE_MILLIS` the previews around it are prefetched
+    // too. The delayed prefetches run on the view thread, just like the
+    // hover events, so the hovered preview needs no synchronization: each
+    // hover gets a new number and a delayed prefetch only goes ahead if no
+    // other hover happened in the meantime.
+    private static final int HOVER_INTENT_MILLIS = 150;
+    private static final int IDLE_MILLIS = 1_000;
+    private final Executor afterHoverIntent;
+    private final Executor afterIdle;
+    private long latestHover;
+
+    // A controller for a `SwingView`, updating it on Swing's event dispatch
+    // thread.
+    //
     public Controller(Model model, View view) {
+        this(model, view, Controller::onEventDispatchThread);
+    }
+
+    public Controller(Model model, View view, Executor viewThread) {
         Objects.requireNonNull(model, "Controller created with null model");
         Objects.requireNonNull(view, "Controller created with null view");
+        Objects.requireNonNull(viewThread, "Controller created with null view thread");
         this.view = view;
-        this.model = model;
+        this.viewThread = viewThread;
+        this.model = new AsyncModel(model);
+        this.latestInteraction = new AtomicLong(0);
+        this.pendingRequest = new AtomicReference<>();
+        this.afterHoverIntent = CompletableFuture.delayedExecutor(HOVER_INTENT_MILLIS, TimeUnit.MILLISECONDS, viewThread);
+        this.afterIdle = CompletableFuture.delayedExecutor(IDLE_MILLIS, TimeUnit.MILLISECONDS, viewThread);
+        this.latestHover = 0;
     }
 
     public void userRequestedInitialPage() {
-        this.loadInitialPage();
+        if (!this.model.loadedPreviews()) {
+            this.loadInitialPage();
+            return;
+        }
+        // The model already has some previews (e.g. from a snapshot saved by a
+        // previous run): we show them right away, and only update the page if
+        // bringing them up to date with the database changes anything.
+        var shown = this.model.previews();
+        this.onViewThread(() -> this.view.previewPage(shown, this.model.hasMorePreviews()));
+        this.whenLatest(this.model.loadPreviews(), (previews, error) -> {
+            if (error != null) {
+                // The user can still browse the previews already shown.
+                error.printStackTrace();
+            } else if (previews != shown) {
+                this.view.previewPage(previews, this.model.hasMorePreviews());
+            }
+        });
     }
 
     public void userClickedReloadPreviews() {
         this.loadInitialPage();
     }
 
+    public void userClickedLoadMorePreviews() {
+        this.whenLatest(this.model.loadMorePreviews(), (previews, error) -> {
+            if (error == null) {
+                this.view.morePreviews(previews, this.model.hasMorePreviews());
+            } else {
+                error.printStackTrace();
+                this.view.failedToLoadPreviews();
+            }
+        });
+    }
+
     public void userClickedPreview(ProductPreview productPreview) {
-        try {
-            this.view.loadingProduct();
-            var product = this.model.find(productPreview.code);
-            if (product.isPresent()) {
+        this.userStoppedHovering();
+        this.onViewThread(() -> this.view.loadingProduct());
+        this.whenLatest(this.model.find(productPreview.code), (product, error) -> {
+            if (error == null && product.isPresent()) {
                 this.view.productPage(product.get());
             } else {
                 this.view.failedToLoadProduct(productPreview);
             }
-        } catch (DAOException e) {
-            this.view.failedToLoadProduct(productPreview);
-        }
+        });
+    }
+
+    // The neighbours are the previews shown right next to the hovered one.
+    //
+    public void userHoveredPreview(ProductPreview productPreview, List<ProductPreview> neighbours) {
+        var hover = ++this.latestHover;
+        var neighbourCodes = neighbours.stream().mapToInt(preview -> preview.code).toArray();
+        this.afterHoverIntent.execute(() -> {
+            if (hover == this.latestHover) {
+                this.model.prefetch(productPreview.code);
+            }
+        });
+        this.afterIdle.execute(() -> {
+            if (hover == this.latestHover) {
+                for (var code : neighbourCodes) {
+                    this.model.prefetch(code);
+                }
+            }
+        });
+    }
+
+    public void userStoppedHovering() {
+        this.latestHover++;
     }
 
     public void userClickedBack() {
         if (this.model.loadedPreviews()) {
-            this.view.previewPage(this.model.previews());
+            // Going back must also discard any product that's still loading,
+            // otherwise it would pop up over the preview page once ready.
+            this.newInteraction(null);
+            this.onViewThread(() -> this.view.previewPage(this.model.previews(), this.model.hasMorePreviews()));
         } else {
             this.loadInitialPage();
         }
     }
 
+    public void userTypedSearch(String query) {
+        if (query.isBlank()) {
+            // Nothing to look for: back to the previews loaded so far.
+            this.newInteraction(null);
+            this.onViewThread(() -> this.view.searchCleared(this.model.previews(), this.model.hasMorePreviews()));
+            return;
+        }
+        // Each keystroke starts a new search, so the results of a search
+        // still running for an older query are discarded.
+        this.whenLatest(this.model.search(query), (results, error) -> {
+            var cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause == null) {
+                this.view.searchResults(results);
+            } else if (cause instanceof IllegalArgumentException) {
+                this.view.invalidSearch(cause.getMessage());
+            } else {
+                cause.printStackTrace();
+                this.view.failedToSearch();
+            }
+        });
+    }
+
     void loadInitialPage() {
-        try {
-            this.view.loadingPreviews();
-            var previews = this.model.loadPreviews();
-            this.view.previewPage(previews);
-        } catch (DAOException e) {
-            e.printStackTrace();
-            this.view.failedToLoadPreviews();
+        this.onViewThread(() -> this.view.loadingPreviews());
+        this.whenLatest(this.model.loadPreviews(), (previews, error) -> {
+            if (error == null) {
+                this.view.previewPage(previews, this.model.hasMorePreviews());
+            } else {
+                error.printStackTrace();
+                this.view.failedToLoadPreviews();
+            }
+        });
+    }
+
+    // Starts a new interaction, cancelling the request of the previous one (if
+    // it's still running), and returns its number.
+    //
+    private long newInteraction(CompletableFuture<?> request) {
+        var interaction = this.latestInteraction.incrementAndGet();
+        var previous = this.pendingRequest.getAndSet(request);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        return interaction;
+    }
+
+    // Once the request is done, updates the view on the view thread; unless
+    // another interaction started in the meantime, in that case the result is
+    // thrown away.
+    //
+    private <T> void whenLatest(CompletableFuture<T> request, BiConsumer<T, Throwable> update) {
+        var interaction = this.newInteraction(request);
+        request.whenComplete((result, error) ->
+            this.viewThread.execute(() -> {
+                if (interaction == this.latestInteraction.get()) {
+                    update.accept(result, error);
+                }
+            })
+        );
+    }
+
+    private void onViewThread(Runnable action) {
+        this.viewThread.execute(action);
+    }
+
+    private static void onEventDispatchThread(Runnable action) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            action.run();
+        } else {
+            SwingUtilities.invokeLater(action);
         }
     }
 }
@@ -0,0 +1,138 @@
+package db_lab;
+
+import db_lab.data.Printer;
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// A view without a window: each call it gets from the controller is turned
+// into a `Call` and either recorded (to look at them later, e.g. in a test) or
+// handed to a listener as soon as it arrives (e.g. to a load generator timing
+// how long each interaction took).
+//
+public final class HeadlessView implements View {
+
+    // A call to one of the `View`'s methods, with its arguments.
+    //
+    public static final class Call {
+
+        public final String name;
+        public final List<Object> arguments;
+
+        public Call(String name, List<Object> arguments) {
+            this.name = name;
+            this.arguments = List.copyOf(arguments);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            } else if (other == null) {
+                return false;
+            } else if (other instanceof Call) {
+                var c = (Call) other;
+                return c.name.equals(this.name) && c.arguments.equals(this.arguments);
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.name, this.arguments);
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "Call",
+                List.of(Printer.field("name", this.name), Printer.field("arguments", this.arguments))
+            );
+        }
+    }
+
+    private final Consumer<Call> listener;
+    private final List<Call> calls;
+
+    // A view that records all the calls it gets, see `calls`.
+    //
+    public HeadlessView() {
+        this.calls = Collections.synchronizedList(new ArrayList<>());
+        this.listener = this.calls::add;
+    }
+
+    // A view that hands each call to the given listener, without recording
+    // it.
+    //
+    public HeadlessView(Consumer<Call> listener) {
+        Objects.requireNonNull(listener, "Headless view created with null listener");
+        this.calls = List.of();
+        this.listener = listener;
+    }
+
+    public List<Call> calls() {
+        synchronized (this.calls) {
+            return List.copyOf(this.calls);
+        }
+    }
+
+    @Override
+    public void loadingPreviews() {
+        this.listener.accept(new Call("loadingPreviews", List.of()));
+    }
+
+    @Override
+    public void previewPage(List<ProductPreview> productPreviews, boolean hasMore) {
+        this.listener.accept(new Call("previewPage", List.of(productPreviews, hasMore)));
+    }
+
+    @Override
+    public void morePreviews(List<ProductPreview> productPreviews, boolean hasMore) {
+        this.listener.accept(new Call("morePreviews", List.of(productPreviews, hasMore)));
+    }
+
+    @Override
+    public void failedToLoadPreviews() {
+        this.listener.accept(new Call("failedToLoadPreviews", List.of()));
+    }
+
+    @Override
+    public void loadingProduct() {
+        this.listener.accept(new Call("loadingProduct", List.of()));
+    }
+
+    @Override
+    public void productPage(Product product) {
+        this.listener.accept(new Call("productPage", List.of(product)));
+    }
+
+    @Override
+    public void failedToLoadProduct(ProductPreview productPreview) {
+        this.listener.accept(new Call("failedToLoadProduct", List.of(productPreview)));
+    }
+
+    @Override
+    public void searchResults(List<ProductPreview> results) {
+        this.listener.accept(new Call("searchResults", List.of(results)));
+    }
+
+    @Override
+    public void searchCleared(List<ProductPreview> productPreviews, boolean hasMore) {
+        this.listener.accept(new Call("searchCleared", List.of(productPreviews, hasMore)));
+    }
+
+    @Override
+    public void invalidSearch(String reason) {
+        this.listener.accept(new Call("invalidSearch", List.of(reason)));
+    }
+
+    @Override
+    public void failedToSearch() {
+        this.listener.accept(new Call("failedToSearch", List.of()));
+    }
+}
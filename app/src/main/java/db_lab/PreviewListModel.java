@@ -0,0 +1,112 @@
+package db_lab;
+
+import db_lab.data.ProductPreview;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+
+// The previews shown by the preview page's list.
+//
+// A `JList` only asks its model for the rows that are actually visible, so
+// even with tens of thousands of previews we never build more components than
+// the ones that fit in the window.
+// The text of each row is computed just once, the first time the row is
+// painted, and not every time: a search may fill the list with thousands of
+// results but only the few that are looked at need a label.
+//
+// Swing models are serializable, but this one is never serialized: it only
+// lives as long as the window showing it.
+//
+@SuppressWarnings("serial")
+final class PreviewListModel extends AbstractListModel<ProductPreview> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<ProductPreview> previews;
+    private final List<String> labels;
+
+    PreviewListModel() {
+        this.previews = new ArrayList<>();
+        this.labels = new ArrayList<>();
+    }
+
+    void addAll(List<ProductPreview> productPreviews) {
+        if (productPreviews.isEmpty()) {
+            return;
+        }
+        var first = this.previews.size();
+        this.previews.addAll(productPreviews);
+        this.labels.addAll(Collections.nCopies(productPreviews.size(), null));
+        this.fireIntervalAdded(this, first, this.previews.size() - 1);
+    }
+
+    // Replaces all the previews in the list with the given ones.
+    //
+    void replaceAll(List<ProductPreview> productPreviews) {
+        if (!this.previews.isEmpty()) {
+            var last = this.previews.size() - 1;
+            this.previews.clear();
+            this.labels.clear();
+            this.fireIntervalRemoved(this, 0, last);
+        }
+        this.addAll(productPreviews);
+    }
+
+    String labelAt(int index) {
+        var label = this.labels.get(index);
+        if (label == null) {
+            label = label(this.previews.get(index));
+            this.labels.set(index, label);
+        }
+        return label;
+    }
+
+    @Override
+    public int getSize() {
+        return this.previews.size();
+    }
+
+    @Override
+    public ProductPreview getElementAt(int index) {
+        return this.previews.get(index);
+    }
+
+    private static String label(ProductPreview preview) {
+        var tags = preview.tags
+            .stream()
+            .map(tag -> tag.name)
+            .sorted((tag1, tag2) -> tag1.compareTo(tag2))
+            .collect(Collectors.joining(","));
+        return "- " + preview.name + " [" + tags + "]";
+    }
+
+    // Renders each row with the text the model has already computed for it.
+    //
+    static final class Renderer extends DefaultListCellRenderer {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PreviewListModel model;
+
+        Renderer(PreviewListModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public Component getListCellRendererComponent(
+            JList<?> list,
+            Object value,
+            int index,
+            boolean isSelected,
+            boolean cellHasFocus
+        ) {
+            super.getListCellRendererComponent(list, this.model.labelAt(index), index, isSelected, cellHasFocus);
+            return this;
+        }
+    }
+}
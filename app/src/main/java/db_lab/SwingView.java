@@ -0,0 +1,342 @@
+package db_lab;
+
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+// The application's window, built with Swing.
+//
+public final class SwingView implements View {
+
+    private static final int PREVIEW_HEIGHT = 20;
+    private static final int PREVIEW_WIDTH = 400;
+    private static final int VISIBLE_PREVIEWS = 20;
+    // How many previews above and below the hovered one are reported as its
+    // neighbours, see `Controller.userHoveredPreview`.
+    private static final int HOVER_NEIGHBOURS = 2;
+
+    private Optional<Controller> controller;
+    private final JFrame mainFrame;
+    // The components of the preview page that are updated when a new page of
+    // previews is loaded: they're only present while the preview page is shown.
+    private Optional<PreviewListModel> previewsList;
+    private Optional<JButton> loadMoreButton;
+    private Optional<JLabel> searchStatus;
+
+    // We take an action to run before closing the view so that one can gracefully
+    // deal with open resources.
+    public SwingView(Runnable onClose) {
+        this.controller = Optional.empty();
+        this.previewsList = Optional.empty();
+        this.loadMoreButton = Optional.empty();
+        this.searchStatus = Optional.empty();
+        this.mainFrame = this.setupMainFrame(onClose);
+    }
+
+    private JFrame setupMainFrame(Runnable onClose) {
+        var frame = new JFrame("Tessiland");
+        var padding = BorderFactory.createEmptyBorder(10, 10, 10, 10);
+        ((JComponent) frame.getContentPane()).setBorder(padding);
+        frame.setMinimumSize(new Dimension(300, 100));
+        frame.setLayout(new BoxLayout(frame.getContentPane(), BoxLayout.PAGE_AXIS));
+        frame.pack();
+        frame.setResizable(false);
+        frame.setVisible(true);
+        frame.addWindowListener(
+            new WindowAdapter() {
+                public void windowClosing(WindowEvent e) {
+                    onClose.run();
+                    System.exit(0);
+                }
+            }
+        );
+
+        return frame;
+    }
+
+    private Controller getController() {
+        if (this.controller.isPresent()) {
+            return this.controller.get();
+        } else {
+            throw new IllegalStateException(
+                """
+                The View's Controller is undefined, did you remember to call
+                `setController` before starting the application?
+                Remeber that `View` needs a reference to the controller in order
+                to notify it of button clicks and other changes.
+                """
+            );
+        }
+    }
+
+    public void setController(Controller controller) {
+        Objects.requireNonNull(controller, "Set null controller in view");
+        this.controller = Optional.of(controller);
+    }
+
+    @Override
+    public void loadingProduct() {
+        freshPane(cp -> cp.add(new JLabel("Loading product...", SwingConstants.CENTER)));
+    }
+
+    @Override
+    public void loadingPreviews() {
+        freshPane(cp -> cp.add(new JLabel("Loading previews...", SwingConstants.CENTER)));
+    }
+
+    @Override
+    public void productPage(Product product) {
+        freshPane(cp -> {
+            cp.add(new JLabel(product.name));
+            cp.add(new JLabel(" "));
+            cp.add(new JLabel(product.description));
+            cp.add(new JLabel(" "));
+            // The composition is already sorted from the biggest share down.
+            var composition = product.composition;
+            for (int i = 0; i < composition.size(); i++) {
+                var percent = Math.round(composition.percent(i) * 100) + "%";
+                cp.add(new JLabel("- " + composition.material(i).description + " " + percent));
+            }
+
+            cp.add(new JLabel(" "));
+            cp.add(button("Go back", () -> this.getController().userClickedBack()));
+        });
+    }
+
+    @Override
+    public void failedToLoadProduct(ProductPreview productPreview) {
+        freshPane(cp -> {
+            cp.add(new JLabel("I couldn't load the page for product", SwingConstants.CENTER));
+            cp.add(new JLabel(productPreview.name, SwingConstants.CENTER));
+            cp.add(new JLabel(" "));
+            cp.add(button("Retry", () -> this.getController().userClickedPreview(productPreview)));
+            cp.add(button("Go back", () -> this.getController().userClickedBack()));
+        });
+    }
+
+    @Override
+    public void previewPage(List<ProductPreview> productPreviews, boolean hasMore) {
+        freshPane(cp -> {
+            cp.add(new JLabel("All our products", SwingConstants.CENTER));
+            cp.add(new JLabel(" "));
+            cp.add(this.searchField());
+            var status = new JLabel(" ");
+            cp.add(status);
+            var previews = new PreviewListModel();
+            previews.addAll(productPreviews);
+            cp.add(this.previewsList(previews));
+            // The button stays disabled until the next page has been shown, so
+            // that impatient clicks can't ask for the same page twice.
+            var loadMore = new JButton("Load more");
+            loadMore.addActionListener(event -> {
+                loadMore.setEnabled(false);
+                this.getController().userClickedLoadMorePreviews();
+            });
+            loadMore.setVisible(hasMore);
+            cp.add(loadMore);
+            cp.add(new JLabel(" "));
+            cp.add(button("Reload", () -> this.getController().userClickedReloadPreviews()));
+            this.previewsList = Optional.of(previews);
+            this.loadMoreButton = Optional.of(loadMore);
+            this.searchStatus = Optional.of(status);
+        });
+    }
+
+    @Override
+    public void morePreviews(List<ProductPreview> productPreviews, boolean hasMore) {
+        this.previewsList.ifPresent(previews -> previews.addAll(productPreviews));
+        this.loadMoreButton.ifPresent(loadMore -> {
+            loadMore.setVisible(hasMore);
+            loadMore.setEnabled(true);
+        });
+        this.refresh();
+    }
+
+    // While searching, the preview list shows the results instead of the
+    // loaded previews and there's no more pages to load.
+    //
+    @Override
+    public void searchResults(List<ProductPreview> results) {
+        this.previewsList.ifPresent(previews -> previews.replaceAll(results));
+        this.loadMoreButton.ifPresent(loadMore -> loadMore.setVisible(false));
+        this.showSearchStatus(results.size() == 1 ? "1 product found" : results.size() + " products found");
+    }
+
+    @Override
+    public void searchCleared(List<ProductPreview> productPreviews, boolean hasMore) {
+        this.previewsList.ifPresent(previews -> previews.replaceAll(productPreviews));
+        this.loadMoreButton.ifPresent(loadMore -> {
+            loadMore.setVisible(hasMore);
+            loadMore.setEnabled(true);
+        });
+        this.showSearchStatus(" ");
+    }
+
+    @Override
+    public void invalidSearch(String reason) {
+        this.showSearchStatus(reason);
+    }
+
+    @Override
+    public void failedToSearch() {
+        this.showSearchStatus("I couldn't search the products");
+    }
+
+    private void showSearchStatus(String status) {
+        this.searchStatus.ifPresent(label -> label.setText(status));
+        this.refresh();
+    }
+
+    // The controller is told about every change to the search text, so the
+    // results are updated as the user types.
+    //
+    private JTextField searchField() {
+        var field = new JTextField();
+        field.setToolTipText("Search by tag (lana AND NOT acrilico) or by name (name:gomitolo)");
+        field.getDocument().addDocumentListener(
+            new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    getController().userTypedSearch(field.getText());
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    getController().userTypedSearch(field.getText());
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    // Only the text's attributes changed, not the text itself.
+                }
+            }
+        );
+        return field;
+    }
+
+    // The previews are shown in a scrollable list that only renders the rows
+    // that are visible. All rows have the same size, so the list doesn't have
+    // to measure each one of them to lay itself out, and a single listener
+    // takes care of clicks on any of the rows.
+    //
+    private JScrollPane previewsList(PreviewListModel previews) {
+        var list = new JList<ProductPreview>(previews);
+        list.setCellRenderer(new PreviewListModel.Renderer(previews));
+        list.setFixedCellHeight(PREVIEW_HEIGHT);
+        list.setFixedCellWidth(PREVIEW_WIDTH);
+        list.setVisibleRowCount(VISIBLE_PREVIEWS);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        var mouse = new MouseAdapter() {
+            // The row under the pointer, so that the controller is only told
+            // when the pointer moves to a different one.
+            private int hovered = -1;
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                var index = rowAt(list, e);
+                if (index >= 0) {
+                    var preview = previews.getElementAt(index);
+                    SwingUtilities.invokeLater(() -> getController().userClickedPreview(preview));
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                var index = rowAt(list, e);
+                if (index == this.hovered) {
+                    return;
+                }
+                this.hovered = index;
+                if (index < 0) {
+                    getController().userStoppedHovering();
+                    return;
+                }
+                var neighbours = new ArrayList<ProductPreview>();
+                for (int i = index - HOVER_NEIGHBOURS; i <= index + HOVER_NEIGHBOURS; i++) {
+                    if (i != index && i >= 0 && i < previews.getSize()) {
+                        neighbours.add(previews.getElementAt(i));
+                    }
+                }
+                getController().userHoveredPreview(previews.getElementAt(index), neighbours);
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                this.hovered = -1;
+                getController().userStoppedHovering();
+            }
+        };
+        list.addMouseListener(mouse);
+        list.addMouseMotionListener(mouse);
+        return new JScrollPane(list);
+    }
+
+    // The row of the list under the event's pointer, or -1 if it's not over
+    // any row (e.g. it's in the empty space after the last one).
+    //
+    private static int rowAt(JList<ProductPreview> list, MouseEvent e) {
+        var index = list.locationToIndex(e.getPoint());
+        return index >= 0 && list.getCellBounds(index, index).contains(e.getPoint()) ? index : -1;
+    }
+
+    @Override
+    public void failedToLoadPreviews() {
+        freshPane(cp -> {
+            cp.add(new JLabel("I couldn't load the previews", SwingConstants.CENTER));
+            cp.add(button("Retry", () -> this.getController().userClickedReloadPreviews()));
+        });
+    }
+
+    private JButton button(String label, Runnable action) {
+        var button = new JButton(label);
+        button.addActionListener(event -> {
+            button.setEnabled(false);
+            SwingUtilities.invokeLater(() -> {
+                action.run();
+                button.setEnabled(true);
+            });
+        });
+        return button;
+    }
+
+    private void freshPane(Consumer<Container> consumer) {
+        var cp = this.mainFrame.getContentPane();
+        cp.removeAll();
+        this.previewsList = Optional.empty();
+        this.loadMoreButton = Optional.empty();
+        this.searchStatus = Optional.empty();
+        consumer.accept(cp);
+        this.refresh();
+    }
+
+    private void refresh() {
+        var cp = this.mainFrame.getContentPane();
+        cp.validate();
+        cp.repaint();
+        this.mainFrame.pack();
+    }
+}
@@ -0,0 +1,636 @@
+package db_lab.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+// Imports whole supplier catalogs (hundreds of thousands of products) in one
+// go, with their compositions and tags.
+//
+// Inserting products one at a time would take several round trips for each of
+// them, so instead:
+// - products are imported in chunks of `PRODUCTS_PER_TRANSACTION`, each one
+//   committed in its own transaction;
+// - rows are inserted with multi-row inserts of (at most) `ROWS_PER_INSERT`
+//   rows, sent to the database with JDBC batching;
+// - all materials and tags are loaded once at the start and kept in memory,
+//   so that they never have to be looked up for each product: only the ones
+//   that don't exist yet are inserted, once;
+// - the change tracking triggers are turned off for the import's session, and
+//   a single change is logged for each product instead of one for each row of
+//   it (see `V2__product_change_log.sql`).
+//
+// If the connection is already in a transaction (its auto-commit is off) the
+// import is part of it and commits nothing: it's up to the caller to commit it
+// or roll it back.
+//
+public final class BulkImport {
+
+    public static final int PRODUCTS_PER_TRANSACTION = 1_000;
+    public static final int ROWS_PER_INSERT = 1_000;
+
+    private static final int MAX_STATEMENTS = 32;
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}");
+
+    private static final QueryMetrics ALL_MATERIALS = QueryMetrics.of(Queries.ALL_MATERIALS);
+    private static final QueryMetrics ALL_TAGS = QueryMetrics.of(Queries.ALL_TAGS);
+
+    // A product to import. Its materials are referred to by their description
+    // and its tags by their name: they're created if they don't exist yet.
+    //
+    public static final class Entry {
+
+        public final String name;
+        public final String description;
+        public final List<String> tags;
+        public final Map<String, Float> composition;
+
+        public Entry(String name, String description, List<String> tags, Map<String, Float> composition) {
+            this.name = name;
+            this.description = description;
+            this.tags = List.copyOf(tags);
+            this.composition = Collections.unmodifiableMap(new LinkedHashMap<>(composition));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            } else if (other == null) {
+                return false;
+            } else if (other instanceof Entry) {
+                var e = (Entry) other;
+                return (
+                    e.name.equals(this.name) &&
+                    (e.description == null ? this.description == null : e.description.equals(this.description)) &&
+                    e.tags.equals(this.tags) &&
+                    e.composition.equals(this.composition)
+                );
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return this.name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "BulkImport.Entry",
+                List.of(
+                    Printer.field("name", this.name),
+                    Printer.field("description", String.valueOf(this.description)),
+                    Printer.field("tags", this.tags),
+                    Printer.field("composition", this.composition)
+                )
+            );
+        }
+    }
+
+    // How much an import wrote and how long it took.
+    //
+    public static final class Report {
+
+        public final long products;
+        public final long compositions;
+        public final long tagged;
+        public final long newMaterials;
+        public final long newTags;
+        public final Duration elapsed;
+
+        Report(long products, long compositions, long tagged, long newMaterials, long newTags, Duration elapsed) {
+            this.products = products;
+            this.compositions = compositions;
+            this.tagged = tagged;
+            this.newMaterials = newMaterials;
+            this.newTags = newTags;
+            this.elapsed = elapsed;
+        }
+
+        public long rows() {
+            return this.products + this.compositions + this.tagged + this.newMaterials + this.newTags;
+        }
+
+        public double productsPerSecond() {
+            return perSecond(this.products);
+        }
+
+        public double rowsPerSecond() {
+            return perSecond(this.rows());
+        }
+
+        private double perSecond(long count) {
+            var seconds = this.elapsed.toNanos() / 1e9;
+            return seconds == 0 ? 0 : count / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "BulkImport.Report",
+                List.of(
+                    Printer.field("products", this.products),
+                    Printer.field("compositions", this.compositions),
+                    Printer.field("tagged", this.tagged),
+                    Printer.field("newMaterials", this.newMaterials),
+                    Printer.field("newTags", this.newTags),
+                    Printer.field("elapsed", this.elapsed),
+                    Printer.field("productsPerSecond", Math.round(this.productsPerSecond())),
+                    Printer.field("rowsPerSecond", Math.round(this.rowsPerSecond()))
+                )
+            );
+        }
+    }
+
+    // Imports the products of a CSV file (see `CsvEntries` for its format),
+    // reading it as the import goes instead of loading it all in memory.
+    //
+    public static Report fromCsv(Connection connection, Reader csv) throws IOException {
+        try {
+            return importAll(connection, new CsvEntries(csv));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static Report importAll(Connection connection, Iterator<Entry> entries) {
+        var start = System.nanoTime();
+        try (var importer = new Importer(connection)) {
+            var ownTransactions = connection.getAutoCommit();
+            if (ownTransactions) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                execute(connection, Queries.DISABLE_CHANGE_TRIGGERS);
+                var chunk = new ArrayList<Entry>(PRODUCTS_PER_TRANSACTION);
+                while (entries.hasNext()) {
+                    chunk.add(entries.next());
+                    if (chunk.size() == PRODUCTS_PER_TRANSACTION || !entries.hasNext()) {
+                        importer.importChunk(chunk, ownTransactions);
+                        chunk.clear();
+                    }
+                }
+            } finally {
+                // The connection may be pooled: whoever uses it next must
+                // have their changes logged.
+                execute(connection, Queries.ENABLE_CHANGE_TRIGGERS);
+                if (ownTransactions) {
+                    connection.setAutoCommit(true);
+                }
+            }
+            return importer.report(Duration.ofNanos(System.nanoTime() - start));
+        } catch (SQLException e) {
+            throw new DAOException(e);
+        }
+    }
+
+    private static void execute(Connection connection, String statement) throws SQLException {
+        try (var prepared = DAOUtils.prepare(connection, statement)) {
+            prepared.executeUpdate();
+        }
+    }
+
+    // Materials and tags are looked up by a key that's the same for all the
+    // names MySQL considers equal, since it compares strings ignoring case and
+    // accents: a product tagged "Lana" gets the existing "lanà" tag instead of
+    // failing to insert a duplicate one.
+    //
+    static String key(String name) {
+        var decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return ACCENTS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    // The state of a running import: the materials and tags it knows of, how
+    // many rows it's written so far, and the statements it's prepared.
+    //
+    private static final class Importer implements AutoCloseable {
+
+        private final Connection connection;
+        // Materials and tags by their `key`.
+        private final HashMap<String, Integer> materials;
+        private final HashMap<String, String> tags;
+        // The multi-row statements are prepared once for each number of rows
+        // and reused for all the chunks. Most chunks have a different number
+        // of compositions and tags, so the statements for their last few rows
+        // pile up: once there are `MAX_STATEMENTS` they're all closed.
+        private final HashMap<String, PreparedStatement> statements;
+        private long products;
+        private long compositions;
+        private long tagged;
+        private long newMaterials;
+        private long newTags;
+
+        Importer(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.materials = new HashMap<>();
+            this.tags = new HashMap<>();
+            this.statements = new HashMap<>();
+            this.loadReferenceData();
+        }
+
+        private void loadReferenceData() throws SQLException {
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(this.connection, Queries.ALL_MATERIALS);
+                var resultSet = statement.executeQuery();
+            ) {
+                while (resultSet.next()) {
+                    this.materials.putIfAbsent(key(resultSet.getString("description")), resultSet.getInt("code"));
+                }
+                ALL_MATERIALS.record(start, this.materials.size(), statement);
+            } catch (SQLException e) {
+                ALL_MATERIALS.failed(start);
+                throw e;
+            }
+            start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(this.connection, Queries.ALL_TAGS);
+                var resultSet = statement.executeQuery();
+            ) {
+                while (resultSet.next()) {
+                    var name = resultSet.getString("name");
+                    this.tags.put(key(name), name);
+                }
+                ALL_TAGS.record(start, this.tags.size(), statement);
+            } catch (SQLException e) {
+                ALL_TAGS.failed(start);
+                throw e;
+            }
+        }
+
+        void importChunk(List<Entry> chunk, boolean commit) throws SQLException {
+            // The counts and the known materials and tags are only updated once
+            // the chunk is in, so that a chunk that's rolled back leaves no
+            // trace.
+            var chunkMaterials = new LinkedHashMap<String, String>();
+            var chunkTags = new LinkedHashMap<String, String>();
+            for (var entry : chunk) {
+                for (var material : entry.composition.keySet()) {
+                    if (!this.materials.containsKey(key(material))) {
+                        chunkMaterials.putIfAbsent(key(material), material);
+                    }
+                }
+                for (var tag : entry.tags) {
+                    if (!this.tags.containsKey(key(tag))) {
+                        chunkTags.putIfAbsent(key(tag), tag);
+                    }
+                }
+            }
+            try {
+                var materialCodes = new HashMap<>(this.materials);
+                var tagNames = new HashMap<>(this.tags);
+                if (!chunkMaterials.isEmpty()) {
+                    var codes = this.insert(Queries.INSERT_MATERIALS, 1, new ArrayList<>(chunkMaterials.values()), true);
+                    var i = 0;
+                    for (var key : chunkMaterials.keySet()) {
+                        materialCodes.put(key, codes[i++]);
+                    }
+                }
+                if (!chunkTags.isEmpty()) {
+                    this.insert(Queries.INSERT_TAGS, 1, new ArrayList<>(chunkTags.values()), false);
+                    chunkTags.forEach(tagNames::put);
+                }
+
+                var productValues = new ArrayList<Object>(chunk.size() * 2);
+                for (var entry : chunk) {
+                    productValues.add(entry.name);
+                    productValues.add(entry.description);
+                }
+                var codes = this.insert(Queries.INSERT_PRODUCTS, 2, productValues, true);
+
+                var compositionValues = new ArrayList<Object>();
+                var taggedValues = new ArrayList<Object>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    var entry = chunk.get(i);
+                    for (var material : entry.composition.entrySet()) {
+                        compositionValues.add(codes[i]);
+                        compositionValues.add(materialCodes.get(key(material.getKey())));
+                        compositionValues.add(material.getValue());
+                    }
+                    var productTags = new LinkedHashSet<String>();
+                    for (var tag : entry.tags) {
+                        productTags.add(tagNames.get(key(tag)));
+                    }
+                    for (var tag : productTags) {
+                        taggedValues.add(codes[i]);
+                        taggedValues.add(tag);
+                    }
+                }
+                this.insert(Queries.INSERT_COMPOSITIONS, 3, compositionValues, false);
+                this.insert(Queries.INSERT_TAGGED, 2, taggedValues, false);
+                var changeValues = new ArrayList<Object>(codes.length);
+                for (var code : codes) {
+                    changeValues.add(code);
+                }
+                this.insert(Queries.INSERT_PRODUCT_CHANGES, 1, changeValues, false);
+                if (commit) {
+                    this.connection.commit();
+                }
+
+                this.materials.putAll(materialCodes);
+                this.tags.putAll(tagNames);
+                this.products += chunk.size();
+                this.compositions += compositionValues.size() / 3;
+                this.tagged += taggedValues.size() / 2;
+                this.newMaterials += chunkMaterials.size();
+                this.newTags += chunkTags.size();
+            } catch (SQLException e) {
+                if (commit) {
+                    this.connection.rollback();
+                }
+                throw new DAOException("Import failed after " + this.products + " products", e);
+            }
+        }
+
+        // Inserts all the rows whose values are given (one after the other,
+        // `columns` values for each row), `ROWS_PER_INSERT` rows at a time.
+        // If `generatedKeys` is set, it returns the keys generated for each of
+        // the inserted rows.
+        //
+        private int[] insert(String insert, int columns, List<Object> values, boolean generatedKeys)
+            throws SQLException {
+            if (this.statements.size() > MAX_STATEMENTS) {
+                this.close();
+                this.statements.clear();
+            }
+            var rows = values.size() / columns;
+            var keys = new int[generatedKeys ? rows : 0];
+            var metrics = QueryMetrics.of(insert);
+            var start = System.nanoTime();
+            try {
+                PreparedStatement statement = null;
+                var batched = false;
+                for (int first = 0; first < rows; first += ROWS_PER_INSERT) {
+                    var count = Math.min(ROWS_PER_INSERT, rows - first);
+                    var next = this.statement(Queries.multiRowInsert(insert, count, columns));
+                    if (batched && next != statement) {
+                        statement.executeBatch();
+                        batched = false;
+                    }
+                    statement = next;
+                    for (int i = 0; i < count * columns; i++) {
+                        statement.setObject(i + 1, values.get(first * columns + i));
+                    }
+                    if (generatedKeys) {
+                        // Keys can only be reliably read back one statement
+                        // at a time.
+                        statement.executeUpdate();
+                        readKeys(statement, keys, first, count);
+                    } else {
+                        statement.addBatch();
+                        batched = true;
+                    }
+                }
+                if (batched) {
+                    statement.executeBatch();
+                }
+                if (statement != null) {
+                    metrics.record(start, rows, statement);
+                }
+                return keys;
+            } catch (SQLException e) {
+                metrics.failed(start);
+                throw e;
+            }
+        }
+
+        private static void readKeys(PreparedStatement statement, int[] keys, int first, int count)
+            throws SQLException {
+            var read = 0;
+            try (var resultSet = statement.getGeneratedKeys()) {
+                while (resultSet.next() && read < count) {
+                    keys[first + read++] = resultSet.getInt(1);
+                }
+            }
+            if (read != count) {
+                throw new SQLException("Expected " + count + " generated keys, got " + read);
+            }
+        }
+
+        private PreparedStatement statement(String query) throws SQLException {
+            var statement = this.statements.get(query);
+            if (statement == null) {
+                statement = this.connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+                this.statements.put(query, statement);
+            }
+            return statement;
+        }
+
+        Report report(Duration elapsed) {
+            return new Report(
+                this.products,
+                this.compositions,
+                this.tagged,
+                this.newMaterials,
+                this.newTags,
+                elapsed
+            );
+        }
+
+        @Override
+        public void close() throws SQLException {
+            for (var statement : this.statements.values()) {
+                statement.close();
+            }
+        }
+    }
+
+    // The entries of a CSV file, parsed one at a time as they're needed.
+    // The file starts with a header and has a line for each product:
+    //
+    //     name,description,tags,composition
+    //     Gomitolo merino,"Lana merino, 50g",lana;merino,merino:0.8;seta:0.2
+    //     Ferri 7mm,,ferri,
+    //
+    // Tags are separated by semicolons, and so are the materials of the
+    // composition, each one followed by its percentage. Fields with commas,
+    // quotes or newlines must be quoted, doubling the quotes inside them. An
+    // empty description is imported as null.
+    // A malformed file fails with an `IllegalArgumentException` telling on
+    // which line the problem is.
+    //
+    static final class CsvEntries implements Iterator<Entry> {
+
+        static final List<String> HEADER = List.of("name", "description", "tags", "composition");
+
+        private final Reader reader;
+        private final char[] buffer;
+        private int position;
+        private int limit;
+        private int line;
+        private Entry next;
+
+        CsvEntries(Reader reader) {
+            this.reader = reader;
+            this.buffer = new char[64 * 1024];
+            this.line = 1;
+            var header = this.readRecord();
+            if (header == null || !header.equals(HEADER)) {
+                throw new IllegalArgumentException("Expected a CSV header " + String.join(",", HEADER));
+            }
+            this.next = this.readEntry();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public Entry next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+            var entry = this.next;
+            this.next = this.readEntry();
+            return entry;
+        }
+
+        private Entry readEntry() {
+            var line = this.line;
+            var record = this.readRecord();
+            while (record != null && record.size() == 1 && record.get(0).isEmpty()) {
+                // Blank lines are skipped.
+                line = this.line;
+                record = this.readRecord();
+            }
+            if (record == null) {
+                return null;
+            } else if (record.size() != HEADER.size()) {
+                throw malformed(line, "expected " + HEADER.size() + " fields, got " + record.size());
+            }
+            var name = record.get(0).strip();
+            if (name.isEmpty()) {
+                throw malformed(line, "missing product name");
+            }
+            var description = record.get(1).isEmpty() ? null : record.get(1);
+            var tags = new ArrayList<String>();
+            for (var tag : split(record.get(2))) {
+                tags.add(tag);
+            }
+            var composition = new LinkedHashMap<String, Float>();
+            var materials = new HashMap<String, String>();
+            for (var material : split(record.get(3))) {
+                var separator = material.lastIndexOf(':');
+                if (separator <= 0) {
+                    throw malformed(line, "expected material:percent, got " + material);
+                }
+                var materialName = material.substring(0, separator).strip();
+                var duplicate = materials.put(key(materialName), materialName);
+                if (duplicate != null) {
+                    throw malformed(line, "material " + materialName + " appears more than once");
+                }
+                try {
+                    composition.put(materialName, Float.parseFloat(material.substring(separator + 1).strip()));
+                } catch (NumberFormatException e) {
+                    throw malformed(line, "invalid percent for material " + materialName);
+                }
+            }
+            return new Entry(name, description, tags, composition);
+        }
+
+        private static List<String> split(String field) {
+            var parts = new ArrayList<String>();
+            for (var part : field.split(";")) {
+                var stripped = part.strip();
+                if (!stripped.isEmpty()) {
+                    parts.add(stripped);
+                }
+            }
+            return parts;
+        }
+
+        private static IllegalArgumentException malformed(int line, String message) {
+            return new IllegalArgumentException("Line " + line + ": " + message);
+        }
+
+        // Reads the fields of the next record, or returns null at the end of
+        // the file.
+        //
+        private List<String> readRecord() {
+            if (!this.fill()) {
+                return null;
+            }
+            var fields = new ArrayList<String>(HEADER.size());
+            var field = new StringBuilder();
+            var quoted = false;
+            var start = this.line;
+            while (true) {
+                if (!this.fill()) {
+                    if (quoted) {
+                        throw malformed(start, "unterminated quoted field");
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                }
+                var c = this.buffer[this.position++];
+                if (quoted) {
+                    if (c == '"') {
+                        if (this.fill() && this.buffer[this.position] == '"') {
+                            field.append('"');
+                            this.position++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            this.line++;
+                        }
+                        field.append(c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    this.line++;
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append(c);
+                }
+            }
+        }
+
+        // Makes sure there's at least a character left to read in the buffer,
+        // returns false at the end of the file.
+        //
+        private boolean fill() {
+            if (this.position < this.limit) {
+                return true;
+            }
+            try {
+                var read = this.reader.read(this.buffer);
+                while (read == 0) {
+                    read = this.reader.read(this.buffer);
+                }
+                this.position = 0;
+                this.limit = Math.max(read, 0);
+                return read > 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
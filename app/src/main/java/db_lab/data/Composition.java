@@ -0,0 +1,203 @@
+package db_lab.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// The materials a product is made of, each with its share of the product.
+//
+// A product is made of just a few materials, so instead of a hash map (which
+// would also box each percentage) we keep two parallel arrays: the materials
+// and their `float` percentages, sorted from the biggest share to the
+// smallest one, that is the order the product page shows them in.
+//
+// For compatibility a composition can still be used as a read-only
+// `Map<Material, Float>`, but the fastest way to go through it is by index:
+//
+//     for (int i = 0; i < composition.size(); i++) {
+//         composition.material(i);
+//         composition.percent(i);
+//     }
+//
+public final class Composition extends AbstractMap<Material, Float> {
+
+    public static final Composition EMPTY = new Composition(new Material[0], new float[0]);
+
+    private final Material[] materials;
+    private final float[] percents;
+    private final int hashCode;
+
+    private Composition(Material[] materials, float[] percents) {
+        this.materials = materials;
+        this.percents = percents;
+        // Same as `AbstractMap`'s hash code, computed just once.
+        var hash = 0;
+        for (int i = 0; i < materials.length; i++) {
+            hash += materials[i].hashCode() ^ Float.hashCode(percents[i]);
+        }
+        this.hashCode = hash;
+    }
+
+    public static Composition of(Map<Material, Float> composition) {
+        if (composition == null || composition.isEmpty()) {
+            return EMPTY;
+        } else if (composition instanceof Composition) {
+            return (Composition) composition;
+        }
+        var builder = new Builder();
+        composition.forEach((material, percent) -> builder.add(material, percent));
+        return builder.build();
+    }
+
+    public Material material(int index) {
+        return this.materials[index];
+    }
+
+    public float percent(int index) {
+        return this.percents[index];
+    }
+
+    @Override
+    public int size() {
+        return this.materials.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Float get(Object key) {
+        var index = this.indexOf(key);
+        return index >= 0 ? this.percents[index] : null;
+    }
+
+    @Override
+    public Set<Map.Entry<Material, Float>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return Composition.this.materials.length;
+            }
+
+            @Override
+            public Iterator<Map.Entry<Material, Float>> iterator() {
+                return new Iterator<>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.next < Composition.this.materials.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Material, Float> next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        var index = this.next++;
+                        return Map.entry(Composition.this.materials[index], Composition.this.percents[index]);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        } else if (other instanceof Composition) {
+            var c = (Composition) other;
+            return (
+                c.hashCode == this.hashCode &&
+                Arrays.equals(c.percents, this.percents) &&
+                Arrays.equals(c.materials, this.materials)
+            );
+        } else {
+            return super.equals(other);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hashCode;
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < this.materials.length; i++) {
+            if (this.materials[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Builds a composition one material at a time, without going through an
+    // intermediate map. Adding the same material twice keeps the last
+    // percentage.
+    //
+    public static final class Builder {
+
+        private Material[] materials;
+        private float[] percents;
+        private int size;
+
+        public Builder() {
+            this.materials = new Material[4];
+            this.percents = new float[4];
+            this.size = 0;
+        }
+
+        public Builder add(Material material, float percent) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.materials[i].equals(material)) {
+                    this.percents[i] = percent;
+                    return this;
+                }
+            }
+            if (this.size == this.materials.length) {
+                this.materials = Arrays.copyOf(this.materials, this.size * 2);
+                this.percents = Arrays.copyOf(this.percents, this.size * 2);
+            }
+            this.materials[this.size] = material;
+            this.percents[this.size] = percent;
+            this.size++;
+            return this;
+        }
+
+        public Composition build() {
+            if (this.size == 0) {
+                return EMPTY;
+            }
+            // A plain insertion sort: there's never more than a handful of
+            // materials. Ties are broken by material code so that the same
+            // composition always ends up in the same order.
+            var materials = Arrays.copyOf(this.materials, this.size);
+            var percents = Arrays.copyOf(this.percents, this.size);
+            for (int i = 1; i < materials.length; i++) {
+                var material = materials[i];
+                var percent = percents[i];
+                var j = i - 1;
+                while (j >= 0 && comesBefore(material, percent, materials[j], percents[j])) {
+                    materials[j + 1] = materials[j];
+                    percents[j + 1] = percents[j];
+                    j--;
+                }
+                materials[j + 1] = material;
+                percents[j + 1] = percent;
+            }
+            return new Composition(materials, percents);
+        }
+
+        private static boolean comesBefore(Material material, float percent, Material other, float otherPercent) {
+            var byShare = Float.compare(otherPercent, percent);
+            return byShare < 0 || (byShare == 0 && material.code < other.code);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package db_lab.data;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+// A bounded pool of connections.
+//
+// Instead of sharing a single connection for the whole life of the
+// application, callers borrow a connection with `getConnection` and give it
+// back by closing it (a try-with-resources does that for us):
+//
+//     try (var connection = pool.getConnection()) {
+//         ...
+//     }
+//
+// The pool never holds more than `maxSize` connections: when all of them are
+// in use callers wait (at most `maxWait`) for one to be returned.
+// Connections are validated before being handed out, so a stale connection is
+// replaced by a new one instead of making every request fail; connections that
+// have been idle for longer than `maxIdle` are closed in the background.
+//
+public final class ConnectionPool implements DataSource, AutoCloseable {
+
+    // Creates a brand new physical connection to the database.
+    //
+    public interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final Duration maxWait;
+    private final Duration maxIdle;
+    // Shared by all the connections, see `MaterialDictionary.of`.
+    private final MaterialDictionary materials;
+
+    // All the fields below are guarded by `lock`.
+    private final ReentrantLock lock;
+    private final Condition returned;
+    private final ArrayDeque<PooledConnection> idle;
+    private int active;
+    private int waiters;
+    private boolean closed;
+
+    private final LongAdder borrows;
+    private final LongAdder borrowNanos;
+    private final LongAdder timeouts;
+    private final LongAdder validationFailures;
+    private final LongAdder evictions;
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, Duration maxWait, Duration maxIdle) {
+        Objects.requireNonNull(factory, "Pool created with null connection factory");
+        Objects.requireNonNull(maxWait, "Pool created with null max wait");
+        Objects.requireNonNull(maxIdle, "Pool created with null max idle time");
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive, got " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+        this.maxIdle = maxIdle;
+        this.materials = new MaterialDictionary();
+        this.lock = new ReentrantLock();
+        this.returned = this.lock.newCondition();
+        this.idle = new ArrayDeque<>();
+        this.active = 0;
+        this.waiters = 0;
+        this.closed = false;
+        this.borrows = new LongAdder();
+        this.borrowNanos = new LongAdder();
+        this.timeouts = new LongAdder();
+        this.validationFailures = new LongAdder();
+        this.evictions = new LongAdder();
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var period = Math.max(1, maxIdle.toMillis() / 2);
+        this.evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        var start = System.nanoTime();
+        var deadline = start + this.maxWait.toNanos();
+        while (true) {
+            PooledConnection pooled = null;
+            this.lock.lock();
+            try {
+                this.ensureOpen();
+                while (this.idle.isEmpty() && this.active >= this.maxSize) {
+                    var remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        this.timeouts.increment();
+                        throw new SQLTimeoutException("Timed out after " + this.maxWait + " waiting for a connection");
+                    }
+                    this.waiters++;
+                    try {
+                        this.returned.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection", e);
+                    } finally {
+                        this.waiters--;
+                    }
+                    this.ensureOpen();
+                }
+                // We reuse the most recently returned connection: this way the
+                // least used ones sink at the bottom of the deque and are the
+                // first ones to be evicted once they've been idle long enough.
+                pooled = this.idle.pollFirst();
+                this.active++;
+            } finally {
+                this.lock.unlock();
+            }
+
+            // Validating and creating connections may require a round trip to
+            // the database, so we do it without holding the lock.
+            try {
+                if (pooled == null) {
+                    pooled = new PooledConnection(this.factory.connect());
+                } else if (!pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    this.validationFailures.increment();
+                    pooled.close();
+                    this.freeSlot();
+                    continue;
+                }
+            } catch (SQLException | RuntimeException e) {
+                this.freeSlot();
+                throw e;
+            }
+            this.borrows.increment();
+            this.borrowNanos.add(System.nanoTime() - start);
+            return this.lease(pooled);
+        }
+    }
+
+    // Closes all the connections that have been idle for longer than `maxIdle`.
+    //
+    public void evictIdle() {
+        var evicted = new ArrayList<PooledConnection>();
+        var oldestAllowed = System.nanoTime() - this.maxIdle.toNanos();
+        this.lock.lock();
+        try {
+            while (!this.idle.isEmpty() && this.idle.peekLast().returnedAt - oldestAllowed < 0) {
+                evicted.add(this.idle.pollLast());
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        this.evictions.add(evicted.size());
+        evicted.forEach(PooledConnection::close);
+    }
+
+    public Stats stats() {
+        this.lock.lock();
+        try {
+            return new Stats(
+                this.active,
+                this.idle.size(),
+                this.waiters,
+                this.borrows.sum(),
+                this.borrowNanos.sum(),
+                this.timeouts.sum(),
+                this.validationFailures.sum(),
+                this.evictions.sum()
+            );
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Closes all idle connections; the ones that are currently borrowed are
+    // closed as soon as they're given back to the pool.
+    //
+    @Override
+    public void close() {
+        var toClose = new ArrayList<PooledConnection>();
+        this.lock.lock();
+        try {
+            this.closed = true;
+            toClose.addAll(this.idle);
+            this.idle.clear();
+            this.returned.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        this.evictor.shutdownNow();
+        toClose.forEach(PooledConnection::close);
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("The connection pool has been closed");
+        }
+    }
+
+    private void freeSlot() {
+        this.lock.lock();
+        try {
+            this.active--;
+            this.returned.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        // A connection goes back into the pool in the same state it was handed
+        // out: any transaction left open by the borrower is rolled back.
+        var reusable = true;
+        try {
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        this.lock.lock();
+        try {
+            this.active--;
+            if (reusable && !this.closed) {
+                pooled.returnedAt = System.nanoTime();
+                this.idle.addFirst(pooled);
+                pooled = null;
+            }
+            this.returned.signal();
+        } finally {
+            this.lock.unlock();
+        }
+        if (pooled != null) {
+            pooled.close();
+        }
+    }
+
+    // The connection handed out to callers is a thin wrapper around the
+    // physical one: closing it gives the physical connection back to the pool
+    // and any later use fails instead of sneakily using a connection that may
+    // have already been lent to someone else.
+    //
+    private Connection lease(PooledConnection pooled) {
+        var handler = new Lease(pooled);
+        var proxy = Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            handler
+        );
+        return (Connection) proxy;
+    }
+
+    private final class Lease implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private final AtomicBoolean released;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+            this.released = new AtomicBoolean(false);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (this.released.compareAndSet(false, true)) {
+                        ConnectionPool.this.giveBack(this.pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return this.released.get() || this.pooled.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + this.pooled.connection + "]";
+                case "isWrapperFor":
+                    if (args[0] == StatementCache.class || args[0] == MaterialDictionary.class) {
+                        return true;
+                    }
+                    break;
+                case "unwrap":
+                    if (args[0] == StatementCache.class && !this.released.get()) {
+                        return this.pooled.statements;
+                    } else if (args[0] == MaterialDictionary.class) {
+                        return ConnectionPool.this.materials;
+                    }
+                    break;
+            }
+            if (this.released.get()) {
+                throw new SQLException("The connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(this.pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // A physical connection together with its cache of prepared statements:
+    // the cache lives as long as the connection and moves with it between the
+    // idle connections and the borrowed ones.
+    //
+    private static final class PooledConnection {
+
+        private final Connection connection;
+        private final StatementCache statements;
+        private long returnedAt;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new StatementCache(connection, StatementCache.DEFAULT_SIZE);
+            this.returnedAt = System.nanoTime();
+        }
+
+        private void close() {
+            this.statements.close();
+            try {
+                this.connection.close();
+            } catch (Exception e) {}
+        }
+    }
+
+    // A snapshot of the pool's state and metrics.
+    //
+    public static final class Stats {
+
+        public final int active;
+        public final int idle;
+        public final int waiters;
+        public final long borrows;
+        public final long totalBorrowNanos;
+        public final long timeouts;
+        public final long validationFailures;
+        public final long evictions;
+
+        public Stats(
+            int active,
+            int idle,
+            int waiters,
+            long borrows,
+            long totalBorrowNanos,
+            long timeouts,
+            long validationFailures,
+            long evictions
+        ) {
+            this.active = active;
+            this.idle = idle;
+            this.waiters = waiters;
+            this.borrows = borrows;
+            this.totalBorrowNanos = totalBorrowNanos;
+            this.timeouts = timeouts;
+            this.validationFailures = validationFailures;
+            this.evictions = evictions;
+        }
+
+        // The average time a caller had to wait to borrow a connection,
+        // including the time needed to validate or create it.
+        //
+        public Duration averageBorrowLatency() {
+            return this.borrows == 0 ? Duration.ZERO : Duration.ofNanos(this.totalBorrowNanos / this.borrows);
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "ConnectionPool.Stats",
+                List.of(
+                    Printer.field("active", this.active),
+                    Printer.field("idle", this.idle),
+                    Printer.field("waiters", this.waiters),
+                    Printer.field("borrows", this.borrows),
+                    Printer.field("averageBorrowLatency", this.averageBorrowLatency()),
+                    Printer.field("timeouts", this.timeouts),
+                    Printer.field("validationFailures", this.validationFailures),
+                    Printer.field("evictions", this.evictions)
+                )
+            );
+        }
+    }
+
+    // The remaining methods are required by the `DataSource` interface but
+    // are of no use to us.
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool always connects with the credentials it was created with");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {}
+
+    @Override
+    public void setLoginTimeout(int seconds) {}
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        } else {
+            throw new SQLException("Not a wrapper for " + type);
+        }
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) {
+        return type.isInstance(this);
+    }
+}
@@ -4,22 +4,58 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
 
 public final class DAOUtils {
 
+    // The timeout can also be set at startup with
+    // `-Ddb_lab.queryTimeoutSeconds=...`, 0 means no timeout at all.
+    private static final int DEFAULT_QUERY_TIMEOUT_SECONDS = Integer.getInteger("db_lab.queryTimeoutSeconds", 30);
+    private static volatile int queryTimeoutSeconds = DEFAULT_QUERY_TIMEOUT_SECONDS;
+    // The deadline (as in `System.nanoTime`) of the `Resilience` attempt
+    // running on this thread, if any.
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
     // Establishes a connection to a MySQL daemon running locally at port 3306.
     //
     public static Connection localMySQLConnection(String database, String username, String password) {
         try {
-            var host = "localhost";
-            var port = "3306";
-            var connectionString = "jdbc:mysql://" + host + ":" + port + "/" + database;
-            return DriverManager.getConnection(connectionString, username, password);
+            return DriverManager.getConnection(localMySQLConnectionString(database), username, password);
         } catch (Exception e) {
             throw new DAOException(e);
         }
     }
 
+    // Creates a pool of connections to a MySQL daemon running locally at port
+    // 3306. Remember to close the pool when the application is done with it.
+    //
+    public static ConnectionPool localMySQLDataSource(String database, String username, String password) {
+        var connectionString = localMySQLConnectionString(database);
+        return new ConnectionPool(
+            () -> DriverManager.getConnection(connectionString, username, password),
+            10,
+            Duration.ofSeconds(5),
+            Duration.ofMinutes(5)
+        );
+    }
+
+    // Wraps a single connection in a `DataSource` that always hands it out.
+    // Closing the connections obtained from the data source does nothing: the
+    // given connection must be closed by its owner.
+    //
+    public static DataSource sharedDataSource(Connection connection) {
+        return new SharedConnection(connection);
+    }
+
+    private static String localMySQLConnectionString(String database) {
+        var host = "localhost";
+        var port = "3306";
+        return "jdbc:mysql://" + host + ":" + port + "/" + database;
+    }
+
     // We must always prepare a statement to make sure we do not fall victim to SQL injection:
     // https://owasp.org/www-community/attacks/SQL_Injection
     //
@@ -27,19 +63,141 @@ public final class DAOUtils {
     //
     //     prepare(connection, MY_QUERY, query_arg1, query_arg2, ...)
     //
+    // If the connection comes from a `ConnectionPool` (or from `sharedDataSource`)
+    // and the query is one of the `Queries`, the statement is taken from the
+    // connection's cache of prepared statements instead of being prepared from
+    // scratch each time.
+    //
     public static PreparedStatement prepare(Connection connection, String query, Object... values) throws SQLException {
-        PreparedStatement statement = null;
+        var statement = statementFor(connection, query);
         try {
-            statement = connection.prepareStatement(query);
             for (int i = 0; i < values.length; i++) {
                 statement.setObject(i + 1, values[i]);
             }
             return statement;
         } catch (Exception e) {
-            if (statement != null) {
-                statement.close();
-            }
+            statement.close();
             throw e;
         }
     }
+
+    // The following overloads are specialized versions of `prepare` for the
+    // queries that only take a single parameter: this way we don't have to
+    // allocate a varargs array and box the value each time.
+    //
+
+    public static PreparedStatement prepare(Connection connection, String query, int value) throws SQLException {
+        var statement = statementFor(connection, query);
+        try {
+            statement.setInt(1, value);
+            return statement;
+        } catch (Exception e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    public static PreparedStatement prepare(Connection connection, String query, String value) throws SQLException {
+        var statement = statementFor(connection, query);
+        try {
+            statement.setString(1, value);
+            return statement;
+        } catch (Exception e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    public static PreparedStatement prepare(Connection connection, String query, float value) throws SQLException {
+        var statement = statementFor(connection, query);
+        try {
+            statement.setFloat(1, value);
+            return statement;
+        } catch (Exception e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    // How long a statement prepared by `prepare` may run before the driver
+    // cancels it and fails with a `SQLTimeoutException`: without a timeout a
+    // query may wait forever for a database that has stopped answering.
+    // JDBC timeouts are in whole seconds, so the timeout is rounded up.
+    //
+    // Statements prepared by an attempt of `Resilience` get at most the time
+    // left before its deadline instead, so that an attempt its caller has
+    // given up on doesn't keep a connection busy for much longer.
+    //
+    public static Duration queryTimeout() {
+        return Duration.ofSeconds(queryTimeoutSeconds);
+    }
+
+    public static void setQueryTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Negative query timeout: " + timeout);
+        }
+        var seconds = timeout.toSeconds() + (timeout.toNanosPart() == 0 ? 0 : 1);
+        queryTimeoutSeconds = (int) Math.min(Integer.MAX_VALUE, seconds);
+    }
+
+    private static PreparedStatement statementFor(Connection connection, String query) throws SQLException {
+        PreparedStatement statement;
+        if (connection.isWrapperFor(StatementCache.class)) {
+            statement = connection.unwrap(StatementCache.class).prepare(query);
+        } else {
+            statement = connection.prepareStatement(query);
+        }
+        try {
+            // Cached statements are reused, the timeout may have changed since
+            // the last time.
+            statement.setQueryTimeout(queryTimeoutSeconds());
+            return statement;
+        } catch (SQLException | RuntimeException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
+    // Runs the action with statements timing out at the given deadline, see
+    // `queryTimeout`.
+    //
+    static <T> T beforeDeadline(long deadline, Supplier<T> action) {
+        var outer = DEADLINE.get();
+        DEADLINE.set(deadline);
+        try {
+            return action.get();
+        } finally {
+            DEADLINE.set(outer);
+        }
+    }
+
+    // The timeout for a statement prepared now. With a deadline, what's left
+    // of it is rounded up: a timeout of zero would mean no timeout at all.
+    //
+    private static int queryTimeoutSeconds() throws SQLTimeoutException {
+        var timeout = queryTimeoutSeconds;
+        var deadline = DEADLINE.get();
+        if (deadline == null) {
+            return timeout;
+        }
+        var left = deadline - System.nanoTime();
+        if (left <= 0) {
+            throw new SQLTimeoutException("The deadline of the query is already over");
+        }
+        var seconds = (int) Math.min(Integer.MAX_VALUE, (left - 1) / 1_000_000_000L + 1);
+        return timeout == 0 ? seconds : Math.min(timeout, seconds);
+    }
+
+    // Binds the codes of a batch to the first `size` parameters of a statement.
+    // If there are fewer codes than parameters, the last code is repeated to
+    // fill the remaining ones.
+    //
+    public static void bindBatch(PreparedStatement statement, int[] batch, int size) throws SQLException {
+        if (batch.length == 0 || batch.length > size) {
+            throw new IllegalArgumentException("Batch must have between 1 and " + size + " codes, got " + batch.length);
+        }
+        for (int i = 0; i < size; i++) {
+            statement.setInt(i + 1, batch[Math.min(i, batch.length - 1)]);
+        }
+    }
 }
@@ -0,0 +1,101 @@
+package db_lab.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A histogram of latencies (in nanoseconds) that can be updated concurrently
+// without locks and without allocating anything.
+//
+// Keeping every single latency to compute exact percentiles would take an
+// unbounded amount of memory, so latencies are counted in buckets instead.
+// Like HdrHistogram, buckets grow exponentially but each power of two is split
+// into `SUB_BUCKETS` linear ones: this way every recorded latency is off by at
+// most 1/16th (about 6%) of its value, from a few nanoseconds up to hours,
+// with a fixed array of less than a thousand counters.
+//
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    void record(long nanos) {
+        var value = Math.max(0, nanos);
+        this.counts.incrementAndGet(index(value));
+        this.count.incrementAndGet();
+        this.total.addAndGet(value);
+        var max = this.max.get();
+        while (value > max && !this.max.compareAndSet(max, value)) {
+            max = this.max.get();
+        }
+    }
+
+    long count() {
+        return this.count.get();
+    }
+
+    long max() {
+        return this.max.get();
+    }
+
+    double mean() {
+        var count = this.count.get();
+        return count == 0 ? 0 : (double) this.total.get() / count;
+    }
+
+    // The latency below which falls the given fraction (between 0 and 1) of the
+    // recorded ones, e.g. `percentile(0.99)` is the 99th percentile. It's the
+    // upper bound of the bucket the percentile falls in, so it's never lower
+    // than the real value.
+    //
+    long percentile(double fraction) {
+        var count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        var rank = (long) Math.ceil(fraction * count);
+        var seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    // Values smaller than `SUB_BUCKETS` get a bucket each; bigger ones are
+    // bucketed by their highest set bit (the power of two) and the
+    // `SUB_BUCKET_BITS` bits right after it.
+    //
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        var exponent = 63 - Long.numberOfLeadingZeros(value);
+        var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        var exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var subBucket = index % SUB_BUCKETS;
+        var lowerBound = (long) (SUB_BUCKETS | subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -1,21 +1,42 @@
 package db_lab.data;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class Material {
 
     public final int code;
     public final String description;
 
+    // The canonical instances of the materials, see `Material.of`.
+    private static final ConcurrentHashMap<Integer, Material> CANONICAL = new ConcurrentHashMap<>();
+
     public Material(int code, String description) {
         this.code = code;
         this.description = description == null ? "" : description;
     }
 
+    // Returns the canonical material with the given code and description, so
+    // that all the products made of the same material share the same instance.
+    // If the material's description has changed, the new one takes the old
+    // one's place.
+    //
+    public static Material of(int code, String description) {
+        var material = CANONICAL.get(code);
+        if (material != null && material.description.equals(description == null ? "" : description)) {
+            return material;
+        }
+        var updated = new Material(code, description);
+        CANONICAL.put(code, updated);
+        return updated;
+    }
+
     @Override
     public boolean equals(Object other) {
         if (other == this) {
@@ -45,10 +66,101 @@ public final class Material {
 
     public final class DAO {
 
-        public static Map<Material, Float> forProduct(Connection connection, int productId) {
-            // Iterating through a resultSet:
-            // https://docs.oracle.com/javase/tutorial/jdbc/basics/retrieving.html
-            throw new UnsupportedOperationException("Unimplemented");
+        private static final QueryMetrics PRODUCT_COMPOSITION = QueryMetrics.of(Queries.PRODUCT_COMPOSITION);
+        private static final QueryMetrics PRODUCTS_COMPOSITION_BATCH = QueryMetrics.of(
+            Queries.PRODUCTS_COMPOSITION_BATCH
+        );
+
+        // The rows of a composition, one for each of its materials.
+        private static final RowMapper.Children<Keys> COMPOSITION = RowMapper.children(
+            (composition, resultSet, columns) ->
+                composition.add(resultSet.getInt(columns[0]), resultSet.getFloat(columns[1])),
+            "material_code",
+            "percent"
+        );
+        private static final RowMapper.Grouping<Keys, Keys> COMPOSITIONS = RowMapper.grouping(
+            "product_code",
+            RowMapper.of((resultSet, columns) -> new Keys()),
+            COMPOSITION,
+            keys -> keys
+        );
+
+        // Makes sure the materials of the compositions loaded from now on are
+        // up to date: they're kept in memory, and updated materials are only
+        // looked up again after a call to this.
+        //
+        public static void checkForUpdates(Connection connection) {
+            MaterialDictionary.of(connection).checkForUpdates(connection);
+        }
+
+        public static Composition forProduct(Connection connection, int productId) {
+            var composition = new Keys();
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, Queries.PRODUCT_COMPOSITION, productId);
+                var resultSet = statement.executeQuery();
+            ) {
+                var rows = COMPOSITION.addAll(composition, resultSet);
+                PRODUCT_COMPOSITION.record(start, rows, statement);
+            } catch (SQLException e) {
+                PRODUCT_COMPOSITION.failed(start);
+                throw new DAOException(e);
+            }
+            return composition.build(connection, MaterialDictionary.of(connection));
+        }
+
+        // Loads the composition of a batch of (at most `Queries.BATCH_SIZE`)
+        // products with a single query, indexed by product code.
+        // The batch is padded with its last code to always fill all of the
+        // query's placeholders.
+        //
+        public static Map<Integer, Composition> forProducts(Connection connection, int[] batch) {
+            var keys = new HashMap<Integer, Keys>();
+            var start = System.nanoTime();
+            try (var statement = DAOUtils.prepare(connection, Queries.PRODUCTS_COMPOSITION_BATCH)) {
+                DAOUtils.bindBatch(statement, batch, Queries.BATCH_SIZE);
+                try (var resultSet = statement.executeQuery()) {
+                    var rows = COMPOSITIONS.forEach(resultSet, keys::put);
+                    PRODUCTS_COMPOSITION_BATCH.record(start, rows, statement);
+                }
+            } catch (SQLException e) {
+                PRODUCTS_COMPOSITION_BATCH.failed(start);
+                throw new DAOException(e);
+            }
+            var materials = MaterialDictionary.of(connection);
+            var compositions = new HashMap<Integer, Composition>(keys.size() * 2);
+            keys.forEach((code, composition) -> compositions.put(code, composition.build(connection, materials)));
+            return compositions;
+        }
+
+        // A composition as read from the database: the codes of its materials
+        // with their percentages. The materials are only looked up once the
+        // result set has been closed, in case the dictionary has to run a
+        // query of its own to find them.
+        //
+        private static final class Keys {
+
+            private int[] materials = new int[4];
+            private float[] percents = new float[4];
+            private int size = 0;
+
+            private void add(int material, float percent) {
+                if (this.size == this.materials.length) {
+                    this.materials = Arrays.copyOf(this.materials, this.size * 2);
+                    this.percents = Arrays.copyOf(this.percents, this.size * 2);
+                }
+                this.materials[this.size] = material;
+                this.percents[this.size] = percent;
+                this.size++;
+            }
+
+            private Composition build(Connection connection, MaterialDictionary materials) {
+                var composition = new Composition.Builder();
+                for (int i = 0; i < this.size; i++) {
+                    composition.add(materials.get(connection, this.materials[i]), this.percents[i]);
+                }
+                return composition.build();
+            }
         }
     }
 }
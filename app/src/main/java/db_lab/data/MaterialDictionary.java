@@ -0,0 +1,193 @@
+package db_lab.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// An in-memory copy of the whole `MATERIAL` table, indexed by code.
+//
+// There are a few dozen materials, shared by thousands of products: instead of
+// having the database join them to each composition (and send the same
+// descriptions over and over again) the composition queries only return the
+// materials' codes, which are then looked up here.
+// The table is loaded in full the first time it's needed, and again whenever
+// a composition refers to a material it doesn't know yet, which is how new
+// materials (added by `BulkImport`) show up. Updated materials are found out
+// by `checkForUpdates`, which loads the table again if `MATERIAL_CHANGE` has
+// new rows.
+//
+// Each `ConnectionPool` and shared connection has a dictionary of its own
+// (their connections unwrap to it, see `of`), so that two databases never mix
+// their materials. What's read inside a transaction may be rolled back: a
+// connection that isn't in auto-commit mode gets a copy of the dictionary
+// that's thrown away once the lookup is done.
+//
+final class MaterialDictionary {
+
+    private static final QueryMetrics ALL_MATERIALS = QueryMetrics.of(Queries.ALL_MATERIALS);
+    private static final QueryMetrics MATERIAL_CHANGES = QueryMetrics.of(Queries.MATERIAL_CHANGES);
+
+    // Replaced as a whole on each reload, lookups never need to take a lock.
+    private volatile Table table;
+    // A lock rather than `synchronized`, which would pin a virtual thread to
+    // its carrier while it waits for the database.
+    private final ReentrantLock reloading;
+
+    MaterialDictionary() {
+        this(Table.EMPTY);
+    }
+
+    private MaterialDictionary(Table table) {
+        this.table = table;
+        this.reloading = new ReentrantLock();
+    }
+
+    // The dictionary to look up the materials read with the given connection.
+    //
+    static MaterialDictionary of(Connection connection) {
+        try {
+            if (!connection.isWrapperFor(MaterialDictionary.class)) {
+                return new MaterialDictionary();
+            }
+            var shared = connection.unwrap(MaterialDictionary.class);
+            return connection.getAutoCommit() ? shared : new MaterialDictionary(shared.table);
+        } catch (SQLException e) {
+            throw new DAOException(e);
+        }
+    }
+
+    // The material with the given code, reloading the table if it's not
+    // there yet.
+    //
+    Material get(Connection connection, int code) {
+        var material = this.table.get(code);
+        return material != null ? material : this.reload(connection, code);
+    }
+
+    // Loads the table again if a material has been updated since it was last
+    // loaded. A table that has never been loaded is left alone: it'll be up
+    // to date when it's first needed.
+    //
+    void checkForUpdates(Connection connection) {
+        var loaded = this.table;
+        if (loaded == Table.EMPTY || changes(connection) == loaded.changes) {
+            return;
+        }
+        this.reloading.lock();
+        try {
+            // Another thread may have reloaded it while we were waiting.
+            if (this.table == loaded) {
+                this.table = load(connection);
+            }
+        } finally {
+            this.reloading.unlock();
+        }
+    }
+
+    private Material reload(Connection connection, int code) {
+        this.reloading.lock();
+        try {
+            // Another thread may have reloaded it while we were waiting.
+            var material = this.table.get(code);
+            if (material != null) {
+                return material;
+            }
+            this.table = load(connection);
+            material = this.table.get(code);
+            if (material == null) {
+                throw new DAOException("No material with code " + code);
+            }
+            return material;
+        } finally {
+            this.reloading.unlock();
+        }
+    }
+
+    // The changes are counted before the materials are read: an update
+    // committed in between is loaded again by the next check.
+    //
+    private static Table load(Connection connection) {
+        var changes = changes(connection);
+        var start = System.nanoTime();
+        try (
+            var statement = DAOUtils.prepare(connection, Queries.ALL_MATERIALS);
+            var resultSet = statement.executeQuery();
+        ) {
+            var materials = new ArrayList<Material>();
+            var code = resultSet.findColumn("code");
+            var description = resultSet.findColumn("description");
+            while (resultSet.next()) {
+                materials.add(Material.of(resultSet.getInt(code), resultSet.getString(description)));
+            }
+            ALL_MATERIALS.record(start, materials.size(), statement);
+            return new Table(materials, changes);
+        } catch (SQLException e) {
+            ALL_MATERIALS.failed(start);
+            throw new DAOException(e);
+        }
+    }
+
+    private static long changes(Connection connection) {
+        var start = System.nanoTime();
+        try (
+            var statement = DAOUtils.prepare(connection, Queries.MATERIAL_CHANGES);
+            var resultSet = statement.executeQuery();
+        ) {
+            resultSet.next();
+            var changes = resultSet.getLong("changes");
+            MATERIAL_CHANGES.record(start, 1, statement);
+            return changes;
+        } catch (SQLException e) {
+            MATERIAL_CHANGES.failed(start);
+            throw new DAOException(e);
+        }
+    }
+
+    // An open addressing hash table from `int` codes to materials: looking a
+    // material up doesn't box its code nor allocate anything.
+    //
+    private static final class Table {
+
+        private static final Table EMPTY = new Table(List.of(), 0);
+
+        private final int[] codes;
+        // A null material marks an empty slot.
+        private final Material[] materials;
+        private final int mask;
+        // The number of rows in `MATERIAL_CHANGE` when it was loaded.
+        private final long changes;
+
+        private Table(List<Material> materials, long changes) {
+            // At most half full, so that probe sequences stay short.
+            var capacity = Integer.highestOneBit(Math.max(1, materials.size()) * 2) * 2;
+            this.codes = new int[capacity];
+            this.materials = new Material[capacity];
+            this.mask = capacity - 1;
+            this.changes = changes;
+            for (var material : materials) {
+                var slot = this.slot(material.code);
+                while (this.materials[slot] != null && this.codes[slot] != material.code) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.codes[slot] = material.code;
+                this.materials[slot] = material;
+            }
+        }
+
+        private Material get(int code) {
+            for (var slot = this.slot(code); this.materials[slot] != null; slot = (slot + 1) & this.mask) {
+                if (this.codes[slot] == code) {
+                    return this.materials[slot];
+                }
+            }
+            return null;
+        }
+
+        private int slot(int code) {
+            var hash = code * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & this.mask;
+        }
+    }
+}
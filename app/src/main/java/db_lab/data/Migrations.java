@@ -0,0 +1,134 @@
+package db_lab.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+
+// Brings the schema created by `tessiland.ddl` up to date, applying the
+// migrations that haven't been applied yet.
+//
+// Each migration is a SQL script in the `migrations` resources folder, named
+// after its version: to change the schema add a new script at the end of
+// `MIGRATIONS`, never change one that's already been released. The version of
+// the last applied migration is kept in the `SCHEMA_VERSION` table.
+//
+// MySQL can't roll back changes to the schema: if a migration fails halfway
+// through, what it did up to that point stays there and it must be fixed by
+// hand before the application can start again.
+//
+public final class Migrations {
+
+    public static final List<String> MIGRATIONS = List.of(
+        "V1__secondary_indexes.sql",
+        "V2__product_change_log.sql",
+        "V3__material_changes.sql"
+    );
+
+    private static final int LOCK_TIMEOUT_SECONDS = 30;
+    private static final System.Logger LOGGER = System.getLogger("db_lab.migrations");
+
+    // Applies the missing migrations and returns the schema's version.
+    //
+    public static int apply(DataSource dataSource) {
+        try (var connection = dataSource.getConnection()) {
+            return apply(connection);
+        } catch (SQLException e) {
+            throw new DAOException(e);
+        }
+    }
+
+    public static int apply(Connection connection) {
+        try {
+            try (var statement = connection.createStatement()) {
+                statement.execute(Queries.CREATE_SCHEMA_VERSION);
+            }
+            lock(connection);
+            try {
+                var version = version(connection);
+                for (; version < MIGRATIONS.size(); version++) {
+                    var migration = MIGRATIONS.get(version);
+                    LOGGER.log(System.Logger.Level.INFO, "Applying migration " + migration);
+                    try (var statement = connection.createStatement()) {
+                        for (var sql : statements(script(migration))) {
+                            statement.execute(sql);
+                        }
+                    }
+                    try (var statement = DAOUtils.prepare(connection, Queries.RECORD_MIGRATION, version + 1, migration)) {
+                        statement.executeUpdate();
+                    }
+                }
+                return version;
+            } finally {
+                unlock(connection);
+            }
+        } catch (SQLException e) {
+            throw new DAOException(e);
+        }
+    }
+
+    // The version of the latest migration applied to the schema, 0 if none
+    // has been applied yet.
+    //
+    public static int version(Connection connection) {
+        try (
+            var statement = DAOUtils.prepare(connection, Queries.SCHEMA_VERSION);
+            var resultSet = statement.executeQuery();
+        ) {
+            resultSet.next();
+            return resultSet.getInt("version");
+        } catch (SQLException e) {
+            throw new DAOException(e);
+        }
+    }
+
+    private static void lock(Connection connection) throws SQLException {
+        try (
+            var statement = DAOUtils.prepare(connection, Queries.LOCK_MIGRATIONS, LOCK_TIMEOUT_SECONDS);
+            var resultSet = statement.executeQuery();
+        ) {
+            if (!resultSet.next() || resultSet.getInt("locked") != 1) {
+                throw new DAOException("Timed out waiting for another application to apply the migrations");
+            }
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (var statement = DAOUtils.prepare(connection, Queries.UNLOCK_MIGRATIONS)) {
+            statement.executeQuery().close();
+        }
+    }
+
+    private static String script(String migration) {
+        try (InputStream stream = Migrations.class.getResourceAsStream("migrations/" + migration)) {
+            if (stream == null) {
+                throw new DAOException("Missing migration " + migration);
+            }
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new DAOException("Can't read migration " + migration, e);
+        }
+    }
+
+    // Splits a script into its statements, dropping the comments. Statements
+    // end with a semicolon, which can't appear anywhere else in a script.
+    //
+    static List<String> statements(String script) {
+        var withoutComments = script
+            .lines()
+            .filter(line -> !line.strip().startsWith("--"))
+            .collect(Collectors.joining("\n"));
+        var statements = new ArrayList<String>();
+        for (var statement : withoutComments.split(";")) {
+            if (!statement.isBlank()) {
+                statements.add(statement.strip());
+            }
+        }
+        return statements;
+    }
+}
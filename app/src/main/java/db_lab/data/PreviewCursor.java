@@ -0,0 +1,143 @@
+package db_lab.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Goes through the previews of a `LIST_PRODUCTS` result set one at a time, as
+// the rows come in from the database, see `ProductPreview.DAO.stream`.
+//
+// The cursor owns its statement and connection: they're closed as soon as the
+// last preview has been read, if anything goes wrong, or when the cursor is
+// closed, whichever comes first.
+//
+final class PreviewCursor implements Iterator<ProductPreview>, AutoCloseable {
+
+    // By default the MySQL driver reads the whole result set in memory before
+    // returning its first row, this fetch size tells it to stream the rows
+    // instead. Other drivers reject it as an invalid value, they get
+    // `FETCH_SIZE` which they take as a hint of how many rows to fetch at a
+    // time.
+    private static final int MYSQL_STREAMING = Integer.MIN_VALUE;
+    private static final int FETCH_SIZE = 1_000;
+
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final RowMapper.Cursor<ProductPreview.Builder, ProductPreview> previews;
+    private final QueryMetrics metrics;
+    private final long start;
+    private boolean closed;
+
+    private PreviewCursor(
+        Connection connection,
+        PreparedStatement statement,
+        ResultSet resultSet,
+        QueryMetrics metrics,
+        long start
+    ) throws SQLException {
+        this.connection = connection;
+        this.statement = statement;
+        this.previews = ProductPreview.DAO.PREVIEWS.cursor(resultSet);
+        this.metrics = metrics;
+        this.start = start;
+        this.finishIfDone();
+    }
+
+    // Runs `query` (that must have the same columns as `LIST_PRODUCTS`) on the
+    // given connection, which is closed along with the cursor.
+    // The statement is prepared from scratch instead of being taken from the
+    // connection's cache: while the rows are streamed no other statement can
+    // be run on the connection, so it can't be shared with anyone else.
+    //
+    static PreviewCursor open(Connection connection, String query, QueryMetrics metrics) {
+        var start = System.nanoTime();
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            try {
+                statement.setFetchSize(MYSQL_STREAMING);
+            } catch (SQLException e) {
+                statement.setFetchSize(FETCH_SIZE);
+            }
+            return new PreviewCursor(connection, statement, statement.executeQuery(), metrics, start);
+        } catch (SQLException e) {
+            metrics.failed(start);
+            closeQuietly(statement, connection, e);
+            throw new DAOException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !this.closed && this.previews.hasNext();
+    }
+
+    @Override
+    public ProductPreview next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            var preview = this.previews.next();
+            this.finishIfDone();
+            return preview;
+        } catch (SQLException e) {
+            this.fail(e);
+            throw new DAOException(e);
+        }
+    }
+
+    private void finishIfDone() {
+        if (!this.previews.hasNext()) {
+            this.metrics.record(this.start, this.previews.rows(), this.statement);
+            this.close();
+        }
+    }
+
+    private void fail(SQLException e) {
+        if (!this.closed) {
+            this.metrics.failed(this.start);
+            this.closed = true;
+            closeQuietly(this.statement, this.connection, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            // Closing a streaming result set before all of its rows have been
+            // read makes the MySQL driver read (and throw away) the rest of
+            // them: stopping early saves memory, not time.
+            try {
+                this.statement.close();
+            } catch (SQLException e) {
+                closeQuietly(null, this.connection, e);
+                throw new DAOException(e);
+            }
+            try {
+                this.connection.close();
+            } catch (SQLException e) {
+                throw new DAOException(e);
+            }
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement, Connection connection, SQLException cause) {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
@@ -1,25 +1,33 @@
 package db_lab.data;
 
 import java.sql.Connection;
-import java.util.Collections;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.IntFunction;
 
 public final class Product {
 
     public final int code;
     public final String name;
     public final String description;
-    public final Map<Material, Float> composition;
+    public final Composition composition;
+
+    // Products end up as keys and values of caches, and the description alone
+    // can be thousands of characters long: since a product never changes we
+    // compute its hash code just once.
+    private final int hashCode;
 
     public Product(int code, String name, String description, Map<Material, Float> composition) {
         this.code = code;
         this.name = name;
         this.description = description == null ? "" : description;
-        this.composition = composition == null ? Map.of() : Collections.unmodifiableMap(new HashMap<>(composition));
+        this.composition = Composition.of(composition);
+        this.hashCode = Objects.hash(this.code, this.name, this.description, this.composition);
     }
 
     @Override
@@ -32,6 +40,7 @@ public final class Product {
             var p = (Product) other;
             return (
                 p.code == this.code &&
+                p.hashCode == this.hashCode &&
                 p.name.equals(this.name) &&
                 p.description.equals(this.description) &&
                 p.composition.equals(this.composition)
@@ -43,7 +52,7 @@ public final class Product {
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.code, this.name, this.description, this.composition);
+        return this.hashCode;
     }
 
     @Override
@@ -61,8 +70,77 @@ public final class Product {
 
     public final class DAO {
 
+        private static final QueryMetrics FIND_PRODUCT = QueryMetrics.of(Queries.FIND_PRODUCT);
+        private static final QueryMetrics FIND_PRODUCTS_BATCH = QueryMetrics.of(Queries.FIND_PRODUCTS_BATCH);
+
+        private static final String[] PRODUCT_COLUMNS = { "code", "name", "description" };
+
         public static Optional<Product> find(Connection connection, int productId) {
-            throw new UnsupportedOperationException("Unimplemented");
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, Queries.FIND_PRODUCT, productId);
+                var resultSet = statement.executeQuery();
+            ) {
+                // The composition is only looked up once the product has been
+                // found, and that's when the lookup of the product is done.
+                var product = withCompositions(code -> {
+                    FIND_PRODUCT.record(start, 1, statement);
+                    return Material.DAO.forProduct(connection, code);
+                }).first(resultSet);
+                if (product.isEmpty()) {
+                    FIND_PRODUCT.record(start, 0, statement);
+                }
+                return product;
+            } catch (SQLException e) {
+                FIND_PRODUCT.failed(start);
+                throw new DAOException(e);
+            }
+        }
+
+        // Loads all the products with the given codes, indexed by code; codes
+        // with no matching product are simply missing from the result.
+        // Instead of one `find` (two round trips) for each code, the codes are
+        // split in batches of `Queries.BATCH_SIZE` and each batch takes two
+        // queries: one for the products and one for all their compositions.
+        //
+        public static Map<Integer, Product> findAll(Connection connection, int[] productIds) {
+            var codes = Arrays.stream(productIds).distinct().toArray();
+            var products = new HashMap<Integer, Product>();
+            for (int from = 0; from < codes.length; from += Queries.BATCH_SIZE) {
+                var batch = Arrays.copyOfRange(codes, from, Math.min(codes.length, from + Queries.BATCH_SIZE));
+                var compositions = Material.DAO.forProducts(connection, batch);
+                var start = System.nanoTime();
+                try (var statement = DAOUtils.prepare(connection, Queries.FIND_PRODUCTS_BATCH)) {
+                    DAOUtils.bindBatch(statement, batch, Queries.BATCH_SIZE);
+                    try (var resultSet = statement.executeQuery()) {
+                        var batchProducts = withCompositions(code ->
+                            compositions.getOrDefault(code, Composition.EMPTY)
+                        ).list(resultSet);
+                        for (var product : batchProducts) {
+                            products.put(product.code, product);
+                        }
+                        FIND_PRODUCTS_BATCH.record(start, batchProducts.size(), statement);
+                    }
+                } catch (SQLException e) {
+                    FIND_PRODUCTS_BATCH.failed(start);
+                    throw new DAOException(e);
+                }
+            }
+            return products;
+        }
+
+        // Maps the rows of `FIND_PRODUCT` and `FIND_PRODUCTS_BATCH`, whose
+        // compositions come from another query.
+        //
+        private static RowMapper<Product> withCompositions(IntFunction<Composition> compositions) {
+            return RowMapper.of(
+                (resultSet, columns) -> {
+                    var code = resultSet.getInt(columns[0]);
+                    var composition = compositions.apply(code);
+                    return new Product(code, resultSet.getString(columns[1]), resultSet.getString(columns[2]), composition);
+                },
+                PRODUCT_COLUMNS
+            );
         }
     }
 }
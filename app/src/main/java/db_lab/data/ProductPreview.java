@@ -1,12 +1,24 @@
 package db_lab.data;
 
+import db_lab.search.SearchIndex;
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
 
 public final class ProductPreview {
 
@@ -17,7 +29,7 @@ public final class ProductPreview {
     public ProductPreview(int code, String name, Set<Tag> tags) {
         this.code = code;
         this.name = name == null ? "" : name;
-        this.tags = tags == null ? Set.of() : Collections.unmodifiableSet(new HashSet<>(tags));
+        this.tags = tags == null ? TagSet.EMPTY : TagSet.of(tags);
     }
 
     @Override
@@ -51,12 +63,300 @@ public final class ProductPreview {
         );
     }
 
+    // Collects the rows of a preview, see `DAO.PREVIEWS`.
+    //
+    static final class Builder {
+
+        private final int code;
+        private final String name;
+        private List<Tag> tags;
+
+        Builder(int code, String name) {
+            this.code = code;
+            this.name = name;
+            this.tags = List.of();
+        }
+
+        void add(String tagName) {
+            if (tagName != null) {
+                if (this.tags.isEmpty()) {
+                    this.tags = new ArrayList<>(4);
+                }
+                this.tags.add(Tag.of(tagName));
+            }
+        }
+
+        ProductPreview build() {
+            return new ProductPreview(this.code, this.name, TagSet.of(this.tags));
+        }
+    }
+
     public final class DAO {
 
+        private static final QueryMetrics LIST_PRODUCTS = QueryMetrics.of(Queries.LIST_PRODUCTS);
+        private static final QueryMetrics LIST_PRODUCTS_PAGE = QueryMetrics.of(Queries.LIST_PRODUCTS_PAGE);
+        private static final QueryMetrics LATEST_PRODUCT_CHANGE = QueryMetrics.of(Queries.LATEST_PRODUCT_CHANGE);
+        private static final QueryMetrics PRODUCT_CHANGES = QueryMetrics.of(Queries.PRODUCT_CHANGES);
+        private static final QueryMetrics FIND_PREVIEWS_BATCH = QueryMetrics.of(Queries.FIND_PREVIEWS_BATCH);
+
+        // The previews matching a search: `%s` is the search translated into a
+        // condition by `condition`. It's kept here rather than among the
+        // `Queries`, which are all complete statements: there's one query for
+        // each shape of search, so they're not kept in the `StatementCache`.
+        //
+        private static final String SEARCH_PREVIEWS_TEMPLATE =
+            """
+            select    p.code, p.name, t.tag_name
+            from      PRODUCT p
+            left join TAGGED t on t.product_code = p.code
+            where     %s
+            order by  p.code
+            """;
+
+        private static final QueryMetrics SEARCH_PREVIEWS = QueryMetrics.of(SEARCH_PREVIEWS_TEMPLATE);
+
+        // The rows of `LIST_PRODUCTS` and of the other queries with the same
+        // columns: one for each of a product's tags (or a single one with a
+        // null tag if it has none), all the rows of a product next to each
+        // other. This way we only need a single round trip to the database,
+        // instead of one `Tag.DAO.ofProduct` query for each product.
+        //
+        private static final RowMapper<Builder> PREVIEW = RowMapper.of(
+            (resultSet, columns) -> new Builder(resultSet.getInt(columns[0]), resultSet.getString(columns[1])),
+            "code",
+            "name"
+        );
+        private static final RowMapper.Children<Builder> TAGS = RowMapper.children(
+            (preview, resultSet, columns) -> preview.add(resultSet.getString(columns[0])),
+            "tag_name"
+        );
+        static final RowMapper.Grouping<Builder, ProductPreview> PREVIEWS = RowMapper.grouping(
+            "code",
+            PREVIEW,
+            TAGS,
+            Builder::build
+        );
+
         public static final List<ProductPreview> list(Connection connection) {
-            // Iterating through a resultSet:
-            // https://docs.oracle.com/javase/tutorial/jdbc/basics/retrieving.html
-            throw new UnsupportedOperationException("unimplemented");
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, Queries.LIST_PRODUCTS);
+                var resultSet = statement.executeQuery();
+            ) {
+                return collect(resultSet, LIST_PRODUCTS, start);
+            } catch (SQLException e) {
+                LIST_PRODUCTS.failed(start);
+                throw new DAOException(e);
+            }
+        }
+
+        // Streams the previews of all products, sorted by code, without ever
+        // holding more than one of them in memory: the first preview is
+        // available as soon as the database sends its rows, no matter how
+        // big the catalog is.
+        //
+        // The stream borrows a connection from the data source for itself
+        // and gives it back once all previews have been read, or once the
+        // stream is closed: always close it if you might stop early, e.g.
+        //
+        //     try (var previews = ProductPreview.DAO.stream(dataSource)) {
+        //         previews.limit(10).forEach(...);
+        //     }
+        //
+        // While the stream is open no other query can run on its connection:
+        // with a data source that always hands out the same connection, like
+        // `DAOUtils.sharedDataSource`, everyone else has to wait for the
+        // stream to be closed.
+        //
+        public static final Stream<ProductPreview> stream(DataSource dataSource) {
+            Connection connection;
+            try {
+                connection = dataSource.getConnection();
+            } catch (SQLException e) {
+                throw new DAOException(e);
+            }
+            var cursor = PreviewCursor.open(connection, Queries.LIST_PRODUCTS, LIST_PRODUCTS);
+            var characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+            return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(cursor, characteristics), false)
+                .onClose(cursor::close);
+        }
+
+        // Lists at most `limit` previews, starting right after the product with
+        // the given code (which doesn't need to exist). Previews are sorted by
+        // code, so the next page starts after the last preview of this one.
+        //
+        public static final List<ProductPreview> page(Connection connection, int afterCode, int limit) {
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, Queries.LIST_PRODUCTS_PAGE, afterCode, limit);
+                var resultSet = statement.executeQuery();
+            ) {
+                return collect(resultSet, LIST_PRODUCTS_PAGE, start);
+            } catch (SQLException e) {
+                LIST_PRODUCTS_PAGE.failed(start);
+                throw new DAOException(e);
+            }
+        }
+
+        // The version of the latest change to the products, see
+        // `PRODUCT_CHANGE` in `V2__product_change_log.sql`.
+        //
+        public static final long latestVersion(Connection connection) {
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, Queries.LATEST_PRODUCT_CHANGE);
+                var resultSet = statement.executeQuery();
+            ) {
+                resultSet.next();
+                var version = resultSet.getLong("version");
+                LATEST_PRODUCT_CHANGE.record(start, 1, statement);
+                return version;
+            } catch (SQLException e) {
+                LATEST_PRODUCT_CHANGE.failed(start);
+                throw new DAOException(e);
+            }
+        }
+
+        // The changes made after version `from` and up to version `to`
+        // (included), mapping the version of each one to the code of the
+        // product it changed.
+        //
+        public static final SortedMap<Long, Integer> changes(Connection connection, long from, long to) {
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, Queries.PRODUCT_CHANGES, from, to);
+                var resultSet = statement.executeQuery();
+            ) {
+                var changes = new TreeMap<Long, Integer>();
+                var version = resultSet.findColumn("version");
+                var productCode = resultSet.findColumn("product_code");
+                while (resultSet.next()) {
+                    changes.put(resultSet.getLong(version), resultSet.getInt(productCode));
+                }
+                PRODUCT_CHANGES.record(start, changes.size(), statement);
+                return changes;
+            } catch (SQLException e) {
+                PRODUCT_CHANGES.failed(start);
+                throw new DAOException(e);
+            }
+        }
+
+        // The previews of the products with the given codes, sorted by code,
+        // in batches of `Queries.BATCH_SIZE`. The codes with no product (e.g.
+        // because it's been deleted) are mapped to an empty optional.
+        //
+        public static final SortedMap<Integer, Optional<ProductPreview>> findAll(
+            Connection connection,
+            Collection<Integer> productCodes
+        ) {
+            var codes = productCodes.stream().mapToInt(Integer::intValue).distinct().toArray();
+            var previews = new TreeMap<Integer, Optional<ProductPreview>>();
+            for (var code : codes) {
+                previews.put(code, Optional.empty());
+            }
+            for (int from = 0; from < codes.length; from += Queries.BATCH_SIZE) {
+                var batch = Arrays.copyOfRange(codes, from, Math.min(codes.length, from + Queries.BATCH_SIZE));
+                var start = System.nanoTime();
+                try (var statement = DAOUtils.prepare(connection, Queries.FIND_PREVIEWS_BATCH)) {
+                    DAOUtils.bindBatch(statement, batch, Queries.BATCH_SIZE);
+                    try (var resultSet = statement.executeQuery()) {
+                        var rows = PREVIEWS.forEach(resultSet, (code, preview) -> previews.put(code, Optional.of(preview)));
+                        FIND_PREVIEWS_BATCH.record(start, rows, statement);
+                    }
+                } catch (SQLException e) {
+                    FIND_PREVIEWS_BATCH.failed(start);
+                    throw new DAOException(e);
+                }
+            }
+            return previews;
+        }
+
+        // The previews of all the products matching the given search, sorted
+        // by code, just like `SearchIndex.search` finds them but without
+        // having to load all the previews first: the database goes through
+        // them instead.
+        // Throws an `IllegalArgumentException` if the search is malformed.
+        //
+        public static final List<ProductPreview> search(Connection connection, String search) {
+            var parameters = new ArrayList<Object>();
+            var query = searchQuery(search, parameters);
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, query, parameters.toArray());
+                var resultSet = statement.executeQuery();
+            ) {
+                return collect(resultSet, SEARCH_PREVIEWS, start);
+            } catch (SQLException e) {
+                SEARCH_PREVIEWS.failed(start);
+                throw new DAOException(e);
+            }
+        }
+
+        // The query for the given search, adding the values of its parameters
+        // to the given list.
+        //
+        static String searchQuery(String search, List<Object> parameters) {
+            return SEARCH_PREVIEWS_TEMPLATE.formatted(condition(search, parameters));
+        }
+
+        // Translates a search into the condition of `SEARCH_PREVIEWS_TEMPLATE`,
+        // adding the values of its parameters to the given list.
+        //
+        static String condition(String search, List<Object> parameters) {
+            return SearchIndex.parse(
+                search,
+                new SearchIndex.Terms<String>() {
+                    @Override
+                    public String all() {
+                        return "true";
+                    }
+
+                    @Override
+                    public String tagged(String tag) {
+                        parameters.add(tag);
+                        return Queries.SEARCH_TAGGED;
+                    }
+
+                    @Override
+                    public String namesStartingWith(String prefix) {
+                        parameters.add(namePrefix(prefix));
+                        return Queries.SEARCH_NAME_PREFIX;
+                    }
+
+                    @Override
+                    public String and(String left, String right) {
+                        return "(" + left + " and " + right + ")";
+                    }
+
+                    @Override
+                    public String or(String left, String right) {
+                        return "(" + left + " or " + right + ")";
+                    }
+
+                    @Override
+                    public String not(String term) {
+                        return "not (" + term + ")";
+                    }
+                }
+            );
+        }
+
+        // The regular expression matching the names with a word starting with
+        // the given prefix: either it's at the start of the name, or right
+        // after something that's not a letter nor a digit. The prefix is
+        // quoted, MySQL's regular expressions quote with `\Q...\E` like Java.
+        //
+        static String namePrefix(String prefix) {
+            return "(^|[^\\p{L}\\p{N}])" + Pattern.quote(prefix);
+        }
+
+        private static List<ProductPreview> collect(ResultSet resultSet, QueryMetrics metrics, long start)
+            throws SQLException {
+            var previews = new ArrayList<ProductPreview>();
+            var rows = PREVIEWS.forEach(resultSet, (code, preview) -> previews.add(preview));
+            metrics.record(start, rows, resultSet.getStatement());
+            return previews;
         }
     }
 }
@@ -1,20 +1,229 @@
 package db_lab.data;
 
+import java.util.Collections;
+
 public final class Queries {
 
     public static final String TAGS_FOR_PRODUCT =
         """
+        select t.tag_name
+        from   TAGGED t
+        where  t.product_code = ?
         """;
 
+    // All products with their tags, one row per (product, tag) pair.
+    // The left join keeps the products without any tag (with a null tag_name)
+    // and the ordering groups all the rows of a product together, so that the
+    // previews can be built in a single pass over the result set instead of
+    // running a `TAGS_FOR_PRODUCT` query for each product.
+    //
     public static final String LIST_PRODUCTS =
         """
+        select    p.code, p.name, t.tag_name
+        from      PRODUCT p
+        left join TAGGED t on t.product_code = p.code
+        order by  p.code
+        """;
+
+    // A page of at most `limit` products (with their tags) whose code comes
+    // after the given one.
+    // Instead of skipping the products of the previous pages with an `offset`,
+    // which would have the database go through all of them each time, we start
+    // right after the last code we've seen: thanks to the primary key index
+    // loading a page costs the same no matter how far into the catalog it is.
+    //
+    public static final String LIST_PRODUCTS_PAGE =
+        """
+        select    p.code, p.name, t.tag_name
+        from      (select code, name
+                   from   PRODUCT
+                   where  code > ?
+                   order  by code
+                   limit  ?) p
+        left join TAGGED t on t.product_code = p.code
+        order by  p.code
+        """;
+
+    // The version of the latest change to the products, `max` on the primary
+    // key is answered straight from the index without reading the table.
+    //
+    public static final String LATEST_PRODUCT_CHANGE =
+        """
+        select coalesce(max(c.version), 0) as version
+        from   PRODUCT_CHANGE c
+        """;
+
+    // The changes to the products in the (`from`, `to`] versions range: the
+    // version of each one and the product it changed.
+    //
+    public static final String PRODUCT_CHANGES =
+        """
+        select   c.version, c.product_code
+        from     PRODUCT_CHANGE c
+        where    c.version > ? and c.version <= ?
+        order by c.version
         """;
 
+    // Compositions only refer to their materials by code: the materials
+    // themselves are looked up in the `MaterialDictionary`, instead of having
+    // the database join them and send their descriptions again for each
+    // product.
+    //
     public static final String PRODUCT_COMPOSITION =
         """
+        select c.material_code, c.percent
+        from   COMPOSITION c
+        where  c.product_code = ?
         """;
 
     public static final String FIND_PRODUCT =
         """
+        select p.code, p.name, p.description
+        from   PRODUCT p
+        where  p.code = ?
+        """;
+
+    // Looking up many products one at a time would take a round trip for each
+    // of them, so `Product.DAO.findAll` looks them up in batches of (at most)
+    // `BATCH_SIZE` codes with the following queries.
+    // Always having the same number of placeholders means the queries' text
+    // never changes, so their prepared statements can be reused.
+    //
+    public static final int BATCH_SIZE = 500;
+
+    public static final String FIND_PRODUCTS_BATCH =
+        """
+        select p.code, p.name, p.description
+        from   PRODUCT p
+        where  p.code in (%s)
+        """.formatted(placeholders(BATCH_SIZE));
+
+    // The previews of a batch of products, with the same columns as
+    // `LIST_PRODUCTS`.
+    //
+    public static final String FIND_PREVIEWS_BATCH =
+        """
+        select    p.code, p.name, t.tag_name
+        from      PRODUCT p
+        left join TAGGED t on t.product_code = p.code
+        where     p.code in (%s)
+        order by  p.code
+        """.formatted(placeholders(BATCH_SIZE));
+
+    // The terms of the condition `ProductPreview.DAO.search` translates a
+    // search into (see `SearchIndex` for the syntax), when there's no index to
+    // answer it.
+    //
+    public static final String SEARCH_TAGGED =
+        "exists (select 1 from TAGGED s where s.product_code = p.code and s.tag_name = ?)";
+
+    // Matches the names with a word (a run of letters and digits) starting
+    // with the given prefix, see `ProductPreview.DAO.namePrefix`.
+    //
+    public static final String SEARCH_NAME_PREFIX = "p.name regexp ?";
+
+    // The rows of each product are next to each other, so that their
+    // compositions can be built in a single pass. The composition's primary
+    // key starts with the product code, the ordering comes for free.
+    //
+    public static final String PRODUCTS_COMPOSITION_BATCH =
+        """
+        select   c.product_code, c.material_code, c.percent
+        from     COMPOSITION c
+        where    c.product_code in (%s)
+        order by c.product_code
+        """.formatted(placeholders(BATCH_SIZE));
+
+    // The reference data kept in memory by the `MaterialDictionary` and by
+    // `BulkImport`, so that it doesn't have to look up a material or a tag for
+    // each imported product.
+    //
+    public static final String ALL_MATERIALS =
+        """
+        select m.code, m.description
+        from   MATERIAL m
         """;
+
+    // How many times the materials have been updated: the `MaterialDictionary`
+    // loads them again whenever this changes.
+    //
+    public static final String MATERIAL_CHANGES =
+        """
+        select count(*) as changes
+        from   MATERIAL_CHANGE m
+        """;
+
+    public static final String ALL_TAGS =
+        """
+        select t.name
+        from   TAG t
+        """;
+
+    // The inserts run by `BulkImport`: each one takes the values of many rows
+    // at once (see `multiRowInsert`), so that importing thousands of products
+    // only takes a handful of round trips.
+    //
+    public static final String INSERT_MATERIALS = "insert into MATERIAL (description) values";
+
+    public static final String INSERT_TAGS = "insert into TAG (name) values";
+
+    public static final String INSERT_PRODUCTS = "insert into PRODUCT (name, description) values";
+
+    public static final String INSERT_COMPOSITIONS =
+        "insert into COMPOSITION (product_code, material_code, percent) values";
+
+    public static final String INSERT_TAGGED = "insert into TAGGED (product_code, tag_name) values";
+
+    public static final String INSERT_PRODUCT_CHANGES = "insert into PRODUCT_CHANGE (product_code) values";
+
+    // While the import runs the change tracking triggers log nothing (see
+    // `V2__product_change_log.sql`): it logs a single change for each product
+    // itself.
+    //
+    public static final String DISABLE_CHANGE_TRIGGERS = "set @db_lab_change_triggers = 'off'";
+
+    public static final String ENABLE_CHANGE_TRIGGERS = "set @db_lab_change_triggers = null";
+
+    // Appends the placeholders for `rows` rows of `columns` values each to one
+    // of the inserts above:
+    //
+    //     multiRowInsert(INSERT_TAGGED, 2, 2)
+    //     // insert into TAGGED (product_code, tag_name) values (?, ?), (?, ?)
+    //
+    public static String multiRowInsert(String insert, int rows, int columns) {
+        var row = "(" + placeholders(columns) + ")";
+        return insert + " " + String.join(", ", Collections.nCopies(rows, row));
+    }
+
+    // The queries used by `Migrations` to keep track of the migrations that
+    // have been applied to the schema.
+    //
+    public static final String CREATE_SCHEMA_VERSION =
+        """
+        create table if not exists SCHEMA_VERSION (
+            version int not null,
+            description varchar(128) not null,
+            applied_at timestamp not null default current_timestamp,
+            constraint schema_version_pk primary key (version)
+        )
+        """;
+
+    public static final String SCHEMA_VERSION =
+        """
+        select coalesce(max(s.version), 0) as version
+        from   SCHEMA_VERSION s
+        """;
+
+    public static final String RECORD_MIGRATION = "insert into SCHEMA_VERSION (version, description) values (?, ?)";
+
+    // A named lock, so that two applications starting at the same time don't
+    // both try to apply the same migrations.
+    //
+    public static final String LOCK_MIGRATIONS = "select get_lock('db_lab.migrations', ?) as locked";
+
+    public static final String UNLOCK_MIGRATIONS = "select release_lock('db_lab.migrations') as released";
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
 }
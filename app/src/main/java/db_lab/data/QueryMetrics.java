@@ -0,0 +1,204 @@
+package db_lab.data;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Metrics about the executions of one of the `Queries`: how many times it was
+// run, how many rows it fetched, how many times it failed and how long it
+// took.
+//
+// Each DAO method measures the queries it runs:
+//
+//     var start = System.nanoTime();
+//     try (var statement = ...; var resultSet = statement.executeQuery()) {
+//         ...
+//         metrics.record(start, rows, statement);
+//     } catch (SQLException e) {
+//         metrics.failed(start);
+//         ...
+//     }
+//
+// Recording an execution doesn't allocate anything (unless it's a slow one),
+// so that it can stay on even for the queries we run the most.
+// The metrics of each query are published as an MBean (see
+// `QueryMetricsMBean`), and any execution slower than
+// `slowQueryThreshold` is logged, along with the statement and its
+// parameters, to the `db_lab.slow-queries` logger.
+//
+public final class QueryMetrics implements QueryMetricsMBean {
+
+    // The threshold can also be set at startup with
+    // `-Ddb_lab.slowQueryMillis=...`.
+    private static final long DEFAULT_SLOW_QUERY_MILLIS = Long.getLong("db_lab.slowQueryMillis", 200);
+    private static volatile long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_MILLIS);
+
+    private static final System.Logger SLOW_QUERIES = System.getLogger("db_lab.slow-queries");
+    private static final Map<String, String> NAMES = queryNames();
+    private static final ConcurrentHashMap<String, QueryMetrics> METRICS = new ConcurrentHashMap<>();
+
+    public final String name;
+    private final AtomicLong calls;
+    private final AtomicLong rows;
+    private final AtomicLong errors;
+    private final LatencyHistogram latencies;
+
+    private QueryMetrics(String name) {
+        this.name = name;
+        this.calls = new AtomicLong();
+        this.rows = new AtomicLong();
+        this.errors = new AtomicLong();
+        this.latencies = new LatencyHistogram();
+    }
+
+    // Returns the metrics of the given query, named after the `Queries`
+    // constant holding it.
+    //
+    public static QueryMetrics of(String query) {
+        return METRICS.computeIfAbsent(query, QueryMetrics::register);
+    }
+
+    public static Collection<QueryMetrics> all() {
+        return List.copyOf(METRICS.values());
+    }
+
+    public static Duration slowQueryThreshold() {
+        return Duration.ofNanos(slowQueryNanos);
+    }
+
+    public static void setSlowQueryThreshold(Duration threshold) {
+        slowQueryNanos = threshold.toNanos();
+    }
+
+    // Records a successful execution that started at `start` (as given by
+    // `System.nanoTime()`) and fetched the given number of rows.
+    //
+    public void record(long start, long rows, Statement statement) {
+        var elapsed = System.nanoTime() - start;
+        this.calls.incrementAndGet();
+        this.rows.addAndGet(rows);
+        this.latencies.record(elapsed);
+        if (elapsed > slowQueryNanos) {
+            this.logSlowQuery(elapsed, statement);
+        }
+    }
+
+    public void failed(long start) {
+        this.calls.incrementAndGet();
+        this.errors.incrementAndGet();
+        this.latencies.record(System.nanoTime() - start);
+    }
+
+    private void logSlowQuery(long elapsed, Statement statement) {
+        // Most drivers (MySQL's included) print a prepared statement with the
+        // values bound to its parameters.
+        SLOW_QUERIES.log(
+            System.Logger.Level.WARNING,
+            "Slow query {0} took {1} ms: {2}",
+            this.name,
+            TimeUnit.NANOSECONDS.toMillis(elapsed),
+            statement
+        );
+    }
+
+    @Override
+    public String getQuery() {
+        return this.name;
+    }
+
+    @Override
+    public long getCalls() {
+        return this.calls.get();
+    }
+
+    @Override
+    public long getRows() {
+        return this.rows.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return this.latencies.mean() / 1_000;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return this.latencies.percentile(0.5) / 1_000;
+    }
+
+    @Override
+    public long getP99Micros() {
+        return this.latencies.percentile(0.99) / 1_000;
+    }
+
+    @Override
+    public long getP999Micros() {
+        return this.latencies.percentile(0.999) / 1_000;
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return this.latencies.max() / 1_000;
+    }
+
+    @Override
+    public String toString() {
+        return Printer.stringify(
+            "QueryMetrics",
+            List.of(
+                Printer.field("query", this.name),
+                Printer.field("calls", this.getCalls()),
+                Printer.field("rows", this.getRows()),
+                Printer.field("errors", this.getErrors()),
+                Printer.field("p50Micros", this.getP50Micros()),
+                Printer.field("p99Micros", this.getP99Micros()),
+                Printer.field("p999Micros", this.getP999Micros())
+            )
+        );
+    }
+
+    private static QueryMetrics register(String query) {
+        var metrics = new QueryMetrics(NAMES.getOrDefault(query, "QUERY_" + Integer.toHexString(query.hashCode())));
+        try {
+            var name = new ObjectName("db_lab:type=Query,name=" + metrics.name);
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            // Not being able to publish the metrics is no reason to stop
+            // running queries: they're still collected.
+            SLOW_QUERIES.log(System.Logger.Level.DEBUG, "Couldn't register the metrics of " + metrics.name, e);
+        }
+        return metrics;
+    }
+
+    // Maps the text of each of the `Queries` to the name of its constant.
+    //
+    private static Map<String, String> queryNames() {
+        var names = new HashMap<String, String>();
+        for (var field : Queries.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    names.put((String) field.get(null), field.getName());
+                } catch (IllegalAccessException e) {}
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,24 @@
+package db_lab.data;
+
+// What JMX clients (like JConsole or VisualVM) get to see of the `QueryMetrics`
+// of each query, under `db_lab:type=Query,name=<query>`.
+//
+public interface QueryMetricsMBean {
+    public String getQuery();
+
+    public long getCalls();
+
+    public long getRows();
+
+    public long getErrors();
+
+    public double getMeanMicros();
+
+    public long getP50Micros();
+
+    public long getP99Micros();
+
+    public long getP999Micros();
+
+    public long getMaxMicros();
+}
@@ -0,0 +1,366 @@
+package db_lab.data;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Keeps a database that's slow or down from blocking its callers:
+//
+// - Each call has a deadline: once it's over the caller gets a `DAOException`
+//   (caused by a `SQLTimeoutException`) instead of waiting any longer. The
+//   attempt itself goes on in the background until the driver gives up on
+//   it: its queries time out at the deadline, rounded up to the second, see
+//   `DAOUtils.queryTimeout`.
+// - Attempts failing with a transient error (a lost connection, a deadlock, a
+//   timeout...) are retried up to `maxAttempts` times, waiting a random time
+//   between zero and an exponentially growing backoff before each retry: the
+//   jitter keeps the callers that failed together from all coming back at the
+//   same time.
+// - After `failureThreshold` transient failures in a row the circuit opens:
+//   for the next `openFor` calls fail right away, without bothering the
+//   database. Then a single call is let through to try it again, and the
+//   circuit closes as soon as one succeeds.
+// - Reads can be hedged: if an attempt is taking longer than 95% of the
+//   previous ones took, a second one is started alongside it and whichever
+//   answers first wins. Each attempt borrows its own connection, so this only
+//   makes sense with a `ConnectionPool`.
+//
+// Attempts run on virtual threads of their own.
+//
+public final class Resilience {
+
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(5);
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final Duration DEFAULT_BACKOFF = Duration.ofMillis(50);
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_FOR = Duration.ofSeconds(5);
+
+    // The longest wait between two attempts, however many there have been.
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(1);
+    // How many attempts must have succeeded before their 95th percentile is
+    // trusted as the point where to hedge.
+    static final int MIN_HEDGE_SAMPLES = 20;
+    private static final ExecutorService ATTEMPTS = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("db_lab-attempt-", 0).factory()
+    );
+
+    private final Duration deadline;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final boolean hedge;
+    private final CircuitBreaker breaker;
+    // How long the successful attempts took.
+    private final LatencyHistogram latencies;
+    private final LongAdder calls;
+    private final LongAdder retries;
+    private final LongAdder hedges;
+    private final LongAdder timeouts;
+    private final LongAdder rejected;
+
+    public Resilience(boolean hedge) {
+        this(DEFAULT_DEADLINE, DEFAULT_MAX_ATTEMPTS, DEFAULT_BACKOFF, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_FOR, hedge);
+    }
+
+    public Resilience(
+        Duration deadline,
+        int maxAttempts,
+        Duration backoff,
+        int failureThreshold,
+        Duration openFor,
+        boolean hedge
+    ) {
+        Objects.requireNonNull(deadline, "Resilience created with null deadline");
+        Objects.requireNonNull(backoff, "Resilience created with null backoff");
+        Objects.requireNonNull(openFor, "Resilience created with null open duration");
+        if (deadline.isNegative() || deadline.isZero()) {
+            throw new IllegalArgumentException("Resilience created with non positive deadline: " + deadline);
+        } else if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Resilience created with non positive attempts: " + maxAttempts);
+        } else if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Resilience created with non positive threshold: " + failureThreshold);
+        }
+        this.deadline = deadline;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+        this.hedge = hedge;
+        this.breaker = new CircuitBreaker(failureThreshold, openFor);
+        this.latencies = new LatencyHistogram();
+        this.calls = new LongAdder();
+        this.retries = new LongAdder();
+        this.hedges = new LongAdder();
+        this.timeouts = new LongAdder();
+        this.rejected = new LongAdder();
+    }
+
+    // Runs the given action, retrying it if it fails with a transient error.
+    //
+    public <T> T call(Supplier<T> action) {
+        return this.run(action, false);
+    }
+
+    // Same as `call`, but the action may also be hedged: it must only read
+    // from the database, since it may run twice at the same time.
+    //
+    public <T> T read(Supplier<T> action) {
+        return this.run(action, this.hedge);
+    }
+
+    public Stats stats() {
+        return new Stats(
+            this.calls.sum(),
+            this.retries.sum(),
+            this.hedges.sum(),
+            this.timeouts.sum(),
+            this.rejected.sum(),
+            this.breaker.isOpen()
+        );
+    }
+
+    private <T> T run(Supplier<T> action, boolean hedge) {
+        this.calls.increment();
+        var deadline = System.nanoTime() + this.deadline.toNanos();
+        for (int attempt = 1;; attempt++) {
+            if (!this.breaker.allows()) {
+                this.rejected.increment();
+                throw new DAOException("The database is unavailable, not trying again for a while");
+            }
+            RuntimeException error;
+            try {
+                var result = this.attempt(action, hedge, deadline);
+                this.breaker.succeeded();
+                return result;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    // An error that isn't transient (a syntax error, a
+                    // constraint violation...) still means the database is
+                    // answering.
+                    this.breaker.succeeded();
+                    throw e;
+                }
+                this.breaker.failed();
+                error = e;
+            } finally {
+                // Whatever escaped the attempt (an `Error` too), it's over:
+                // if it was the one trying the database again, the next call
+                // must be let through.
+                this.breaker.tried();
+            }
+            var backoff = this.backoff(attempt);
+            if (attempt == this.maxAttempts || System.nanoTime() + backoff >= deadline) {
+                throw error;
+            }
+            this.retries.increment();
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoff);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw error;
+            }
+        }
+    }
+
+    private <T> T attempt(Supplier<T> action, boolean hedge, long deadline) {
+        var result = this.start(action, deadline);
+        var hedgeAfter = hedge ? this.hedgeDelay() : -1;
+        if (hedgeAfter >= 0 && System.nanoTime() + hedgeAfter < deadline) {
+            try {
+                result.get(hedgeAfter, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                this.hedges.increment();
+                result = firstSuccessful(result, this.start(action, deadline));
+            } catch (ExecutionException | InterruptedException e) {
+                // Reported by `await`.
+            }
+        }
+        return this.await(result, deadline);
+    }
+
+    private <T> CompletableFuture<T> start(Supplier<T> action, long deadline) {
+        return CompletableFuture.supplyAsync(
+            () -> {
+                var start = System.nanoTime();
+                var result = DAOUtils.beforeDeadline(deadline, action);
+                this.latencies.record(System.nanoTime() - start);
+                return result;
+            },
+            ATTEMPTS
+        );
+    }
+
+    private <T> T await(CompletableFuture<T> result, long deadline) {
+        try {
+            return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            this.timeouts.increment();
+            throw new DAOException(new SQLTimeoutException("No answer from the database within " + this.deadline));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new DAOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DAOException(e);
+        }
+    }
+
+    // The point after which an attempt is hedged (in nanoseconds), or -1 if
+    // there aren't enough attempts yet to tell.
+    //
+    private long hedgeDelay() {
+        return this.latencies.count() < MIN_HEDGE_SAMPLES ? -1 : this.latencies.percentile(0.95);
+    }
+
+    private long backoff(int attempt) {
+        var cap = Math.min(MAX_BACKOFF.toNanos(), this.backoff.toNanos() << Math.min(attempt - 1, 30));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    // Completes with the first of the two results to succeed, or with the
+    // error of the last one to fail if neither does.
+    //
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        var result = new CompletableFuture<T>();
+        var failures = new AtomicInteger();
+        for (var attempt : List.of(first, second)) {
+            attempt.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    // Whether the error, or any of its causes, is one that may go away by
+    // simply trying again. Besides the exceptions JDBC marks as transient,
+    // SQL states 08 (connection errors) and 40 (rolled back transactions, e.g.
+    // a deadlock) are.
+    //
+    static boolean isTransient(Throwable error) {
+        for (var cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            } else if (cause instanceof SQLException) {
+                var state = ((SQLException) cause).getSQLState();
+                if (state != null && (state.startsWith("08") || state.startsWith("40"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class CircuitBreaker {
+
+        private final int failureThreshold;
+        private final long openForNanos;
+        // All the fields below are guarded by the breaker's lock.
+        private int failures;
+        private boolean open;
+        private long openUntil;
+        // The thread running the call let through to try the database again,
+        // once the circuit has been open for long enough, while it's running.
+        private Thread trying;
+
+        private CircuitBreaker(int failureThreshold, Duration openFor) {
+            this.failureThreshold = failureThreshold;
+            this.openForNanos = openFor.toNanos();
+        }
+
+        private synchronized boolean allows() {
+            if (!this.open) {
+                return true;
+            } else if (this.trying != null || System.nanoTime() < this.openUntil) {
+                return false;
+            }
+            this.trying = Thread.currentThread();
+            return true;
+        }
+
+        private synchronized void succeeded() {
+            this.failures = 0;
+            this.open = false;
+        }
+
+        private synchronized void failed() {
+            this.failures++;
+            if (this.open || this.failures >= this.failureThreshold) {
+                this.open = true;
+                this.openUntil = System.nanoTime() + this.openForNanos;
+            }
+        }
+
+        // Called once an attempt is over, however it ended.
+        //
+        private synchronized void tried() {
+            if (this.trying == Thread.currentThread()) {
+                this.trying = null;
+            }
+        }
+
+        private synchronized boolean isOpen() {
+            return this.open;
+        }
+    }
+
+    public static final class Stats {
+
+        public final long calls;
+        public final long retries;
+        public final long hedges;
+        // Calls that gave up waiting at their deadline.
+        public final long timeouts;
+        // Calls that failed right away because the circuit was open.
+        public final long rejected;
+        public final boolean open;
+
+        public Stats(long calls, long retries, long hedges, long timeouts, long rejected, boolean open) {
+            this.calls = calls;
+            this.retries = retries;
+            this.hedges = hedges;
+            this.timeouts = timeouts;
+            this.rejected = rejected;
+            this.open = open;
+        }
+
+        // The fraction of the calls that needed a second, concurrent attempt.
+        public double hedgeRate() {
+            return this.calls == 0 ? 0 : (double) this.hedges / this.calls;
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "Resilience.Stats",
+                List.of(
+                    Printer.field("calls", this.calls),
+                    Printer.field("retries", this.retries),
+                    Printer.field("hedges", this.hedges),
+                    Printer.field("timeouts", this.timeouts),
+                    Printer.field("rejected", this.rejected),
+                    Printer.field("open", this.open),
+                    Printer.field("hedgeRate", this.hedgeRate())
+                )
+            );
+        }
+    }
+}
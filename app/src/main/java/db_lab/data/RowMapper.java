@@ -0,0 +1,251 @@
+package db_lab.data;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+// Turns the rows of a result set into objects.
+//
+// Looking up a column by name means hashing (or comparing) its name, doing it
+// for each column of each row adds up quickly. A mapper knows the names of the
+// columns it reads: it looks them up once for each result set and then reads
+// each row by index.
+//
+//     private static final RowMapper<Material> MATERIAL = RowMapper.of(
+//         (resultSet, columns) -> Material.of(resultSet.getInt(columns[0]), resultSet.getString(columns[1])),
+//         "code",
+//         "description"
+//     );
+//
+//     var materials = MATERIAL.list(resultSet);
+//
+// The `columns` array given to the row has the indexes of the columns in the
+// same order as their names.
+//
+public final class RowMapper<T> {
+
+    @FunctionalInterface
+    public interface Row<T> {
+        T read(ResultSet resultSet, int[] columns) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Child<A> {
+        void addTo(A parent, ResultSet resultSet, int[] columns) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface Group<T> {
+        void accept(int key, T value) throws SQLException;
+    }
+
+    private final String[] columns;
+    private final Row<T> row;
+
+    private RowMapper(Row<T> row, String[] columns) {
+        this.row = row;
+        this.columns = columns;
+    }
+
+    public static <T> RowMapper<T> of(Row<T> row, String... columns) {
+        Objects.requireNonNull(row, "Row mapper created with null row");
+        return new RowMapper<>(row, columns.clone());
+    }
+
+    // The indexes of the mapper's columns in the given result set.
+    //
+    public int[] columns(ResultSet resultSet) throws SQLException {
+        return indexes(resultSet, this.columns);
+    }
+
+    // Reads the current row, with the columns found by `columns`.
+    //
+    public T read(ResultSet resultSet, int[] columns) throws SQLException {
+        return this.row.read(resultSet, columns);
+    }
+
+    public List<T> list(ResultSet resultSet) throws SQLException {
+        var columns = this.columns(resultSet);
+        var values = new ArrayList<T>();
+        while (resultSet.next()) {
+            values.add(this.row.read(resultSet, columns));
+        }
+        return values;
+    }
+
+    public Optional<T> first(ResultSet resultSet) throws SQLException {
+        if (!resultSet.next()) {
+            return Optional.empty();
+        }
+        return Optional.of(this.row.read(resultSet, this.columns(resultSet)));
+    }
+
+    // The rows that belong to an object built from other rows, like the tags
+    // of a product.
+    //
+    public static <A> Children<A> children(Child<A> child, String... columns) {
+        Objects.requireNonNull(child, "Children created with null child");
+        return new Children<>(child, columns.clone());
+    }
+
+    // Builds one object out of each run of consecutive rows with the same
+    // (integer) key: the `parent` reads the first row of the run into an
+    // accumulator, the `children` add each row to it (the first one included)
+    // and `finish` turns it into the final object.
+    // The rows of an object must all be next to each other, so the query must
+    // be ordered by the key.
+    //
+    public static <A, T> Grouping<A, T> grouping(
+        String key,
+        RowMapper<A> parent,
+        Children<A> children,
+        Function<A, T> finish
+    ) {
+        Objects.requireNonNull(key, "Grouping created with null key");
+        Objects.requireNonNull(parent, "Grouping created with null parent");
+        Objects.requireNonNull(children, "Grouping created with null children");
+        Objects.requireNonNull(finish, "Grouping created with null finish");
+        return new Grouping<>(key, parent, children, finish);
+    }
+
+    private static int[] indexes(ResultSet resultSet, String[] columns) throws SQLException {
+        var indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indexes[i] = resultSet.findColumn(columns[i]);
+        }
+        return indexes;
+    }
+
+    public static final class Children<A> {
+
+        private final Child<A> child;
+        private final String[] columns;
+
+        private Children(Child<A> child, String[] columns) {
+            this.child = child;
+            this.columns = columns;
+        }
+
+        public int[] columns(ResultSet resultSet) throws SQLException {
+            return indexes(resultSet, this.columns);
+        }
+
+        // Adds all the (remaining) rows of the result set to the parent and
+        // returns how many there were.
+        //
+        public int addAll(A parent, ResultSet resultSet) throws SQLException {
+            var columns = this.columns(resultSet);
+            var rows = 0;
+            while (resultSet.next()) {
+                this.child.addTo(parent, resultSet, columns);
+                rows++;
+            }
+            return rows;
+        }
+    }
+
+    public static final class Grouping<A, T> {
+
+        private final String[] key;
+        private final RowMapper<A> parent;
+        private final Children<A> children;
+        private final Function<A, T> finish;
+
+        private Grouping(String key, RowMapper<A> parent, Children<A> children, Function<A, T> finish) {
+            this.key = new String[] { key };
+            this.parent = parent;
+            this.children = children;
+            this.finish = finish;
+        }
+
+        // Goes through all the rows of the result set, handing each object
+        // along with its key to `group`. Returns the number of rows read.
+        //
+        public long forEach(ResultSet resultSet, Group<T> group) throws SQLException {
+            var cursor = this.cursor(resultSet);
+            while (cursor.hasNext()) {
+                var key = cursor.nextKey();
+                group.accept(key, cursor.next());
+            }
+            return cursor.rows();
+        }
+
+        public List<T> list(ResultSet resultSet) throws SQLException {
+            var values = new ArrayList<T>();
+            this.forEach(resultSet, (key, value) -> values.add(value));
+            return values;
+        }
+
+        // Reads the objects one at a time, without ever holding more than one
+        // of them in memory.
+        //
+        public Cursor<A, T> cursor(ResultSet resultSet) throws SQLException {
+            return new Cursor<>(this, resultSet);
+        }
+    }
+
+    // Reads the objects of a `Grouping` one at a time. The cursor always
+    // reads one row ahead: it's on the first row of the next object, if
+    // there's one.
+    //
+    public static final class Cursor<A, T> {
+
+        private final Grouping<A, T> grouping;
+        private final ResultSet resultSet;
+        private final int key;
+        private final int[] parentColumns;
+        private final int[] childColumns;
+        private boolean pending;
+        private long rows;
+
+        private Cursor(Grouping<A, T> grouping, ResultSet resultSet) throws SQLException {
+            this.grouping = grouping;
+            this.resultSet = resultSet;
+            this.key = indexes(resultSet, grouping.key)[0];
+            this.parentColumns = grouping.parent.columns(resultSet);
+            this.childColumns = grouping.children.columns(resultSet);
+            this.advance();
+        }
+
+        public boolean hasNext() {
+            return this.pending;
+        }
+
+        // The key of the object `next` is going to return.
+        //
+        public int nextKey() throws SQLException {
+            if (!this.pending) {
+                throw new NoSuchElementException();
+            }
+            return this.resultSet.getInt(this.key);
+        }
+
+        public T next() throws SQLException {
+            var key = this.nextKey();
+            var parent = this.grouping.parent.read(this.resultSet, this.parentColumns);
+            do {
+                this.grouping.children.child.addTo(parent, this.resultSet, this.childColumns);
+                this.advance();
+            } while (this.pending && this.resultSet.getInt(this.key) == key);
+            return this.grouping.finish.apply(parent);
+        }
+
+        // The rows read so far, including the one read ahead.
+        //
+        public long rows() {
+            return this.rows;
+        }
+
+        private void advance() throws SQLException {
+            this.pending = this.resultSet.next();
+            if (this.pending) {
+                this.rows++;
+            }
+        }
+    }
+}
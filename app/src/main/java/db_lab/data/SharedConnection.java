@@ -0,0 +1,148 @@
+package db_lab.data;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+// A `DataSource` that always hands out the same connection.
+//
+// This allows code written to borrow a connection for each operation (and
+// close it when done) to also work with a single connection that is owned by
+// someone else: closing a connection obtained from here does nothing, it's up
+// to the connection's owner to close it when the application is done with it.
+//
+// A JDBC connection can't run two statements at the same time, so it's handed
+// out to one thread at a time: `getConnection` waits until whoever is using the
+// connection closes what they got. That may happen on another thread (e.g. a
+// stream of previews closed by whoever consumed it).
+// A thread asking for the connection again before closing what it got would
+// wait for itself forever: it gets an `IllegalStateException` instead.
+//
+final class SharedConnection implements DataSource {
+
+    private final Connection connection;
+    private final StatementCache statements;
+    private final MaterialDictionary materials;
+    private final Semaphore permit;
+    // The thread that got the connection, until it's closed.
+    private final AtomicReference<Thread> owner;
+
+    SharedConnection(Connection connection) {
+        Objects.requireNonNull(connection, "Shared connection is null");
+        this.connection = connection;
+        // There's no way for us to know when the connection gets closed, but
+        // that's fine: closing a connection also closes all its statements.
+        this.statements = new StatementCache(connection, StatementCache.DEFAULT_SIZE);
+        this.materials = new MaterialDictionary();
+        this.permit = new Semaphore(1);
+        this.owner = new AtomicReference<>();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        var thread = Thread.currentThread();
+        if (this.owner.get() == thread) {
+            throw new IllegalStateException("The shared connection is already in use by this thread");
+        }
+        try {
+            this.permit.acquire();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            throw new SQLException("Interrupted while waiting for the shared connection", e);
+        }
+        this.owner.set(thread);
+        // Closing the same proxy more than once only gives the permit back
+        // once.
+        var released = new AtomicBoolean(false);
+        var proxy = Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            (self, method, args) -> {
+                switch (method.getName()) {
+                    case "close":
+                        if (released.compareAndSet(false, true)) {
+                            this.owner.set(null);
+                            this.permit.release();
+                        }
+                        return null;
+                    case "isClosed":
+                        if (released.get()) {
+                            return true;
+                        }
+                        break;
+                    case "equals":
+                        return self == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    case "isWrapperFor":
+                        if (args[0] == StatementCache.class || args[0] == MaterialDictionary.class) {
+                            return true;
+                        }
+                        break;
+                    case "unwrap":
+                        if (args[0] == StatementCache.class) {
+                            return this.statements;
+                        } else if (args[0] == MaterialDictionary.class) {
+                            return this.materials;
+                        }
+                        break;
+                }
+                try {
+                    return method.invoke(this.connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        );
+        return (Connection) proxy;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("A shared connection can't be opened with other credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {}
+
+    @Override
+    public void setLoginTimeout(int seconds) {}
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        if (type.isInstance(this)) {
+            return type.cast(this);
+        } else {
+            throw new SQLException("Not a wrapper for " + type);
+        }
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) {
+        return type.isInstance(this);
+    }
+}
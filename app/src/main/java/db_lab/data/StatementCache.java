@@ -0,0 +1,170 @@
+package db_lab.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+// A cache of the prepared statements of a single connection.
+//
+// Preparing a statement means parsing the query again (and, depending on the
+// driver's configuration, a round trip to the database) even if it's one of
+// the few `Queries` we run over and over again. The cache keeps the most
+// recently used statements of a connection around so that `DAOUtils.prepare`
+// can reuse them.
+//
+// Statements handed out by the cache can be used and closed like any other
+// statement: closing one just clears its parameters and makes it available
+// again. The cache holds at most `maxSize` statements, evicting (and actually
+// closing) the least recently used one when it's full, and it's closed along
+// with its connection.
+//
+// Only the `Queries` are cached: a statement whose text is built on the fly
+// (like the searches of `ProductPreview.DAO.search`, which change with what
+// the user types) may never be run again, and would evict the ones that are.
+// It's prepared from scratch instead.
+//
+final class StatementCache implements AutoCloseable {
+
+    static final int DEFAULT_SIZE = 32;
+
+    private static final Set<String> QUERIES = queries();
+
+    private final Connection connection;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private boolean closed;
+
+    StatementCache(Connection connection, int maxSize) {
+        Objects.requireNonNull(connection, "Statement cache created with null connection");
+        this.connection = connection;
+        this.closed = false;
+        // An access-ordered `LinkedHashMap` keeps its entries from the least
+        // to the most recently used, which is all we need for an LRU cache.
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (this.size() > maxSize) {
+                    eldest.getValue().evict();
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+    }
+
+    synchronized PreparedStatement prepare(String query) throws SQLException {
+        if (this.closed || !QUERIES.contains(query)) {
+            return this.connection.prepareStatement(query);
+        }
+        var cached = this.statements.get(query);
+        if (cached != null && cached.statement.isClosed()) {
+            this.statements.remove(query);
+            cached = null;
+        }
+        if (cached == null) {
+            cached = new CachedStatement(this.connection.prepareStatement(query));
+            this.statements.put(query, cached);
+        } else if (cached.inUse) {
+            // The same query is already being run (e.g. by an outer loop still
+            // iterating over its result set): we can't share the statement, so
+            // we fall back to a regular one.
+            return this.connection.prepareStatement(query);
+        }
+        cached.inUse = true;
+        return cached.handle;
+    }
+
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        var toEvict = new ArrayList<>(this.statements.values());
+        this.statements.clear();
+        toEvict.forEach(CachedStatement::evict);
+    }
+
+    // The text of each of the `Queries`.
+    //
+    private static Set<String> queries() {
+        var queries = new HashSet<String>();
+        for (var field : Queries.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    queries.add((String) field.get(null));
+                } catch (IllegalAccessException e) {}
+            }
+        }
+        return Set.copyOf(queries);
+    }
+
+    private final class CachedStatement {
+
+        private final PreparedStatement statement;
+        private final PreparedStatement handle;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.inUse = false;
+            this.evicted = false;
+            var proxy = Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (self, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            this.release();
+                            return null;
+                        case "isClosed":
+                            return !this.inUse || this.statement.isClosed();
+                        case "equals":
+                            return self == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(self);
+                        default:
+                            try {
+                                return method.invoke(this.statement, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                }
+            );
+            this.handle = (PreparedStatement) proxy;
+        }
+
+        private void release() throws SQLException {
+            synchronized (StatementCache.this) {
+                if (!this.inUse) {
+                    return;
+                }
+                this.inUse = false;
+                if (this.evicted) {
+                    this.statement.close();
+                } else {
+                    this.statement.clearParameters();
+                }
+            }
+        }
+
+        private void evict() {
+            this.evicted = true;
+            if (!this.inUse) {
+                try {
+                    this.statement.close();
+                } catch (SQLException e) {}
+            }
+        }
+    }
+}
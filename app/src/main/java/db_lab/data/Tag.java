@@ -1,6 +1,7 @@
 package db_lab.data;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -8,9 +9,25 @@ import java.util.Set;
 public final class Tag {
 
     public final String name;
+    // The tag's id in the `TagDictionary`, or -1 if the tag didn't come from
+    // the dictionary.
+    final int id;
 
     public Tag(String name) {
+        this(name, -1);
+    }
+
+    Tag(String name, int id) {
         this.name = name == null ? "" : name;
+        this.id = id;
+    }
+
+    // Returns the canonical tag with the given name: there's only one canonical
+    // instance for each name, so thousands of products sharing the same few
+    // tags don't each hold their own copy of them.
+    //
+    public static Tag of(String name) {
+        return TagDictionary.canonical(name == null ? "" : name);
     }
 
     @Override
@@ -39,10 +56,26 @@ public final class Tag {
 
     public final class DAO {
 
+        private static final QueryMetrics TAGS_FOR_PRODUCT = QueryMetrics.of(Queries.TAGS_FOR_PRODUCT);
+
+        private static final RowMapper<Tag> TAG = RowMapper.of(
+            (resultSet, columns) -> Tag.of(resultSet.getString(columns[0])),
+            "tag_name"
+        );
+
         public static Set<Tag> ofProduct(Connection connection, int productId) {
-            // Iterating through a resultSet:
-            // https://docs.oracle.com/javase/tutorial/jdbc/basics/retrieving.html
-            throw new UnsupportedOperationException("unimplemented");
+            var start = System.nanoTime();
+            try (
+                var statement = DAOUtils.prepare(connection, Queries.TAGS_FOR_PRODUCT, productId);
+                var resultSet = statement.executeQuery();
+            ) {
+                var tags = TAG.list(resultSet);
+                TAGS_FOR_PRODUCT.record(start, tags.size(), statement);
+                return new HashSet<>(tags);
+            } catch (SQLException e) {
+                TAGS_FOR_PRODUCT.failed(start);
+                throw new DAOException(e);
+            }
         }
     }
 }
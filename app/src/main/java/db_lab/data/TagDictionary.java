@@ -0,0 +1,60 @@
+package db_lab.data;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The dictionary of all the tags the application has seen so far.
+//
+// Each tag name is assigned a small integer id the first time it's seen, and
+// the dictionary keeps a single canonical `Tag` for it. A set of tags can then
+// be stored as a small array of ids (see `TagSet`) instead of a hash set of
+// separate `Tag` objects.
+// Tags are a handful of rows in a small table, so the dictionary never
+// forgets a tag once it has seen it.
+//
+final class TagDictionary {
+
+    private static final ConcurrentHashMap<String, Tag> BY_NAME = new ConcurrentHashMap<>();
+    // Guarded by the class' lock for writes; `volatile` so that lookups by id
+    // don't need to take it.
+    private static volatile Tag[] byId = new Tag[64];
+    private static int size = 0;
+
+    private TagDictionary() {}
+
+    static Tag canonical(String name) {
+        var tag = BY_NAME.get(name);
+        if (tag != null) {
+            return tag;
+        }
+        synchronized (TagDictionary.class) {
+            tag = BY_NAME.get(name);
+            if (tag == null) {
+                var tags = byId;
+                if (size == tags.length) {
+                    tags = Arrays.copyOf(tags, tags.length * 2);
+                }
+                tag = new Tag(name, size);
+                tags[size++] = tag;
+                byId = tags;
+                BY_NAME.put(name, tag);
+            }
+            return tag;
+        }
+    }
+
+    // The id of the given tag, or -1 if no tag with its name has ever been
+    // added to the dictionary.
+    //
+    static int idOf(Tag tag) {
+        if (tag.id >= 0) {
+            return tag.id;
+        }
+        var canonical = BY_NAME.get(tag.name);
+        return canonical == null ? -1 : canonical.id;
+    }
+
+    static Tag byId(int id) {
+        return byId[id];
+    }
+}
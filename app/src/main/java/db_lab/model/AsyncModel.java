@@ -0,0 +1,73 @@
+package db_lab.model;
+
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// An asynchronous view over a model: the operations that may have to go to the
+// database return immediately with a `CompletableFuture` and are carried out on
+// a separate thread.
+//
+// This way the caller (usually the controller, running on Swing's event
+// dispatch thread) doesn't freeze while waiting for the database to answer.
+// By default each operation runs on its own virtual thread: they're cheap to
+// create and a thread blocked on a JDBC call doesn't hold on to an OS thread.
+//
+public final class AsyncModel {
+
+    private final Model model;
+    private final Executor executor;
+
+    public AsyncModel(Model model) {
+        this(model, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public AsyncModel(Model model, Executor executor) {
+        Objects.requireNonNull(model, "Async model created with null model");
+        Objects.requireNonNull(executor, "Async model created with null executor");
+        this.model = model;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Optional<Product>> find(int productCode) {
+        return CompletableFuture.supplyAsync(() -> this.model.find(productCode), this.executor);
+    }
+
+    public CompletableFuture<List<ProductPreview>> loadPreviews() {
+        return CompletableFuture.supplyAsync(this.model::loadPreviews, this.executor);
+    }
+
+    public CompletableFuture<List<ProductPreview>> loadMorePreviews() {
+        return CompletableFuture.supplyAsync(this.model::loadMorePreviews, this.executor);
+    }
+
+    public CompletableFuture<List<ProductPreview>> search(String query) {
+        return CompletableFuture.supplyAsync(() -> this.model.search(query), this.executor);
+    }
+
+    // The model already prefetches in the background.
+    //
+    public void prefetch(int productCode) {
+        this.model.prefetch(productCode);
+    }
+
+    // These only read what the model already has in memory, so there's no
+    // need to run them asynchronously.
+
+    public List<ProductPreview> previews() {
+        return this.model.previews();
+    }
+
+    public boolean loadedPreviews() {
+        return this.model.loadedPreviews();
+    }
+
+    public boolean hasMorePreviews() {
+        return this.model.hasMorePreviews();
+    }
+}
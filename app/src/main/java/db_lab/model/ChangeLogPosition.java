@@ -0,0 +1,137 @@
+package db_lab.model;
+
+import java.time.Duration;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// How far a `DBModel` has read the product change log, see `PRODUCT_CHANGE` in
+// `V2__product_change_log.sql`.
+//
+// Versions are handed out when a change is made, not when it's committed: a
+// change made by a long transaction shows up in the log after changes with
+// later versions, so reading the log after the latest version seen would miss
+// it. Instead, the versions missing between the ones read (the gaps) are
+// remembered, and each read of the log starts again from the first of them:
+// the changes filling a gap are picked up as soon as they're committed. A gap
+// that's still there `GAP_TIMEOUT` after it was first seen is given up on, it
+// was left by a transaction that has been rolled back (or by an insert that
+// reserved more versions than it used).
+//
+// Positions are immutable, each read of the log moves to a new one.
+//
+final class ChangeLogPosition {
+
+    static final Duration GAP_TIMEOUT = Duration.ofMinutes(5);
+
+    // Every change up to this version has been read: the next read of the
+    // log starts right after it.
+    final long version;
+    // The latest version read, at least `version`.
+    final long latest;
+    // How many changes have been read, counting from `at`'s version: it grows
+    // with each change read, the late ones filling a gap included.
+    final long read;
+    // The versions after `version` (and up to `latest`) missing from the log,
+    // by the first version of each gap.
+    private final SortedMap<Long, Gap> gaps;
+
+    private ChangeLogPosition(long version, long latest, long read, SortedMap<Long, Gap> gaps) {
+        this.version = version;
+        this.latest = latest;
+        this.read = read;
+        this.gaps = gaps;
+    }
+
+    // The position of a reader that has read every change up to `version`.
+    //
+    static ChangeLogPosition at(long version) {
+        return new ChangeLogPosition(version, version, version, new TreeMap<>());
+    }
+
+    // Whether there's nothing new to read, given the latest version in the log.
+    //
+    boolean isUpToDate(long latestVersion) {
+        return latestVersion == this.latest && this.gaps.isEmpty();
+    }
+
+    // The products changed by the changes read after `version` (by version)
+    // that hadn't been read before: the ones after `latest` and the ones
+    // filling a gap.
+    //
+    SortedSet<Integer> unread(SortedMap<Long, Integer> changes) {
+        var products = new TreeSet<Integer>();
+        changes.forEach((version, product) -> {
+            if (this.isUnread(version)) {
+                products.add(product);
+            }
+        });
+        return products;
+    }
+
+    // The position after reading the changes after `version` and up to
+    // `latestVersion`, at the given time (as in `System.nanoTime`).
+    //
+    ChangeLogPosition after(SortedMap<Long, Integer> changes, long latestVersion, long now) {
+        var gaps = new TreeMap<Long, Gap>();
+        var previous = this.version;
+        var read = this.read;
+        for (var version : changes.headMap(latestVersion + 1).keySet()) {
+            this.addGaps(gaps, previous + 1, version - 1, now);
+            previous = version;
+            if (this.isUnread(version)) {
+                read++;
+            }
+        }
+        this.addGaps(gaps, previous + 1, latestVersion, now);
+        gaps.values().removeIf(gap -> now - gap.since > GAP_TIMEOUT.toNanos());
+        var version = gaps.isEmpty() ? latestVersion : gaps.firstKey() - 1;
+        return new ChangeLogPosition(version, Math.max(version, latestVersion), read, gaps);
+    }
+
+    private boolean isUnread(long version) {
+        return version > this.latest || this.gap(version) != null;
+    }
+
+    // Adds the gap going from `from` to `to` (included), if it's not empty:
+    // the part that was already a gap before keeps the time it was first seen.
+    //
+    private void addGaps(SortedMap<Long, Gap> gaps, long from, long to, long now) {
+        if (from > to) {
+            return;
+        }
+        if (from <= this.latest) {
+            var end = Math.min(to, this.latest);
+            var known = this.gap(from);
+            gaps.put(from, new Gap(end, known == null ? now : known.since));
+            from = end + 1;
+        }
+        if (from <= to) {
+            gaps.put(from, new Gap(to, now));
+        }
+    }
+
+    // The gap the given version is in, if any.
+    //
+    private Gap gap(long version) {
+        var candidates = this.gaps.headMap(version + 1);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        var gap = candidates.get(candidates.lastKey());
+        return version <= gap.last ? gap : null;
+    }
+
+    private static final class Gap {
+
+        private final long last;
+        // When it was first seen, as in `System.nanoTime`.
+        private final long since;
+
+        private Gap(long last, long since) {
+            this.last = last;
+            this.since = since;
+        }
+    }
+}
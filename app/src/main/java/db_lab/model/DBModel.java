@@ -1,50 +1,529 @@
 package db_lab.model;
 
+import db_lab.data.ConnectionPool;
+import db_lab.data.DAOException;
+import db_lab.data.DAOUtils;
+import db_lab.data.Material;
 import db_lab.data.Product;
 import db_lab.data.ProductPreview;
+import db_lab.data.Resilience;
+import db_lab.search.SearchIndex;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.sql.DataSource;
 
 // This is the real model implementation that uses the DAOs we've defined to
 // actually load data from the underlying database.
 //
 // As you can see this model doesn't do too much except loading data from the
-// database and keeping a cache of the loaded previews.
+// database and keeping a cache of the loaded previews and of the most recently
+// looked up products.
 // A real model might be doing much more, but for the sake of the example we're
 // keeping it simple.
 //
+// A single model can be shared by many threads (e.g. one for each user of a
+// server):
+// - What the model knows about the previews is an immutable `State`, replaced
+//   as a whole each time it changes: reading it never waits, not even while
+//   the previews are being reloaded, and never sees half of an update.
+// - Changes to the previews are made one at a time, holding `updates`.
+// - A `loadPreviews` called while another one is already running doesn't
+//   start a new reload, it waits for the running one and returns its result.
+//
+// Products are looked up through `Resilience`: a user clicking on a preview
+// while the database is struggling gets an error in a few seconds (and can
+// try again) instead of waiting forever.
+//
 public final class DBModel implements Model {
 
-    private final Connection connection;
-    private Optional<List<ProductPreview>> previews;
+    public static final int PAGE_SIZE = 100;
+
+    private static final System.Logger LOGGER = System.getLogger("db_lab.model");
+
+    private final DataSource dataSource;
+    private final ProductCache products;
+    // Products loaded ahead of time because the user is likely to look at them
+    // next, see `prefetch`.
+    private final Prefetcher prefetched;
+    private final Resilience lookups;
+    private final AtomicReference<State> state;
+    private final ReentrantLock updates;
+    // The reload of the previews that's currently running, if any.
+    private final AtomicReference<CompletableFuture<List<ProductPreview>>> reloading;
+    // The latest index built from all the previews, see `search`. It's null
+    // until the first one is built.
+    private final AtomicReference<Indexed> searchIndex;
+    // How many times the change log has been reset: the versions start over
+    // after a reset, so an index is only good for the same `version` between
+    // the same two resets.
+    private final AtomicLong resets;
+    // The index that's currently being built, if any.
+    private final AtomicReference<CompletableFuture<SearchIndex>> indexing;
+    // Whether the index is built in the background, see `search`.
+    private final boolean backgroundIndexing;
+    // Saves the loaded previews, so that the next time the application
+    // starts they're available even before the database answers.
+    private final Optional<SnapshotSaver> snapshots;
 
     public DBModel(Connection connection) {
-        Objects.requireNonNull(connection, "Model created with null connection");
-        this.connection = connection;
-        this.previews = Optional.empty();
+        this(
+            DAOUtils.sharedDataSource(Objects.requireNonNull(connection, "Model created with null connection")),
+            new Resilience(false)
+        );
+    }
+
+    // Lookups are hedged only if the data source is a `ConnectionPool`: the
+    // hedged attempt needs a connection of its own.
+    //
+    public DBModel(DataSource dataSource) {
+        this(dataSource, new Resilience(dataSource instanceof ConnectionPool));
+    }
+
+    public DBModel(DataSource dataSource, Resilience lookups) {
+        this(dataSource, ProductCache.DEFAULT_SIZE, ProductCache.DEFAULT_TTL, lookups, Optional.empty());
+    }
+
+    public DBModel(DataSource dataSource, int cacheSize, Duration cacheTtl) {
+        this(dataSource, cacheSize, cacheTtl, new Resilience(dataSource instanceof ConnectionPool), Optional.empty());
     }
 
+    // A model that starts from the previews saved in the given snapshot file
+    // (if there's a valid one) and keeps it up to date with the ones it loads.
+    // The snapshot's previews may be out of date: the first `loadPreviews`
+    // brings them up to date with the database.
+    //
+    public DBModel(DataSource dataSource, Path snapshotFile) {
+        this(
+            dataSource,
+            ProductCache.DEFAULT_SIZE,
+            ProductCache.DEFAULT_TTL,
+            new Resilience(dataSource instanceof ConnectionPool),
+            Optional.of(Objects.requireNonNull(snapshotFile, "Model created with null snapshot file"))
+        );
+    }
+
+    private DBModel(
+        DataSource dataSource,
+        int cacheSize,
+        Duration cacheTtl,
+        Resilience lookups,
+        Optional<Path> snapshotFile
+    ) {
+        Objects.requireNonNull(dataSource, "Model created with null data source");
+        Objects.requireNonNull(lookups, "Model created with null resilience");
+        this.dataSource = dataSource;
+        this.lookups = lookups;
+        this.products = new ProductCache(cacheSize, cacheTtl);
+        this.prefetched = new Prefetcher(
+            this::load,
+            Prefetcher.DEFAULT_CONCURRENCY,
+            Prefetcher.DEFAULT_SIZE,
+            Prefetcher.DEFAULT_TTL
+        );
+        this.state = new AtomicReference<>(
+            snapshotFile
+                .flatMap(PreviewSnapshot::open)
+                .map(snapshot ->
+                    new State(
+                        Optional.of(snapshot.previews()),
+                        snapshot.hasMorePreviews,
+                        ChangeLogPosition.at(snapshot.version)
+                    )
+                )
+                .orElse(State.EMPTY)
+        );
+        this.updates = new ReentrantLock();
+        this.reloading = new AtomicReference<>();
+        this.searchIndex = new AtomicReference<>();
+        this.indexing = new AtomicReference<>();
+        this.resets = new AtomicLong();
+        this.backgroundIndexing = dataSource instanceof ConnectionPool;
+        this.snapshots = snapshotFile.map(file -> new SnapshotSaver(file, SnapshotSaver.DEFAULT_DELAY));
+    }
+
+    // Products are looked up in the cache first, then among the prefetched
+    // ones, and only then in the database.
+    //
     @Override
     public Optional<Product> find(int productCode) {
-        return Product.DAO.find(connection, productCode);
+        return this.products.get(productCode, code -> this.prefetched.get(code, this::load));
+    }
+
+    // Products that are already cached aren't prefetched again.
+    //
+    @Override
+    public void prefetch(int productCode) {
+        if (!this.products.contains(productCode)) {
+            this.prefetched.prefetch(productCode);
+        }
+    }
+
+    // Each attempt borrows a connection of its own, so that a hedged attempt
+    // doesn't wait for the one it's racing against.
+    //
+    private Optional<Product> load(int productCode) {
+        return this.lookups.read(() -> this.withConnection(connection -> Product.DAO.find(connection, productCode)));
+    }
+
+    // Batch lookups are meant for jobs going through large parts of the
+    // catalog (exports, syncs, ...) so they skip the cache: it would be pointless
+    // to fill it with products that most likely won't be looked at again.
+    //
+    @Override
+    public Map<Integer, Product> findAll(int[] productCodes) {
+        return this.withConnection(connection -> Product.DAO.findAll(connection, productCodes));
+    }
+
+    // Drops the given product from the cache, so that the next time it's
+    // looked up it's loaded again from the database.
+    //
+    public void invalidate(int productCode) {
+        this.products.invalidate(productCode);
+        this.prefetched.invalidate(productCode);
+    }
+
+    public void invalidateAll() {
+        this.products.invalidateAll();
+        this.prefetched.invalidateAll();
+    }
+
+    public ProductCache.Stats cacheStats() {
+        return this.products.stats();
+    }
+
+    public Prefetcher.Stats prefetchStats() {
+        return this.prefetched.stats();
+    }
+
+    public Resilience.Stats lookupStats() {
+        return this.lookups.stats();
     }
 
     @Override
     public List<ProductPreview> previews() {
-        return this.previews.orElse(List.of());
+        return this.state.get().previews.orElse(List.of());
     }
 
     @Override
     public boolean loadedPreviews() {
-        return this.previews.isPresent();
+        return this.state.get().previews.isPresent();
     }
 
+    @Override
+    public boolean hasMorePreviews() {
+        return this.state.get().hasMorePreviews;
+    }
+
+    // The first time this loads the first page of previews. After that, only
+    // the products changed since the last load are fetched and merged into the
+    // previews already loaded: if nothing has changed, reloading just takes a
+    // single query to check the latest version.
+    //
+    // Callers that find a reload already running share its result: it may
+    // miss a change made after it checked the latest version, the next reload
+    // will pick it up.
+    //
     @Override
     public List<ProductPreview> loadPreviews() {
-        var previews = ProductPreview.DAO.list(this.connection);
-        this.previews = Optional.of(previews);
-        return previews;
+        var reload = new CompletableFuture<List<ProductPreview>>();
+        var running = this.reloading.compareAndExchange(null, reload);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            reload.complete(this.reload());
+        } catch (RuntimeException e) {
+            reload.completeExceptionally(e);
+        } finally {
+            this.reloading.set(null);
+        }
+        return join(reload);
+    }
+
+    private List<ProductPreview> reload() {
+        this.updates.lock();
+        try {
+            var current = this.state.get();
+            if (current.previews.isEmpty()) {
+                // The version is read before the page, so a product changed in
+                // between is just merged again by the next reload.
+                var version = this.withConnection(ProductPreview.DAO::latestVersion);
+                var page = this.loadPage(0);
+                this.publish(new State(Optional.of(page.previews), page.hasMore, ChangeLogPosition.at(version)));
+                // The user can look at the first page while the index is
+                // being built.
+                if (this.backgroundIndexing) {
+                    this.buildSearchIndex();
+                }
+                return page.previews;
+            }
+            var loaded = current.previews.get();
+            var position = current.position;
+            var latest = this.withConnection(ProductPreview.DAO::latestVersion);
+            if (position.isUpToDate(latest)) {
+                return loaded;
+            } else if (latest < position.latest) {
+                // The change log has been reset, we can't know what changed.
+                this.resets.incrementAndGet();
+                this.searchIndex.set(null);
+                this.publish(State.EMPTY);
+                this.invalidateAll();
+                return this.reload();
+            }
+            var changes = this.withConnection(connection -> {
+                var read = ProductPreview.DAO.changes(connection, position.version, latest);
+                // An updated material is logged as a change to each of its
+                // products, in the same transaction: once invalidated below,
+                // they're loaded again with its new description.
+                Material.DAO.checkForUpdates(connection);
+                return read;
+            });
+            var next = position.after(changes, latest, System.nanoTime());
+            var changed = position.unread(changes);
+            // The latest version of everything should be shown, products and
+            // search results included.
+            changed.forEach(this::invalidate);
+            // The products after the last loaded one aren't part of the
+            // previews yet: they're read from the database, as they are at
+            // that point, only when the page they're in is loaded.
+            var lastLoaded = loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).code;
+            var relevant = current.hasMorePreviews ? changed.headSet(lastLoaded + 1) : changed;
+            if (relevant.isEmpty()) {
+                this.publish(new State(current.previews, current.hasMorePreviews, next));
+                return loaded;
+            }
+            var previews = this.withConnection(connection -> ProductPreview.DAO.findAll(connection, relevant));
+            var merged = merge(loaded, previews);
+            this.publish(new State(Optional.of(merged), current.hasMorePreviews, next));
+            return merged;
+        } finally {
+            this.updates.unlock();
+        }
+    }
+
+    @Override
+    public List<ProductPreview> loadMorePreviews() {
+        this.updates.lock();
+        try {
+            var current = this.state.get();
+            if (!current.hasMorePreviews) {
+                return List.of();
+            }
+            var loaded = current.previews.orElse(List.of());
+            var lastCode = loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).code;
+            var page = this.loadPage(lastCode);
+            var previews = new ArrayList<ProductPreview>(loaded.size() + page.previews.size());
+            previews.addAll(loaded);
+            previews.addAll(page.previews);
+            this.publish(new State(Optional.of(Collections.unmodifiableList(previews)), page.hasMore, current.position));
+            return page.previews;
+        } finally {
+            this.updates.unlock();
+        }
+    }
+
+    @Override
+    public List<ProductPreview> previews(int afterCode, int limit) {
+        return this.withConnection(connection -> ProductPreview.DAO.page(connection, afterCode, limit));
+    }
+
+    // Searches are answered by an index of all the previews, as long as it's
+    // been built for the current `version`. Once built the index never
+    // changes, so the search itself can run alongside any other operation.
+    // With a `ConnectionPool` the index is built in the background, right
+    // after the first page is loaded and then whenever a search finds it out
+    // of date: until it's ready, searches are answered by the database. With
+    // a single connection a background build would keep everyone else waiting
+    // for it, so the search that needs the index builds it. Either way, if
+    // many searches need the index at the same time, it's only built once.
+    //
+    @Override
+    public List<ProductPreview> search(String query) {
+        var indexed = this.searchIndex.get();
+        if (indexed != null && indexed.resets == this.resets.get() && indexed.version == this.version()) {
+            return indexed.index.search(query);
+        } else if (!this.backgroundIndexing) {
+            return join(this.buildSearchIndex()).search(query);
+        }
+        this.buildSearchIndex();
+        return this.withConnection(connection -> ProductPreview.DAO.search(connection, query));
+    }
+
+    // How many product changes have been read from the change log, which
+    // changes as soon as one has: even when the product is after the loaded
+    // previews, which stay the same.
+    //
+    @Override
+    public long version() {
+        return this.state.get().position.read;
+    }
+
+    // Builds the index of the current version of the previews, unless one is
+    // already being built. The version (and the resets) are read before the
+    // previews, so a product changed in between just has the index built
+    // again.
+    //
+    private CompletableFuture<SearchIndex> buildSearchIndex() {
+        var build = new CompletableFuture<SearchIndex>();
+        var running = this.indexing.compareAndExchange(null, build);
+        if (running != null) {
+            return running;
+        }
+        Runnable task = () -> {
+            try {
+                var resets = this.resets.get();
+                var version = this.version();
+                var index = SearchIndex.of(this.withConnection(ProductPreview.DAO::list));
+                this.searchIndex.set(new Indexed(resets, version, index));
+                build.complete(index);
+            } catch (RuntimeException e) {
+                // The next search tries building it again.
+                if (this.backgroundIndexing) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Could not build the search index", e);
+                }
+                build.completeExceptionally(e);
+            } finally {
+                this.indexing.set(null);
+            }
+        };
+        if (this.backgroundIndexing) {
+            Thread.ofVirtual().name("db_lab-search-index").start(task);
+        } else {
+            task.run();
+        }
+        return build;
+    }
+
+    // Loads a page of previews and checks whether there are other pages after
+    // it: we ask for one more preview than needed, if it's there we know
+    // there's at least one more page to load.
+    //
+    private Page loadPage(int afterCode) {
+        var page = this.previews(afterCode, PAGE_SIZE + 1);
+        var hasMore = page.size() > PAGE_SIZE;
+        return new Page(hasMore ? List.copyOf(page.subList(0, PAGE_SIZE)) : List.copyOf(page), hasMore);
+    }
+
+    // Must be called holding `updates`. The snapshot is saved later on, in
+    // the background.
+    //
+    private void publish(State next) {
+        this.state.set(next);
+        this.snapshots.ifPresent(saver ->
+            next.previews.ifPresent(previews -> saver.save(next.position.version, next.hasMorePreviews, previews))
+        );
+    }
+
+    // Waits for the given future, throwing the exception it failed with as
+    // is: callers don't need to know the work was done by another thread.
+    //
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Merges the changed products into the loaded previews (both sorted by
+    // code), dropping the deleted ones.
+    //
+    private static List<ProductPreview> merge(
+        List<ProductPreview> loaded,
+        SortedMap<Integer, Optional<ProductPreview>> changes
+    ) {
+        var merged = new ArrayList<ProductPreview>(loaded.size() + changes.size());
+        var pending = changes.entrySet().iterator();
+        var change = pending.hasNext() ? pending.next() : null;
+        for (var preview : loaded) {
+            while (change != null && change.getKey() < preview.code) {
+                change.getValue().ifPresent(merged::add);
+                change = pending.hasNext() ? pending.next() : null;
+            }
+            if (change != null && change.getKey() == preview.code) {
+                change.getValue().ifPresent(merged::add);
+                change = pending.hasNext() ? pending.next() : null;
+            } else {
+                merged.add(preview);
+            }
+        }
+        while (change != null) {
+            change.getValue().ifPresent(merged::add);
+            change = pending.hasNext() ? pending.next() : null;
+        }
+        return Collections.unmodifiableList(merged);
+    }
+
+    // Everything the model knows about the previews.
+    //
+    private static final class State {
+
+        private static final State EMPTY = new State(Optional.empty(), true, ChangeLogPosition.at(0));
+
+        private final Optional<List<ProductPreview>> previews;
+        private final boolean hasMorePreviews;
+        // How far the product changes have been merged into the previews.
+        private final ChangeLogPosition position;
+
+        private State(Optional<List<ProductPreview>> previews, boolean hasMorePreviews, ChangeLogPosition position) {
+            this.previews = previews;
+            this.hasMorePreviews = hasMorePreviews;
+            this.position = position;
+        }
+    }
+
+    // A search index and the `version` of the previews it was built from.
+    //
+    private static final class Indexed {
+
+        private final long resets;
+        private final long version;
+        private final SearchIndex index;
+
+        private Indexed(long resets, long version, SearchIndex index) {
+            this.resets = resets;
+            this.version = version;
+            this.index = index;
+        }
+    }
+
+    private static final class Page {
+
+        private final List<ProductPreview> previews;
+        private final boolean hasMore;
+
+        private Page(List<ProductPreview> previews, boolean hasMore) {
+            this.previews = previews;
+            this.hasMore = hasMore;
+        }
+    }
+
+    // Borrows a connection from the data source just for the duration of the
+    // given action, giving it back as soon as the action is done.
+    //
+    private <T> T withConnection(Function<Connection, T> action) {
+        try (var connection = this.dataSource.getConnection()) {
+            return action.apply(connection);
+        } catch (SQLException e) {
+            throw new DAOException(e);
+        }
     }
 }
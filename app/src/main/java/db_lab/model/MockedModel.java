@@ -4,6 +4,7 @@ import db_lab.data.Material;
 import db_lab.data.Product;
 import db_lab.data.ProductPreview;
 import db_lab.data.Tag;
+import db_lab.search.SearchIndex;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,7 +19,12 @@ import java.util.stream.Collectors;
 //
 public final class MockedModel implements Model {
 
+    // The mocked model has very few products, so we use tiny pages to still be
+    // able to try out the pagination.
+    private static final int PAGE_SIZE = 2;
+
     private Map<ProductPreview, Product> previews;
+    private int loaded;
 
     public MockedModel() {
         var previews = new HashMap<ProductPreview, Product>();
@@ -62,6 +68,7 @@ public final class MockedModel implements Model {
             )
         );
         this.previews = previews;
+        this.loaded = 0;
     }
 
     @Override
@@ -74,21 +81,74 @@ public final class MockedModel implements Model {
             .map(entry -> entry.getValue());
     }
 
+    // Everything is already in memory, there's nothing to prefetch.
+    //
     @Override
-    public List<ProductPreview> previews() {
-        return this.previews.keySet()
+    public void prefetch(int productCode) {}
+
+    @Override
+    public Map<Integer, Product> findAll(int[] productCodes) {
+        var products = new HashMap<Integer, Product>();
+        for (var code : productCodes) {
+            this.find(code).ifPresent(product -> products.put(code, product));
+        }
+        return products;
+    }
+
+    @Override
+    public synchronized List<ProductPreview> previews() {
+        return this.allPreviews().subList(0, this.loaded);
+    }
+
+    @Override
+    public synchronized boolean loadedPreviews() {
+        return this.loaded > 0;
+    }
+
+    @Override
+    public synchronized List<ProductPreview> loadPreviews() {
+        this.loaded = 0;
+        return this.loadMorePreviews();
+    }
+
+    @Override
+    public synchronized List<ProductPreview> loadMorePreviews() {
+        var all = this.allPreviews();
+        var from = this.loaded;
+        this.loaded = Math.min(all.size(), from + PAGE_SIZE);
+        return all.subList(from, this.loaded);
+    }
+
+    @Override
+    public synchronized boolean hasMorePreviews() {
+        return this.loaded < this.previews.size();
+    }
+
+    @Override
+    public List<ProductPreview> previews(int afterCode, int limit) {
+        return this.allPreviews()
             .stream()
-            .sorted((preview1, preview2) -> preview1.code - preview2.code)
+            .filter(preview -> preview.code > afterCode)
+            .limit(limit)
             .collect(Collectors.toList());
     }
 
     @Override
-    public boolean loadedPreviews() {
-        return true;
+    public List<ProductPreview> search(String query) {
+        return SearchIndex.of(this.allPreviews()).search(query);
     }
 
+    // The mocked catalog never changes.
+    //
     @Override
-    public List<ProductPreview> loadPreviews() {
-        return this.previews();
+    public long version() {
+        return 0;
+    }
+
+    private List<ProductPreview> allPreviews() {
+        return this.previews.keySet()
+            .stream()
+            .sorted((preview1, preview2) -> preview1.code - preview2.code)
+            .collect(Collectors.toList());
     }
 }
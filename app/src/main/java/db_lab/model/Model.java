@@ -2,19 +2,68 @@ package db_lab.model;
 
 import db_lab.data.Product;
 import db_lab.data.ProductPreview;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import javax.sql.DataSource;
 
 public interface Model {
     public Optional<Product> find(int productCode);
 
+    // Hints that the product with the given code is likely to be looked up
+    // soon: the model may start loading it in the background, so that the
+    // next `find` doesn't have to wait for it. It returns right away.
+    //
+    public void prefetch(int productCode);
+
+    // Finds all the products with the given codes, indexed by code. Codes
+    // that don't belong to any product are missing from the result.
+    //
+    public Map<Integer, Product> findAll(int[] productCodes);
+
+    // Previews are loaded a page at a time, sorted by product code:
+    // `loadPreviews` loads the first page and each `loadMorePreviews` adds the
+    // next one, so the first page is ready equally fast no matter how big the
+    // catalog is.
+    // Calling `loadPreviews` again brings the previews loaded so far up to date
+    // (a model may either reload them from the first page or just update the
+    // ones that changed) and returns them.
+    // `previews` returns all the pages loaded so far.
+    //
     public List<ProductPreview> previews();
 
     public boolean loadedPreviews();
 
     public List<ProductPreview> loadPreviews();
 
+    // Loads the page following the ones already loaded and returns it.
+    //
+    public List<ProductPreview> loadMorePreviews();
+
+    public boolean hasMorePreviews();
+
+    // Returns at most `limit` previews of the products whose code comes after
+    // `afterCode` (product codes are always positive, so the first page comes
+    // after code 0). This doesn't change the previews loaded by the model.
+    //
+    public List<ProductPreview> previews(int afterCode, int limit);
+
+    // Returns the previews of all the products (not just the loaded ones)
+    // matching the given query, sorted by code. See `SearchIndex` for the
+    // syntax of a query, a malformed one results in an
+    // `IllegalArgumentException`.
+    //
+    public List<ProductPreview> search(String query);
+
+    // A number that changes whenever the model finds out that the catalog
+    // has changed, products after the loaded previews included (`loadPreviews`
+    // is what finds it out). Anything built from the catalog, like a page of
+    // previews or search results, only needs to be built again when it does.
+    //
+    public long version();
+
     // Create a mocked version of the model.
     //
     public static Model mock() {
@@ -26,4 +75,19 @@ public interface Model {
     public static Model fromConnection(Connection connection) {
         return new DBModel(connection);
     }
+
+    // Create a model that borrows a connection from the given data source
+    // (for example a `ConnectionPool`) for each operation it performs.
+    //
+    public static Model fromDataSource(DataSource dataSource) {
+        return new DBModel(dataSource);
+    }
+
+    // Same as `fromDataSource`, but the loaded previews are also saved to the
+    // given file: the next time the model is created it can show them right
+    // away, while they're brought up to date in the background.
+    //
+    public static Model fromDataSource(DataSource dataSource, Path snapshotFile) {
+        return new DBModel(dataSource, snapshotFile);
+    }
 }
@@ -0,0 +1,222 @@
+package db_lab.model;
+
+import db_lab.data.Printer;
+import db_lab.data.Product;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+// Loads products the user is likely to look at next (e.g. the one under the
+// mouse pointer) before they're actually asked for, so that by the time the
+// user clicks on them they're already there.
+//
+// - At most `maxConcurrent` products are loaded at the same time: prefetching
+//   is just a guess, it shouldn't take connections away from what the user is
+//   actually waiting for. When all loads are busy new prefetches are skipped,
+//   not queued: by the time they'd start the user has probably moved on.
+// - A prefetched product is only kept for `ttl` and at most `maxSize` of them
+//   are kept at a time. Each one is handed out at most once, by `get`: from
+//   then on it's up to the `ProductCache` to keep it.
+// - The stats tell how many prefetches ended up being used (hits) and how many
+//   expired without anyone asking for them (wasted), to tune when to prefetch.
+//
+public final class Prefetcher {
+
+    public static final int DEFAULT_CONCURRENCY = 2;
+    public static final int DEFAULT_SIZE = 32;
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private final IntFunction<Optional<Product>> loader;
+    private final Semaphore permits;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Executor executor;
+
+    private final ConcurrentHashMap<Integer, Entry> entries;
+    private final LongAdder issued;
+    private final LongAdder skipped;
+    private final LongAdder hits;
+    private final LongAdder wasted;
+
+    public Prefetcher(IntFunction<Optional<Product>> loader, int maxConcurrent, int maxSize, Duration ttl) {
+        this(loader, maxConcurrent, maxSize, ttl, System::nanoTime, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    Prefetcher(
+        IntFunction<Optional<Product>> loader,
+        int maxConcurrent,
+        int maxSize,
+        Duration ttl,
+        LongSupplier clock,
+        Executor executor
+    ) {
+        Objects.requireNonNull(loader, "Prefetcher created with null loader");
+        Objects.requireNonNull(ttl, "Prefetcher created with null ttl");
+        if (maxConcurrent <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("Prefetcher concurrency and size must be positive");
+        }
+        this.loader = loader;
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.executor = executor;
+        this.entries = new ConcurrentHashMap<>();
+        this.issued = new LongAdder();
+        this.skipped = new LongAdder();
+        this.hits = new LongAdder();
+        this.wasted = new LongAdder();
+    }
+
+    // Starts loading the given product in the background, unless it's already
+    // been prefetched or there's no room for it.
+    //
+    public void prefetch(int productCode) {
+        this.expire();
+        if (this.entries.containsKey(productCode)) {
+            return;
+        } else if (this.entries.size() >= this.maxSize || !this.permits.tryAcquire()) {
+            this.skipped.increment();
+            return;
+        }
+        var entry = new Entry(this.clock.getAsLong());
+        if (this.entries.putIfAbsent(productCode, entry) != null) {
+            this.permits.release();
+            return;
+        }
+        this.issued.increment();
+        try {
+            this.executor.execute(() -> {
+                try {
+                    entry.load.complete(this.loader.apply(productCode));
+                } catch (RuntimeException e) {
+                    entry.load.completeExceptionally(e);
+                } finally {
+                    this.permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.entries.remove(productCode, entry);
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    // Returns the prefetched product with the given code (waiting for it if
+    // it's still loading), or loads it with `loader` if it wasn't prefetched.
+    //
+    public Optional<Product> get(int productCode, IntFunction<Optional<Product>> loader) {
+        var entry = this.entries.remove(productCode);
+        if (entry != null && !this.isExpired(entry)) {
+            try {
+                var product = entry.load.join();
+                this.hits.increment();
+                return product;
+            } catch (CompletionException e) {
+                // The prefetch failed, the product gets a second chance with
+                // the regular loader.
+                this.wasted.increment();
+            }
+        } else if (entry != null) {
+            this.wasted.increment();
+        }
+        return loader.apply(productCode);
+    }
+
+    // Forgets the given product, so that an outdated version of it that was
+    // being prefetched is never handed out.
+    //
+    public void invalidate(int productCode) {
+        if (this.entries.remove(productCode) != null) {
+            this.wasted.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        for (var productCode : this.entries.keySet()) {
+            this.invalidate(productCode);
+        }
+    }
+
+    public Stats stats() {
+        this.expire();
+        return new Stats(
+            this.entries.size(),
+            this.issued.sum(),
+            this.skipped.sum(),
+            this.hits.sum(),
+            this.wasted.sum()
+        );
+    }
+
+    private void expire() {
+        for (var prefetched : this.entries.entrySet()) {
+            if (this.isExpired(prefetched.getValue()) && this.entries.remove(prefetched.getKey(), prefetched.getValue())) {
+                this.wasted.increment();
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return this.clock.getAsLong() - entry.startedAt >= this.ttlNanos;
+    }
+
+    private static final class Entry {
+
+        private final long startedAt;
+        private final CompletableFuture<Optional<Product>> load;
+
+        private Entry(long startedAt) {
+            this.startedAt = startedAt;
+            this.load = new CompletableFuture<>();
+        }
+    }
+
+    public static final class Stats {
+
+        public final int size;
+        public final long issued;
+        public final long skipped;
+        public final long hits;
+        public final long wasted;
+
+        public Stats(int size, long issued, long skipped, long hits, long wasted) {
+            this.size = size;
+            this.issued = issued;
+            this.skipped = skipped;
+            this.hits = hits;
+            this.wasted = wasted;
+        }
+
+        // The fraction of the prefetched products that were actually used.
+        public double hitRate() {
+            return this.issued == 0 ? 0 : (double) this.hits / this.issued;
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "Prefetcher.Stats",
+                List.of(
+                    Printer.field("size", this.size),
+                    Printer.field("issued", this.issued),
+                    Printer.field("skipped", this.skipped),
+                    Printer.field("hits", this.hits),
+                    Printer.field("wasted", this.wasted),
+                    Printer.field("hitRate", this.hitRate())
+                )
+            );
+        }
+    }
+}
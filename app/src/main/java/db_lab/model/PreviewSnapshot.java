@@ -0,0 +1,274 @@
+package db_lab.model;
+
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+// The previews loaded by a `DBModel`, saved to a file so that the next time the
+// application starts they can be shown right away, without waiting for the
+// database.
+//
+// The file is memory mapped instead of being read, and each preview is only
+// decoded the first time it's accessed: opening a snapshot just checks that
+// it's intact and reads the few tag names it uses. The layout of the file
+// (all numbers are big endian) is:
+//
+//     header   magic number (int), format version (int), checksum (long)
+//     body     catalog version (long), has more previews (byte),
+//              number of previews (int), number of tags (int),
+//              tags:     length (varint) + UTF-8 name, for each tag
+//              index:    code (int) + offset of its record (int), for each preview
+//              records:  length (varint) + UTF-8 name, number of tags (varint),
+//                        position of each tag in the tags list (varint)
+//
+// A varint is an unsigned int written 7 bits at a time, lowest first, with
+// the high bit of each byte set if more bytes follow: the small numbers that
+// are the norm take a single byte, and there's no limit to how long a name
+// is or to how many tags there are.
+//
+// The checksum (CRC-32C) covers the whole body. A snapshot that's been
+// corrupted, or that was written by a version of the application with a
+// different format, is ignored as if there was no snapshot at all.
+//
+final class PreviewSnapshot {
+
+    static final int MAGIC = 0x54534e50; // "TSNP"
+    static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+
+    private static final System.Logger LOGGER = System.getLogger("db_lab.snapshot");
+
+    // The version of the catalog (see `PRODUCT_CHANGE` in
+    // `V2__product_change_log.sql`) the previews were loaded at.
+    final long version;
+    final boolean hasMorePreviews;
+    private final List<ProductPreview> previews;
+
+    private PreviewSnapshot(long version, boolean hasMorePreviews, List<ProductPreview> previews) {
+        this.version = version;
+        this.hasMorePreviews = hasMorePreviews;
+        this.previews = previews;
+    }
+
+    List<ProductPreview> previews() {
+        return this.previews;
+    }
+
+    // Opens the snapshot saved in the given file, if there's a valid one.
+    //
+    static Optional<PreviewSnapshot> open(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(System.Logger.Level.INFO, "Ignoring unreadable snapshot " + file, e);
+            return Optional.empty();
+        }
+    }
+
+    // Saves the given previews, replacing the previous snapshot (if any) only
+    // once the new one has been completely written.
+    //
+    static void write(Path file, long version, boolean hasMorePreviews, List<ProductPreview> previews)
+        throws IOException {
+        var body = encode(version, hasMorePreviews, previews);
+        var checksum = new CRC32C();
+        checksum.update(body);
+        var header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION).putLong(checksum.getValue());
+
+        var directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        var temporary = Files.createTempFile(directory, "previews", ".tmp");
+        try {
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                var buffers = new ByteBuffer[] { header.flip(), ByteBuffer.wrap(body) };
+                while (buffers[1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Same as `write`, but a snapshot that can't be saved is just logged:
+    // the model can do without it.
+    //
+    static void save(Path file, long version, boolean hasMorePreviews, List<ProductPreview> previews) {
+        try {
+            write(file, version, hasMorePreviews, previews);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Couldn't save the snapshot " + file, e);
+        }
+    }
+
+    private static byte[] encode(long version, boolean hasMorePreviews, List<ProductPreview> previews)
+        throws IOException {
+        var tagPositions = new HashMap<Tag, Integer>();
+        var tags = new ByteArrayOutputStream();
+        var tagsOut = new DataOutputStream(tags);
+        var records = new ByteArrayOutputStream();
+        var recordsOut = new DataOutputStream(records);
+        var index = new ByteArrayOutputStream();
+        var indexOut = new DataOutputStream(index);
+        for (var preview : previews) {
+            indexOut.writeInt(preview.code);
+            indexOut.writeInt(recordsOut.size());
+            writeString(recordsOut, preview.name);
+            writeVarint(recordsOut, preview.tags.size());
+            for (var tag : preview.tags) {
+                var position = tagPositions.get(tag);
+                if (position == null) {
+                    position = tagPositions.size();
+                    tagPositions.put(tag, position);
+                    writeString(tagsOut, tag.name);
+                }
+                writeVarint(recordsOut, position);
+            }
+        }
+        var body = new ByteArrayOutputStream(tags.size() + index.size() + records.size() + 17);
+        var bodyOut = new DataOutputStream(body);
+        bodyOut.writeLong(version);
+        bodyOut.writeByte(hasMorePreviews ? 1 : 0);
+        bodyOut.writeInt(previews.size());
+        bodyOut.writeInt(tagPositions.size());
+        tags.writeTo(bodyOut);
+        index.writeTo(bodyOut);
+        records.writeTo(bodyOut);
+        bodyOut.flush();
+        return body.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static Optional<PreviewSnapshot> decode(MappedByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            LOGGER.log(System.Logger.Level.INFO, "Ignoring snapshot: not a previews snapshot");
+            return Optional.empty();
+        } else if (buffer.getInt(4) != FORMAT_VERSION) {
+            LOGGER.log(System.Logger.Level.INFO, "Ignoring snapshot: written with format " + buffer.getInt(4));
+            return Optional.empty();
+        }
+        // The checksum is computed straight on the mapped file, without
+        // copying it into memory first.
+        var checksum = new CRC32C();
+        checksum.update(buffer.slice(HEADER_SIZE, buffer.limit() - HEADER_SIZE));
+        if (checksum.getValue() != buffer.getLong(8)) {
+            LOGGER.log(System.Logger.Level.INFO, "Ignoring snapshot: checksum mismatch");
+            return Optional.empty();
+        }
+
+        var body = buffer.slice(HEADER_SIZE, buffer.limit() - HEADER_SIZE);
+        var version = body.getLong();
+        var hasMorePreviews = body.get() != 0;
+        var count = body.getInt();
+        var tags = new Tag[body.getInt()];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = Tag.of(readString(body));
+        }
+        var index = body.slice(body.position(), count * 8);
+        var records = body.slice(body.position() + count * 8, body.limit() - body.position() - count * 8);
+        return Optional.of(new PreviewSnapshot(version, hasMorePreviews, new LazyPreviews(tags, index, records)));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var bytes = new byte[readVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        var value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            var next = buffer.get();
+            value |= (next & 0x7f) << shift;
+            if (next >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in snapshot");
+    }
+
+    // The previews of a snapshot, each one decoded from the mapped file the
+    // first time it's accessed and then remembered.
+    //
+    private static final class LazyPreviews extends AbstractList<ProductPreview> implements RandomAccess {
+
+        private final Tag[] tags;
+        private final ByteBuffer index;
+        private final ByteBuffer records;
+        // Previews are immutable, so if two threads decode the same one at
+        // the same time there's no harm in either of them winning.
+        private final ProductPreview[] decoded;
+
+        LazyPreviews(Tag[] tags, ByteBuffer index, ByteBuffer records) {
+            this.tags = tags;
+            this.index = index;
+            this.records = records;
+            this.decoded = new ProductPreview[index.limit() / 8];
+        }
+
+        @Override
+        public ProductPreview get(int position) {
+            var preview = this.decoded[position];
+            if (preview == null) {
+                preview = this.decode(position);
+                this.decoded[position] = preview;
+            }
+            return preview;
+        }
+
+        @Override
+        public int size() {
+            return this.decoded.length;
+        }
+
+        private ProductPreview decode(int position) {
+            var code = this.index.getInt(position * 8);
+            // Absolute reads on a duplicate, so that concurrent decodes don't
+            // step on each other's position.
+            var record = this.records.duplicate().position(this.index.getInt(position * 8 + 4));
+            var name = readString(record);
+            var tags = new Tag[readVarint(record)];
+            for (int i = 0; i < tags.length; i++) {
+                tags[i] = this.tags[readVarint(record)];
+            }
+            return new ProductPreview(code, name, Set.of(tags));
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package db_lab.model;
+
+import db_lab.data.Printer;
+import db_lab.data.Product;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+// A bounded cache of products, indexed by their code.
+//
+// - Products are kept for at most `ttl`, after that they're loaded again.
+// - The cache holds at most `maxSize` products. When it's full a newly loaded
+//   product only takes the place of the least recently used one if it's been
+//   asked for more frequently: this way a burst of products that are looked at
+//   just once (e.g. someone scrolling through the whole catalog) doesn't throw
+//   away the ones that are looked at over and over again.
+// - If many threads ask for the same product that isn't cached, only one of
+//   them actually loads it and all the others wait for its result.
+//
+public final class ProductCache {
+
+    public static final int DEFAULT_SIZE = 1_000;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    // The products are kept from the least to the most recently used one; the
+    // map and the sketch are guarded by `lock`.
+    private final ReentrantLock lock;
+    private final LinkedHashMap<Integer, Entry> entries;
+    private final FrequencySketch frequencies;
+
+    private final ConcurrentHashMap<Integer, CompletableFuture<Optional<Product>>> loading;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    public ProductCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    ProductCache(int maxSize, Duration ttl, LongSupplier clock) {
+        Objects.requireNonNull(ttl, "Cache created with null ttl");
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive, got " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.lock = new ReentrantLock();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.frequencies = new FrequencySketch(maxSize);
+        this.loading = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    // Returns the cached product with the given code, using `loader` to load it
+    // if it isn't in the cache (or if it has expired).
+    // Only products that are actually found are cached.
+    //
+    public Optional<Product> get(int productCode, IntFunction<Optional<Product>> loader) {
+        var cached = this.lookup(productCode);
+        if (cached != null) {
+            this.hits.increment();
+            return Optional.of(cached);
+        }
+        this.misses.increment();
+
+        var load = new CompletableFuture<Optional<Product>>();
+        var inFlight = this.loading.putIfAbsent(productCode, load);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        try {
+            var product = loader.apply(productCode);
+            // If the product was invalidated while we were loading it, what we
+            // have may already be outdated: we hand it to whoever was waiting
+            // for it but don't cache it.
+            if (this.loading.remove(productCode, load) && product.isPresent()) {
+                this.admit(productCode, product.get());
+            }
+            load.complete(product);
+            return product;
+        } catch (RuntimeException e) {
+            this.loading.remove(productCode, load);
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Whether the given product is cached (and hasn't expired). Unlike `get`
+    // this doesn't count as a request for the product.
+    //
+    public boolean contains(int productCode) {
+        this.lock.lock();
+        try {
+            var entry = this.entries.get(productCode);
+            return entry != null && this.clock.getAsLong() - entry.loadedAt < this.ttlNanos;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void invalidate(int productCode) {
+        this.loading.remove(productCode);
+        this.lock.lock();
+        try {
+            this.entries.remove(productCode);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        this.loading.clear();
+        this.lock.lock();
+        try {
+            this.entries.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        this.lock.lock();
+        try {
+            return new Stats(this.entries.size(), this.hits.sum(), this.misses.sum(), this.evictions.sum());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private Product lookup(int productCode) {
+        this.lock.lock();
+        try {
+            this.frequencies.increment(productCode);
+            var entry = this.entries.get(productCode);
+            if (entry == null) {
+                return null;
+            } else if (this.clock.getAsLong() - entry.loadedAt >= this.ttlNanos) {
+                this.entries.remove(productCode);
+                return null;
+            } else {
+                return entry.product;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void admit(int productCode, Product product) {
+        this.lock.lock();
+        try {
+            var entry = new Entry(product, this.clock.getAsLong());
+            if (this.entries.size() < this.maxSize || this.entries.containsKey(productCode)) {
+                this.entries.put(productCode, entry);
+                return;
+            }
+            var victim = this.entries.keySet().iterator().next();
+            if (this.frequencies.frequency(productCode) > this.frequencies.frequency(victim)) {
+                this.entries.remove(victim);
+                this.entries.put(productCode, entry);
+                this.evictions.increment();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static Optional<Product> join(CompletableFuture<Optional<Product>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final Product product;
+        private final long loadedAt;
+
+        private Entry(Product product, long loadedAt) {
+            this.product = product;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    // An approximate count of how many times each product has been asked for
+    // (a count-min sketch): a few small arrays of counters instead of a map
+    // with an entry for every product ever seen.
+    // Counters are periodically halved so that products that used to be
+    // popular but aren't anymore eventually make room for new ones.
+    //
+    private static final class FrequencySketch {
+
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+
+        private final int[][] counters;
+        private final int mask;
+        private final int resetAfter;
+        private int increments;
+
+        private FrequencySketch(int expectedSize) {
+            var width = Integer.highestOneBit(Math.max(64, expectedSize * 2) - 1) << 1;
+            this.counters = new int[ROWS][width];
+            this.mask = width - 1;
+            this.resetAfter = 10 * width;
+            this.increments = 0;
+        }
+
+        private void increment(int key) {
+            for (int row = 0; row < ROWS; row++) {
+                var index = this.indexOf(key, row);
+                if (this.counters[row][index] < MAX_COUNT) {
+                    this.counters[row][index]++;
+                }
+            }
+            if (++this.increments >= this.resetAfter) {
+                this.halve();
+            }
+        }
+
+        private int frequency(int key) {
+            var frequency = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                frequency = Math.min(frequency, this.counters[row][this.indexOf(key, row)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int key, int row) {
+            var hash = (key + row) * 0x9E3779B9;
+            hash ^= hash >>> 16;
+            hash *= 0x85EBCA6B;
+            hash ^= hash >>> 13;
+            return hash & this.mask;
+        }
+
+        private void halve() {
+            for (var row : this.counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+            this.increments = 0;
+        }
+    }
+
+    public static final class Stats {
+
+        public final int size;
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+
+        public Stats(int size, long hits, long misses, long evictions) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public double hitRate() {
+            var requests = this.hits + this.misses;
+            return requests == 0 ? 0 : (double) this.hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "ProductCache.Stats",
+                List.of(
+                    Printer.field("size", this.size),
+                    Printer.field("hits", this.hits),
+                    Printer.field("misses", this.misses),
+                    Printer.field("evictions", this.evictions),
+                    Printer.field("hitRate", this.hitRate())
+                )
+            );
+        }
+    }
+}
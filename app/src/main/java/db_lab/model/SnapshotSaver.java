@@ -0,0 +1,78 @@
+package db_lab.model;
+
+import db_lab.data.ProductPreview;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Saves the previews of a `DBModel` to its snapshot file in the background,
+// so that loading a page never waits for the disk.
+//
+// Saves are coalesced: the first change starts a timer of `delay`, and when
+// it goes off only the latest previews are written, however many changes
+// there have been in the meantime. Scrolling through the catalog page after
+// page writes the snapshot a few times, not once per page. Whatever hasn't
+// been saved yet when the application stops is lost, but that's fine: the
+// first reload after starting from an older snapshot catches up anyway.
+//
+final class SnapshotSaver {
+
+    static final Duration DEFAULT_DELAY = Duration.ofSeconds(1);
+
+    private static final ScheduledExecutorService SAVES = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofVirtual().name("db_lab-snapshot").factory()
+    );
+
+    private final Path file;
+    private final Duration delay;
+    // The latest previews that haven't been saved yet, null if there are
+    // none: a save is scheduled whenever this goes from null to something.
+    private final AtomicReference<Pending> pending;
+    // Held while writing, so that an older snapshot never replaces a newer one.
+    private final ReentrantLock writing;
+
+    SnapshotSaver(Path file, Duration delay) {
+        this.file = file;
+        this.delay = delay;
+        this.pending = new AtomicReference<>();
+        this.writing = new ReentrantLock();
+    }
+
+    void save(long version, boolean hasMorePreviews, List<ProductPreview> previews) {
+        if (this.pending.getAndSet(new Pending(version, hasMorePreviews, previews)) == null) {
+            SAVES.schedule(this::flush, this.delay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Writes the latest previews right away, if they haven't been saved yet.
+    //
+    void flush() {
+        this.writing.lock();
+        try {
+            var next = this.pending.getAndSet(null);
+            if (next != null) {
+                PreviewSnapshot.save(this.file, next.version, next.hasMorePreviews, next.previews);
+            }
+        } finally {
+            this.writing.unlock();
+        }
+    }
+
+    private static final class Pending {
+
+        private final long version;
+        private final boolean hasMorePreviews;
+        private final List<ProductPreview> previews;
+
+        private Pending(long version, boolean hasMorePreviews, List<ProductPreview> previews) {
+            this.version = version;
+            this.hasMorePreviews = hasMorePreviews;
+            this.previews = previews;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package db_lab.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+// An immutable set of the integers between 0 (included) and `universe`
+// (excluded), used by the search index to keep the positions of the previews
+// having a tag or a word in their name.
+//
+// To keep the index small each set picks the most compact of two
+// representations:
+//   - sparse sets are a sorted array of their elements (4 bytes each);
+//   - dense sets are a bitmap with a bit for each integer of the universe
+//     (`universe / 8` bytes, no matter how many elements there are).
+// A bitmap takes less space as soon as more than one integer in 32 is in the
+// set; and combining two bitmaps is just a matter of and-ing (or or-ing) them
+// 64 bits at a time.
+//
+final class IntSet {
+
+    private final int universe;
+    private final int size;
+    // Exactly one of the two is non null, depending on the representation.
+    private final int[] sorted;
+    private final long[] bits;
+
+    private IntSet(int universe, int size, int[] sorted, long[] bits) {
+        this.universe = universe;
+        this.size = size;
+        this.sorted = sorted;
+        this.bits = bits;
+    }
+
+    static IntSet empty(int universe) {
+        return new IntSet(universe, 0, new int[0], null);
+    }
+
+    static IntSet all(int universe) {
+        var bits = new long[words(universe)];
+        Arrays.fill(bits, -1L);
+        clearTail(bits, universe);
+        return new IntSet(universe, universe, null, bits);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    boolean contains(int value) {
+        if (value < 0 || value >= this.universe) {
+            return false;
+        } else if (this.sorted != null) {
+            return Arrays.binarySearch(this.sorted, value) >= 0;
+        } else {
+            return (this.bits[value >>> 6] & (1L << value)) != 0;
+        }
+    }
+
+    // The elements of the set, from the smallest to the biggest.
+    //
+    int[] toArray() {
+        if (this.sorted != null) {
+            return this.sorted.clone();
+        }
+        var values = new int[this.size];
+        var next = 0;
+        for (int word = 0; word < this.bits.length; word++) {
+            var bits = this.bits[word];
+            while (bits != 0) {
+                values[next++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return values;
+    }
+
+    IntSet and(IntSet other) {
+        if (this.sorted != null && other.sorted != null) {
+            return intersect(this.universe, this.sorted, other.sorted);
+        } else if (this.sorted != null || other.sorted != null) {
+            // Going through the few elements of the sparse set is cheaper
+            // than turning it into a bitmap.
+            var sparse = this.sorted != null ? this : other;
+            var dense = this.sorted != null ? other : this;
+            var builder = new Builder(this.universe);
+            for (var value : sparse.sorted) {
+                if (dense.contains(value)) {
+                    builder.add(value);
+                }
+            }
+            return builder.build();
+        } else {
+            var bits = this.bits.clone();
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= other.bits[i];
+            }
+            return fromBits(this.universe, bits);
+        }
+    }
+
+    IntSet or(IntSet other) {
+        return union(this.universe, List.of(this, other));
+    }
+
+    // The elements of this set that are not in the other one.
+    //
+    IntSet andNot(IntSet other) {
+        if (this.sorted != null) {
+            var builder = new Builder(this.universe);
+            for (var value : this.sorted) {
+                if (!other.contains(value)) {
+                    builder.add(value);
+                }
+            }
+            return builder.build();
+        }
+        var bits = this.bits.clone();
+        if (other.sorted != null) {
+            for (var value : other.sorted) {
+                bits[value >>> 6] &= ~(1L << value);
+            }
+        } else {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] &= ~other.bits[i];
+            }
+        }
+        return fromBits(this.universe, bits);
+    }
+
+    // All the elements that are in at least one of the given sets. They're
+    // all or-ed into a single bitmap, so a prefix matching thousands of words
+    // doesn't create thousands of intermediate sets.
+    //
+    static IntSet union(int universe, List<IntSet> sets) {
+        if (sets.isEmpty()) {
+            return empty(universe);
+        } else if (sets.size() == 1) {
+            return sets.get(0);
+        }
+        var bits = new long[words(universe)];
+        for (var set : sets) {
+            if (set.sorted != null) {
+                for (var value : set.sorted) {
+                    bits[value >>> 6] |= 1L << value;
+                }
+            } else {
+                for (int i = 0; i < bits.length; i++) {
+                    bits[i] |= set.bits[i];
+                }
+            }
+        }
+        return fromBits(universe, bits);
+    }
+
+    private static IntSet intersect(int universe, int[] first, int[] second) {
+        var result = new int[Math.min(first.length, second.length)];
+        int size = 0, i = 0, j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return new IntSet(universe, size, Arrays.copyOf(result, size), null);
+    }
+
+    private static IntSet fromBits(int universe, long[] bits) {
+        var size = 0;
+        for (var word : bits) {
+            size += Long.bitCount(word);
+        }
+        var set = new IntSet(universe, size, null, bits);
+        return isDense(universe, size) ? set : new IntSet(universe, size, set.toArray(), null);
+    }
+
+    private static boolean isDense(int universe, int size) {
+        return size > universe / 32;
+    }
+
+    private static int words(int universe) {
+        return (universe + 63) >>> 6;
+    }
+
+    private static void clearTail(long[] bits, int universe) {
+        if (universe % 64 != 0) {
+            bits[bits.length - 1] &= (1L << universe) - 1;
+        }
+    }
+
+    // Builds a set adding its elements in increasing order.
+    //
+    static final class Builder {
+
+        private final int universe;
+        private int[] values;
+        private int size;
+
+        Builder(int universe) {
+            this.universe = universe;
+            this.values = new int[2];
+            this.size = 0;
+        }
+
+        Builder add(int value) {
+            if (value < 0 || value >= this.universe) {
+                throw new IllegalArgumentException("Value " + value + " out of [0, " + this.universe + ")");
+            } else if (this.size > 0 && this.values[this.size - 1] >= value) {
+                if (this.values[this.size - 1] == value) {
+                    return this;
+                }
+                throw new IllegalArgumentException("Values must be added in increasing order");
+            }
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+            return this;
+        }
+
+        IntSet build() {
+            if (!isDense(this.universe, this.size)) {
+                return new IntSet(this.universe, this.size, Arrays.copyOf(this.values, this.size), null);
+            }
+            var bits = new long[words(this.universe)];
+            for (int i = 0; i < this.size; i++) {
+                bits[this.values[i] >>> 6] |= 1L << this.values[i];
+            }
+            return new IntSet(this.universe, this.size, null, bits);
+        }
+    }
+}
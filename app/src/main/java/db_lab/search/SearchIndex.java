@@ -0,0 +1,332 @@
+package db_lab.search;
+
+import db_lab.data.ProductPreview;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.regex.Pattern;
+
+// An in-memory index to search previews by tag and by name.
+//
+// Each preview is identified by its position in the (sorted by code) list of
+// previews the index is built from, and the index keeps:
+//   - for each tag, the set of previews having that tag;
+//   - for each word appearing in a name, the set of previews whose name
+//     contains that word. The words are kept sorted, so all the words
+//     starting with a given prefix are next to each other and can be found
+//     with a binary search.
+// Answering a query is then just a matter of combining these sets, without
+// ever going through the previews one by one.
+//
+// Queries are made of tags combined with `AND`, `OR` and `NOT` (with the
+// usual precedence, and parentheses to override it); two terms next to each
+// other are and-ed. A `name:` term matches the previews with a word in their
+// name starting with the given prefix. For example:
+//
+//     lana AND materiale
+//     (ferri OR uncinetti) NOT materiale
+//     lana name:gomi
+//
+// Tags, words and keywords are all case insensitive.
+//
+// The same queries can be answered without an index, see `parse`.
+//
+public final class SearchIndex {
+
+    // The parts a query is made of, and how to combine them: the index
+    // evaluates a query to the set of matching previews, other terms may
+    // translate it into something else (like a SQL condition, see
+    // `ProductPreview.DAO.search`).
+    //
+    public interface Terms<T> {
+        T all();
+
+        T tagged(String tag);
+
+        T namesStartingWith(String prefix);
+
+        T and(T left, T right);
+
+        T or(T left, T right);
+
+        T not(T term);
+    }
+
+    private static final String NAME_PREFIX = "name:";
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ProductPreview[] previews;
+    private final Map<String, IntSet> tags;
+    private final String[] words;
+    private final IntSet[] wordPostings;
+
+    private SearchIndex(ProductPreview[] previews, Map<String, IntSet> tags, String[] words, IntSet[] wordPostings) {
+        this.previews = previews;
+        this.tags = tags;
+        this.words = words;
+        this.wordPostings = wordPostings;
+    }
+
+    public static SearchIndex of(List<ProductPreview> productPreviews) {
+        var previews = productPreviews.toArray(ProductPreview[]::new);
+        Arrays.sort(previews, (preview1, preview2) -> Integer.compare(preview1.code, preview2.code));
+        var universe = previews.length;
+        var tags = new HashMap<String, IntSet.Builder>();
+        var words = new HashMap<String, IntSet.Builder>();
+        for (int position = 0; position < previews.length; position++) {
+            var preview = previews[position];
+            for (var tag : preview.tags) {
+                tags.computeIfAbsent(normalize(tag.name), t -> new IntSet.Builder(universe)).add(position);
+            }
+            for (var word : words(preview.name)) {
+                words.computeIfAbsent(word, w -> new IntSet.Builder(universe)).add(position);
+            }
+        }
+        var tagPostings = new HashMap<String, IntSet>();
+        tags.forEach((tag, builder) -> tagPostings.put(tag, builder.build()));
+        var sortedWords = words.keySet().toArray(String[]::new);
+        Arrays.sort(sortedWords);
+        var wordPostings = new IntSet[sortedWords.length];
+        for (int i = 0; i < sortedWords.length; i++) {
+            wordPostings[i] = words.get(sortedWords[i]).build();
+        }
+        return new SearchIndex(previews, tagPostings, sortedWords, wordPostings);
+    }
+
+    public int size() {
+        return this.previews.length;
+    }
+
+    // Returns the previews matching the given query, sorted by code; an empty
+    // query matches all the previews.
+    // Throws an `IllegalArgumentException` if the query is malformed.
+    //
+    public List<ProductPreview> search(String query) {
+        var matches = parse(query, new IndexTerms(this)).toArray();
+        // Instead of copying the matching previews into a new list (which
+        // for a broad search would take longer than the search itself), the
+        // results are a read-only view over the index's previews.
+        return new Results(this.previews, matches);
+    }
+
+    // Goes through the query combining its terms as it goes, returns what the
+    // whole query comes down to. An empty query is `all`.
+    // Throws an `IllegalArgumentException` if the query is malformed.
+    //
+    public static <T> T parse(String query, Terms<T> terms) {
+        return new Parser<>(terms, tokenize(query)).parse();
+    }
+
+    private static final class IndexTerms implements Terms<IntSet> {
+
+        private final SearchIndex index;
+
+        IndexTerms(SearchIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public IntSet all() {
+            return this.index.all();
+        }
+
+        @Override
+        public IntSet tagged(String tag) {
+            return this.index.tagged(tag);
+        }
+
+        @Override
+        public IntSet namesStartingWith(String prefix) {
+            return this.index.namesStartingWith(prefix);
+        }
+
+        @Override
+        public IntSet and(IntSet left, IntSet right) {
+            return left.and(right);
+        }
+
+        @Override
+        public IntSet or(IntSet left, IntSet right) {
+            return left.or(right);
+        }
+
+        @Override
+        public IntSet not(IntSet term) {
+            return this.index.all().andNot(term);
+        }
+    }
+
+    private static final class Results extends AbstractList<ProductPreview> implements RandomAccess {
+
+        private final ProductPreview[] previews;
+        private final int[] positions;
+
+        Results(ProductPreview[] previews, int[] positions) {
+            this.previews = previews;
+            this.positions = positions;
+        }
+
+        @Override
+        public ProductPreview get(int index) {
+            return this.previews[this.positions[index]];
+        }
+
+        @Override
+        public int size() {
+            return this.positions.length;
+        }
+    }
+
+    private IntSet all() {
+        return IntSet.all(this.previews.length);
+    }
+
+    private IntSet tagged(String tag) {
+        return this.tags.getOrDefault(normalize(tag), IntSet.empty(this.previews.length));
+    }
+
+    private IntSet namesStartingWith(String prefix) {
+        var normalized = normalize(prefix);
+        var from = Arrays.binarySearch(this.words, normalized);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        var matching = new ArrayList<IntSet>();
+        for (int i = from; i < this.words.length && this.words[i].startsWith(normalized); i++) {
+            matching.add(this.wordPostings[i]);
+        }
+        return IntSet.union(this.previews.length, matching);
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> words(String name) {
+        var words = new ArrayList<String>();
+        for (var word : WORD_SEPARATOR.split(normalize(name))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static List<String> tokenize(String query) {
+        var tokens = new ArrayList<String>();
+        var token = new StringBuilder();
+        for (var c : query.toCharArray()) {
+            if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                if (!token.isEmpty()) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                }
+                if (c == '(' || c == ')') {
+                    tokens.add(String.valueOf(c));
+                }
+            } else {
+                token.append(c);
+            }
+        }
+        if (!token.isEmpty()) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    // A recursive descent parser that combines the query's terms as it goes:
+    //
+    //     or   := and ("OR" and)*
+    //     and  := not ("AND"? not)*
+    //     not  := "NOT" not | term
+    //     term := "(" or ")" | "name:" prefix | tag
+    //
+    private static final class Parser<T> {
+
+        private final Terms<T> terms;
+        private final List<String> tokens;
+        private int next;
+
+        Parser(Terms<T> terms, List<String> tokens) {
+            this.terms = terms;
+            this.tokens = tokens;
+            this.next = 0;
+        }
+
+        T parse() {
+            if (this.tokens.isEmpty()) {
+                return this.terms.all();
+            }
+            var result = this.or();
+            if (this.next < this.tokens.size()) {
+                throw new IllegalArgumentException("Unexpected `" + this.tokens.get(this.next) + "` in search");
+            }
+            return result;
+        }
+
+        private T or() {
+            var result = this.and();
+            while (this.accept("OR")) {
+                result = this.terms.or(result, this.and());
+            }
+            return result;
+        }
+
+        private T and() {
+            var result = this.not();
+            while (this.next < this.tokens.size() && !this.peekIs("OR") && !this.peekIs(")")) {
+                this.accept("AND");
+                result = this.terms.and(result, this.not());
+            }
+            return result;
+        }
+
+        private T not() {
+            if (this.accept("NOT")) {
+                return this.terms.not(this.not());
+            }
+            return this.term();
+        }
+
+        private T term() {
+            if (this.next >= this.tokens.size()) {
+                throw new IllegalArgumentException("Search ends unexpectedly");
+            }
+            var token = this.tokens.get(this.next++);
+            if (token.equals("(")) {
+                var result = this.or();
+                if (!this.accept(")")) {
+                    throw new IllegalArgumentException("Missing `)` in search");
+                }
+                return result;
+            } else if (token.equals(")") || isKeyword(token)) {
+                throw new IllegalArgumentException("Unexpected `" + token + "` in search");
+            } else if (normalize(token).startsWith(NAME_PREFIX)) {
+                return this.terms.namesStartingWith(token.substring(NAME_PREFIX.length()));
+            } else {
+                return this.terms.tagged(token);
+            }
+        }
+
+        private boolean peekIs(String token) {
+            return this.next < this.tokens.size() && this.tokens.get(this.next).equalsIgnoreCase(token);
+        }
+
+        private boolean accept(String token) {
+            if (this.peekIs(token)) {
+                this.next++;
+                return true;
+            }
+            return false;
+        }
+
+        private static boolean isKeyword(String token) {
+            return token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR") || token.equalsIgnoreCase("NOT");
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package db_lab.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import db_lab.model.Model;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Serves the catalog of a model as JSON over HTTP, for the web storefront:
+//
+//     GET /previews                       the previews loaded by the model
+//     GET /previews?after=0&limit=100     a page of previews, see `Model.previews`
+//     GET /products/{code}                a product, 404 if there's none
+//     GET /search?q=...                   the previews matching the query
+//
+// Each request runs on its own virtual thread.
+// Responses are serialized once and then cached: pages and search results are
+// kept until the model's version changes (the server reloads its previews
+// every `reloadEvery`, which is when it finds out about changes), products as
+// long as the model keeps handing out the same product. Every response has a
+// strong ETag: clients sending it back in `If-None-Match` get a
+// `304 Not Modified` without a body. Clients accepting gzip get the bodies
+// that are worth compressing already compressed.
+//
+// The JDK's server writes the headers and the body of a response separately:
+// with Nagle's algorithm on, the body waits for the client to acknowledge the
+// headers, which it may delay by 40ms or more. Turn it off when launching the
+// JVM with `-Dsun.net.httpserver.nodelay=true` (`App` does it for `serve`).
+//
+public final class CatalogServer implements AutoCloseable {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1_000;
+
+    // When there are this many cached responses the cache is emptied and
+    // filled again from scratch: a storefront asks for the same few pages
+    // over and over, so it fills up only if clients go through the whole
+    // catalog.
+    static final int MAX_CACHED = 10_000;
+    // How many connections can be waiting to be accepted.
+    private static final int BACKLOG = 1_024;
+    private static final System.Logger LOGGER = System.getLogger("db_lab.server");
+
+    private final Model model;
+    private final HttpServer server;
+    private final ExecutorService requests;
+    private final ScheduledExecutorService reloads;
+    // The model's version and previews the cached responses were built from.
+    private final AtomicReference<Catalog> catalog;
+    // Pages and search results, by path and query.
+    private final ConcurrentHashMap<String, Response> responses;
+    private final ConcurrentHashMap<Integer, CachedProduct> products;
+
+    private CatalogServer(Model model, HttpServer server) {
+        this.model = model;
+        this.server = server;
+        this.requests = Executors.newVirtualThreadPerTaskExecutor();
+        this.reloads = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().factory());
+        this.catalog = new AtomicReference<>(new Catalog(model.version(), List.of()));
+        this.responses = new ConcurrentHashMap<>();
+        this.products = new ConcurrentHashMap<>();
+    }
+
+    // Loads the model's previews (if it hasn't yet) and starts serving them
+    // on the given address, port 0 picks any free port.
+    //
+    public static CatalogServer start(Model model, InetSocketAddress address, Duration reloadEvery)
+        throws IOException {
+        Objects.requireNonNull(model, "Server started with null model");
+        Objects.requireNonNull(reloadEvery, "Server started with null reload interval");
+        if (!model.loadedPreviews()) {
+            model.loadPreviews();
+        }
+        var catalog = new CatalogServer(model, HttpServer.create(address, BACKLOG));
+        catalog.server.createContext("/", catalog::handle);
+        catalog.server.setExecutor(catalog.requests);
+        catalog.server.start();
+        var millis = reloadEvery.toMillis();
+        catalog.reloads.scheduleWithFixedDelay(catalog::reload, millis, millis, TimeUnit.MILLISECONDS);
+        return catalog;
+    }
+
+    public int port() {
+        return this.server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        this.reloads.shutdownNow();
+        this.server.stop(0);
+        this.requests.close();
+    }
+
+    private void reload() {
+        try {
+            this.model.loadPreviews();
+        } catch (RuntimeException e) {
+            // The previews already loaded are still good to serve.
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to reload the previews", e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            var method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                this.send(exchange, Response.json(405, Json.error("Only GET and HEAD are supported")));
+                return;
+            }
+            Response response;
+            try {
+                response = this.route(exchange.getRequestURI());
+            } catch (IllegalArgumentException e) {
+                response = Response.json(400, Json.error(e.getMessage()));
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Failed to serve " + exchange.getRequestURI(), e);
+                response = Response.json(500, Json.error("Internal error"));
+            }
+            this.send(exchange, response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response route(URI uri) {
+        var catalog = this.dropOutdatedResponses();
+        var path = uri.getRawPath();
+        var parameters = parameters(uri.getRawQuery());
+        if (path.equals("/previews") && parameters.isEmpty()) {
+            return this.cached("/previews", catalog, () -> Json.previews(this.model.previews()));
+        } else if (path.equals("/previews")) {
+            var after = intParameter(parameters, "after", 0);
+            var limit = intParameter(parameters, "limit", DEFAULT_PAGE_SIZE);
+            if (after < 0 || limit <= 0 || limit > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException(
+                    "A page starts after a positive code and holds 1 to " + MAX_PAGE_SIZE + " previews"
+                );
+            }
+            return this.cached(
+                "/previews?after=" + after + "&limit=" + limit,
+                catalog,
+                () -> Json.previews(this.model.previews(after, limit))
+            );
+        } else if (path.startsWith("/products/")) {
+            return this.product(parseInt(path.substring("/products/".length()), "product code"));
+        } else if (path.equals("/search")) {
+            var query = parameters.get("q");
+            if (query == null || query.isBlank()) {
+                throw new IllegalArgumentException("Missing search query q");
+            }
+            return this.cached("/search?q=" + query, catalog, () -> Json.previews(this.model.search(query)));
+        } else {
+            return Response.json(404, Json.error("Not found"));
+        }
+    }
+
+    private Response product(int code) {
+        var found = this.model.find(code);
+        if (found.isEmpty()) {
+            this.products.remove(code);
+            return Response.json(404, Json.error("No product with code " + code));
+        }
+        var product = found.get();
+        var cached = this.products.get(code);
+        if (cached != null && (cached.product == product || cached.product.equals(product))) {
+            return cached.response;
+        }
+        var response = Response.json(200, Json.product(product));
+        if (this.products.size() >= MAX_CACHED) {
+            this.products.clear();
+        }
+        this.products.put(code, new CachedProduct(product, response));
+        return response;
+    }
+
+    // The response is built outside of the map's locks since it may have to
+    // wait for the database: two requests for the same missing response may
+    // both build it, only one of them gets cached.
+    // The catalog may change while the response is being built, and the
+    // responses be dropped before it's cached: it's dropped again if the
+    // catalog it was built from isn't the current one anymore, so that it's
+    // not served in place of the latest one.
+    //
+    private Response cached(String key, Catalog catalog, Supplier<String> json) {
+        var response = this.responses.get(key);
+        if (response != null) {
+            return response;
+        }
+        response = Response.json(200, json.get(), catalog.version);
+        if (this.responses.size() >= MAX_CACHED) {
+            this.responses.clear();
+        }
+        var previous = this.responses.putIfAbsent(key, response);
+        if (previous != null) {
+            return previous;
+        } else if (this.catalog.get() != catalog) {
+            this.responses.remove(key, response);
+        }
+        return response;
+    }
+
+    // Pages and search results may have changed if the model's version has,
+    // and the loaded previews also change when more of them are loaded:
+    // reading both never waits, so they're checked on every request. The
+    // model keeps handing out the same list until it changes, it's only
+    // compared item by item when it's a different one.
+    // Returns the catalog the responses are built from.
+    //
+    private Catalog dropOutdatedResponses() {
+        var current = new Catalog(this.model.version(), this.model.previews());
+        var cachedFrom = this.catalog.get();
+        if (!current.isSameAs(cachedFrom)) {
+            if (this.catalog.compareAndSet(cachedFrom, current)) {
+                this.responses.clear();
+            }
+            return current;
+        }
+        return cachedFrom;
+    }
+
+    private void send(HttpExchange exchange, Response response) throws IOException {
+        var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        headers.set("Vary", "Accept-Encoding");
+        var gzip = response.gzipped.isPresent() && acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (response.status == 200) {
+            headers.set("ETag", gzip ? response.gzippedEtag : response.etag);
+            // Clients may keep the response, as long as they check with us
+            // that it's still the latest one before using it.
+            headers.set("Cache-Control", "no-cache");
+            if (response.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+        var body = gzip ? response.gzipped.get() : response.body;
+        if (gzip) {
+            headers.set("Content-Encoding", "gzip");
+        }
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            headers.set("Content-Length", Integer.toString(body.length));
+            exchange.sendResponseHeaders(response.status, -1);
+        } else {
+            exchange.sendResponseHeaders(response.status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (var coding : acceptEncoding.split(",")) {
+            var parts = coding.split(";");
+            if (parts[0].strip().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        var parameters = new HashMap<String, String>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (var parameter : rawQuery.split("&")) {
+            var separator = parameter.indexOf('=');
+            var name = separator < 0 ? parameter : parameter.substring(0, separator);
+            var value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(
+                URLDecoder.decode(name, StandardCharsets.UTF_8),
+                URLDecoder.decode(value, StandardCharsets.UTF_8)
+            );
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int orElse) {
+        var value = parameters.get(name);
+        return value == null ? orElse : parseInt(value, name);
+    }
+
+    private static int parseInt(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static final class Catalog {
+
+        private final long version;
+        private final List<ProductPreview> previews;
+
+        private Catalog(long version, List<ProductPreview> previews) {
+            this.version = version;
+            this.previews = previews;
+        }
+
+        private boolean isSameAs(Catalog other) {
+            return (
+                other.version == this.version &&
+                (other.previews == this.previews || other.previews.equals(this.previews))
+            );
+        }
+    }
+
+    private static final class CachedProduct {
+
+        private final Product product;
+        private final Response response;
+
+        private CachedProduct(Product product, Response response) {
+            this.product = product;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package db_lab.server;
+
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import java.util.List;
+
+// Writes the catalog as JSON for the `CatalogServer`. There's only a handful of
+// shapes to write, so they're written by hand instead of pulling in a library:
+//
+//     preview: { "code": 1, "name": "...", "tags": ["...", ...] }
+//     product: { "code": 1, "name": "...", "description": "...",
+//                "composition": [{ "material": "...", "percent": 0.5 }, ...] }
+//
+final class Json {
+
+    static String previews(List<ProductPreview> previews) {
+        var json = new StringBuilder(64 * previews.size() + 2);
+        json.append('[');
+        for (int i = 0; i < previews.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            preview(json, previews.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    static String product(Product product) {
+        var json = new StringBuilder(128 + product.description.length());
+        json.append("{\"code\":").append(product.code);
+        json.append(",\"name\":");
+        string(json, product.name);
+        json.append(",\"description\":");
+        string(json, product.description);
+        json.append(",\"composition\":[");
+        var composition = product.composition;
+        for (int i = 0; i < composition.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"material\":");
+            string(json, composition.material(i).description);
+            json.append(",\"percent\":").append(composition.percent(i)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    static String error(String message) {
+        var json = new StringBuilder("{\"error\":");
+        string(json, message);
+        return json.append('}').toString();
+    }
+
+    private static void preview(StringBuilder json, ProductPreview preview) {
+        json.append("{\"code\":").append(preview.code);
+        json.append(",\"name\":");
+        string(json, preview.name);
+        json.append(",\"tags\":[");
+        var first = true;
+        for (Tag tag : preview.tags) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            string(json, tag.name);
+        }
+        json.append("]}");
+    }
+
+    private static void string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
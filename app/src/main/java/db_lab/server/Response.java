@@ -0,0 +1,90 @@
+package db_lab.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+// A response of the `CatalogServer`, serialized once and then sent as is to
+// every client asking for it.
+//
+// The ETag is a hash of the body, so the same content always gets the same
+// tag, even after the response has been dropped from the cache and built
+// again. The gzipped body is a different representation of the same content,
+// so it gets its own tag.
+// Responses built from the whole catalog (pages, search results) also have
+// the model's version (see `Model.version`) in their tag, telling which
+// version of the catalog the client has seen.
+//
+final class Response {
+
+    // Smaller bodies fit in a single packet anyway, compressing them only
+    // costs time on both ends.
+    static final int MIN_GZIP_SIZE = 1_024;
+
+    final int status;
+    final byte[] body;
+    final Optional<byte[]> gzipped;
+    final String etag;
+    final String gzippedEtag;
+
+    private Response(int status, byte[] body, Optional<byte[]> gzipped, String etag) {
+        this.status = status;
+        this.body = body;
+        this.gzipped = gzipped;
+        this.etag = "\"" + etag + "\"";
+        this.gzippedEtag = "\"" + etag + "-gzip\"";
+    }
+
+    static Response json(int status, String json) {
+        var body = json.getBytes(StandardCharsets.UTF_8);
+        var gzipped = body.length >= MIN_GZIP_SIZE ? Optional.of(gzip(body)) : Optional.<byte[]>empty();
+        return new Response(status, body, gzipped, hash(body));
+    }
+
+    static Response json(int status, String json, long version) {
+        var response = json(status, json);
+        return new Response(status, response.body, response.gzipped, version + "-" + hash(response.body));
+    }
+
+    // Whether the client already has this response, given the value of its
+    // `If-None-Match` header.
+    //
+    boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (var tag : ifNoneMatch.split(",")) {
+            var trimmed = tag.strip();
+            if (trimmed.equals("*") || trimmed.equals(this.etag) || trimmed.equals(this.gzippedEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String hash(byte[] body) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM must support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        var bytes = new ByteArrayOutputStream(body.length / 4);
+        try (var gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
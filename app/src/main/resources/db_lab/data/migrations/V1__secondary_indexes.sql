@@ -0,0 +1,8 @@
+-- TAGGED's primary key starts with the tag name, so it's no use to look up the
+-- tags of a product (`TAGS_FOR_PRODUCT`, `LIST_PRODUCTS`, ...). The index also
+-- holds the tag name: those lookups never need to read the table's rows.
+create index tagged_by_product on TAGGED (product_code, tag_name);
+
+-- The products made of a material, looked up by the `material_updated`
+-- trigger each time a material changes.
+create index composition_by_material on COMPOSITION (material_code);
@@ -0,0 +1,70 @@
+-- Every change to a product (its name, description, tags or composition) is
+-- logged here by the triggers below, with a version that always increases.
+-- This way a client that has already loaded the catalog up to some version
+-- only needs to ask for the products changed after it, instead of loading
+-- everything again. There's no foreign key to PRODUCT on purpose: deleted
+-- products must stay in the log.
+-- Versions are handed out when a change is made, not when it's committed: a
+-- change committed by a long transaction shows up after changes with later
+-- versions. Clients must remember the versions missing from what they read
+-- and read them again later, see `ChangeLogPosition`.
+create table if not exists PRODUCT_CHANGE (
+    version bigint not null auto_increment,
+    product_code int not null,
+    constraint product_change_pk primary key (version)
+);
+
+-- Logging a change for every row written would log a product imported with
+-- ten tags and three materials fourteen times, doubling the rows a bulk
+-- import writes. So the triggers log nothing while the session variable
+-- `@db_lab_change_triggers` is set: `BulkImport` sets it and logs a single
+-- change for each product it inserts instead.
+-- Schemas created before the change log was a migration may already have
+-- triggers with the same names, logging every row: they're replaced.
+drop trigger if exists product_inserted;
+drop trigger if exists product_updated;
+drop trigger if exists product_deleted;
+drop trigger if exists tagged_inserted;
+drop trigger if exists tagged_deleted;
+drop trigger if exists composition_inserted;
+drop trigger if exists composition_updated;
+drop trigger if exists composition_deleted;
+drop trigger if exists material_updated;
+
+create trigger product_inserted after insert on PRODUCT
+for each row insert into PRODUCT_CHANGE (product_code)
+select new.code from dual where @db_lab_change_triggers is null;
+
+create trigger product_updated after update on PRODUCT
+for each row insert into PRODUCT_CHANGE (product_code)
+select new.code from dual where @db_lab_change_triggers is null;
+
+create trigger product_deleted after delete on PRODUCT
+for each row insert into PRODUCT_CHANGE (product_code)
+select old.code from dual where @db_lab_change_triggers is null;
+
+create trigger tagged_inserted after insert on TAGGED
+for each row insert into PRODUCT_CHANGE (product_code)
+select new.product_code from dual where @db_lab_change_triggers is null;
+
+create trigger tagged_deleted after delete on TAGGED
+for each row insert into PRODUCT_CHANGE (product_code)
+select old.product_code from dual where @db_lab_change_triggers is null;
+
+create trigger composition_inserted after insert on COMPOSITION
+for each row insert into PRODUCT_CHANGE (product_code)
+select new.product_code from dual where @db_lab_change_triggers is null;
+
+create trigger composition_updated after update on COMPOSITION
+for each row insert into PRODUCT_CHANGE (product_code)
+select new.product_code from dual where @db_lab_change_triggers is null;
+
+create trigger composition_deleted after delete on COMPOSITION
+for each row insert into PRODUCT_CHANGE (product_code)
+select old.product_code from dual where @db_lab_change_triggers is null;
+
+-- A material's new description changes all the products made of it, found
+-- through the `composition_by_material` index of V1.
+create trigger material_updated after update on MATERIAL
+for each row insert into PRODUCT_CHANGE (product_code)
+select c.product_code from COMPOSITION c where c.material_code = new.code;
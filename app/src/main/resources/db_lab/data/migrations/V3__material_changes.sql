@@ -0,0 +1,13 @@
+-- Each `MaterialDictionary` keeps the materials in memory, so it must find out
+-- when one of them is updated: every update is logged here. Dictionaries count
+-- the rows instead of looking at the latest version, which may be committed
+-- before an earlier one. Deletes aren't logged: a material can only be deleted
+-- once no composition refers to it, so nobody looks it up anymore.
+create table if not exists MATERIAL_CHANGE (
+    version bigint not null auto_increment,
+    material_code int not null,
+    constraint material_change_pk primary key (version)
+);
+
+create trigger material_changed after update on MATERIAL
+for each row insert into MATERIAL_CHANGE (material_code) values (new.code);
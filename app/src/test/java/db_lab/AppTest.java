@@ -5,18 +5,29 @@ package db_lab;
 
 import static org.assertj.core.api.Assertions.*;
 
+import db_lab.data.BulkImport;
 import db_lab.data.DAOUtils;
 import db_lab.data.Material;
+import db_lab.data.Migrations;
 import db_lab.data.Product;
 import db_lab.data.ProductPreview;
 import db_lab.data.Tag;
 import db_lab.model.Model;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -29,6 +40,7 @@ public final class AppTest {
     @BeforeClass
     public static void setup() throws SQLException {
         connection = DAOUtils.localMySQLConnection("tessiland", "root", "");
+        Migrations.apply(connection);
 
         // We do everything inside a transaction so that we won't pollute the
         // database with test data.
@@ -80,6 +92,50 @@ public final class AppTest {
         assertThat(actual).hasSameElementsAs(expected);
     }
 
+    @Test
+    public void streamedPreviews() {
+        var expected = ProductPreview.DAO.list(connection);
+        // Nothing else runs on the test's connection while the stream is
+        // open, so it can be shared with it.
+        try (var previews = ProductPreview.DAO.stream(DAOUtils.sharedDataSource(connection))) {
+            assertThat(previews.toList()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void closingAStreamEarlyReleasesItsStatement() {
+        var closedStatements = new AtomicInteger();
+        var tracked = proxy(Connection.class, connection, (method, result) -> {
+            if (result instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, result, (statementMethod, statementResult) -> {
+                    if (statementMethod.getName().equals("close")) {
+                        closedStatements.incrementAndGet();
+                    }
+                    return statementResult;
+                });
+            } else {
+                return result;
+            }
+        });
+        try (var previews = ProductPreview.DAO.stream(DAOUtils.sharedDataSource(tracked))) {
+            assertThat(previews.findFirst()).isPresent();
+            assertThat(closedStatements.get()).isEqualTo(0);
+        }
+        assertThat(closedStatements.get()).isEqualTo(1);
+        // The connection can go on running other queries.
+        assertThat(ProductPreview.DAO.list(connection)).hasSize(2);
+    }
+
+    @Test
+    public void productPreviewsPages() {
+        var firstPage = ProductPreview.DAO.page(connection, 0, 1);
+        assertThat(firstPage).containsExactly(new ProductPreview(1, "a", Set.of(new Tag("tag1"), new Tag("tag2"))));
+        var secondPage = ProductPreview.DAO.page(connection, 1, 1);
+        assertThat(secondPage).containsExactly(new ProductPreview(2, "b", Set.of()));
+        var lastPage = ProductPreview.DAO.page(connection, 2, 1);
+        assertThat(lastPage).isEmpty();
+    }
+
     @Test
     public void product() {
         var actual = Product.DAO.find(connection, 1);
@@ -90,4 +146,168 @@ public final class AppTest {
         var expected = new Product(1, "a", "description a", expectedComposition);
         assertThat(actual).isPresent().hasValue(expected);
     }
+
+    @Test
+    public void products() {
+        var actual = Product.DAO.findAll(connection, new int[] { 1, 2, 1, 3 });
+        var expectedComposition = Map.ofEntries(
+            Map.entry(new Material(1, "linen"), 0.6f),
+            Map.entry(new Material(2, "cotton"), 0.4f)
+        );
+        var expected = Map.ofEntries(
+            Map.entry(1, new Product(1, "a", "description a", expectedComposition)),
+            Map.entry(2, new Product(2, "b", "description b", Map.of()))
+        );
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    public void searchPreviews() {
+        var model = Model.fromConnection(connection);
+        var expected = new ProductPreview(1, "a", Set.of(new Tag("tag1"), new Tag("tag2")));
+        assertThat(model.search("tag1 AND tag2")).containsExactly(expected);
+        assertThat(model.search("tag1 AND NOT tag2")).isEmpty();
+    }
+
+    @Test
+    public void productPreviewsRunsASingleQuery() throws SQLException {
+        // We add more and more tagged products to the catalog and check that
+        // listing the previews always takes the same number of queries, no
+        // matter how many products there are.
+        var catalogSavepoint = connection.setSavepoint();
+        try {
+            var executions = new AtomicInteger();
+            var countingConnection = countingExecutions(connection, executions);
+            var queriesPerSize = new ArrayList<Integer>();
+            var nextCode = 100;
+            for (var size : List.of(10, 100, 1000)) {
+                try (var statement = connection.createStatement()) {
+                    for (; nextCode < 100 + size; nextCode++) {
+                        statement.addBatch("insert into PRODUCT values (" + nextCode + ", 'p', 'description');");
+                        statement.addBatch("insert into TAGGED values (" + nextCode + ", 'tag1');");
+                        statement.addBatch("insert into TAGGED values (" + nextCode + ", 'tag2');");
+                    }
+                    statement.executeBatch();
+                }
+                executions.set(0);
+                var previews = ProductPreview.DAO.list(countingConnection);
+                assertThat(previews).hasSizeGreaterThanOrEqualTo(size);
+                queriesPerSize.add(executions.get());
+            }
+            assertThat(queriesPerSize).containsOnly(1);
+        } finally {
+            connection.rollback(catalogSavepoint);
+        }
+    }
+
+    @Test
+    public void bulkImport() throws SQLException, IOException {
+        var importSavepoint = connection.setSavepoint();
+        try {
+            var csv = String.join(
+                "\n",
+                "name,description,tags,composition",
+                "c,description c,TAG1;tag3,Linen:0.5;wool:0.5",
+                "d,,,"
+            );
+            // The connection is already in a transaction, so the import
+            // doesn't commit anything and can be rolled back.
+            var report = BulkImport.fromCsv(connection, new StringReader(csv));
+            assertThat(report.products).isEqualTo(2);
+            assertThat(report.compositions).isEqualTo(2);
+            assertThat(report.tagged).isEqualTo(2);
+            assertThat(report.newMaterials).isEqualTo(1);
+            assertThat(report.newTags).isEqualTo(1);
+
+            var imported = ProductPreview.DAO.list(connection).stream().filter(preview -> preview.code > 2).toList();
+            assertThat(imported).hasSize(2);
+            assertThat(imported.get(0).name).isEqualTo("c");
+            assertThat(imported.get(0).tags).isEqualTo(Set.of(new Tag("tag1"), new Tag("tag3")));
+            var composition = Material.DAO.forProduct(connection, imported.get(0).code);
+            assertThat(composition).containsEntry(new Material(1, "linen"), 0.5f);
+            assertThat(imported.get(1).name).isEqualTo("d");
+            assertThat(Product.DAO.find(connection, imported.get(1).code).get().description).isEmpty();
+            // A single change is logged for each product, not one for each of
+            // its rows.
+            try (
+                var statement = connection.createStatement();
+                var resultSet = statement.executeQuery("select count(*) from PRODUCT_CHANGE where product_code > 2")
+            ) {
+                resultSet.next();
+                assertThat(resultSet.getInt(1)).isEqualTo(2);
+            }
+        } finally {
+            connection.rollback(importSavepoint);
+        }
+    }
+
+    @Test
+    public void reloadOnlyFetchesChangedPreviews() throws SQLException {
+        var changesSavepoint = connection.setSavepoint();
+        try {
+            var executions = new AtomicInteger();
+            var model = Model.fromConnection(countingExecutions(connection, executions));
+            model.loadPreviews();
+
+            // Nothing changed: it just takes a query to find it out.
+            executions.set(0);
+            var unchanged = model.loadPreviews();
+            assertThat(executions.get()).isEqualTo(1);
+            assertThat(unchanged).isEqualTo(model.previews());
+
+            try (var statement = connection.createStatement()) {
+                statement.executeUpdate("insert into PRODUCT values (3, 'c', 'description c');");
+                statement.executeUpdate("insert into TAGGED values (3, 'tag1');");
+                statement.executeUpdate("update PRODUCT set name = 'a2' where code = 1;");
+                statement.executeUpdate("delete from PRODUCT where code = 2;");
+            }
+            // One query for the latest version, one for the changes and one
+            // for the changed products, however many there are.
+            executions.set(0);
+            var reloaded = model.loadPreviews();
+            assertThat(executions.get()).isEqualTo(3);
+            assertThat(reloaded).containsExactly(
+                new ProductPreview(1, "a2", Set.of(new Tag("tag1"), new Tag("tag2"))),
+                new ProductPreview(3, "c", Set.of(new Tag("tag1")))
+            );
+        } finally {
+            connection.rollback(changesSavepoint);
+        }
+    }
+
+    // Wraps a connection so that every query run by one of its statements
+    // increments the given counter.
+    //
+    private static Connection countingExecutions(Connection connection, AtomicInteger executions) {
+        AfterCall countExecutions = (method, result) -> {
+            if (method.getName().startsWith("execute")) {
+                executions.incrementAndGet();
+            }
+            return result;
+        };
+        return proxy(Connection.class, connection, (method, result) -> {
+            if (result instanceof PreparedStatement) {
+                return proxy(PreparedStatement.class, result, countExecutions);
+            } else if (result instanceof Statement) {
+                return proxy(Statement.class, result, countExecutions);
+            } else {
+                return result;
+            }
+        });
+    }
+
+    private interface AfterCall {
+        Object apply(Method method, Object result);
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, AfterCall afterCall) {
+        var proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (self, method, args) -> {
+            try {
+                return afterCall.apply(method, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        return type.cast(proxy);
+    }
 }
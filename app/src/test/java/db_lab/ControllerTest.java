@@ -0,0 +1,85 @@
+package db_lab;
+
+import static org.assertj.core.api.Assertions.*;
+
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import db_lab.model.Model;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+// Drives a controller backed by the mocked model, recording what it shows with
+// a `HeadlessView`.
+//
+public final class ControllerTest {
+
+    private ExecutorService viewThread;
+    private HeadlessView view;
+    private Controller controller;
+
+    @Before
+    public void setup() {
+        this.viewThread = Executors.newSingleThreadExecutor();
+        this.view = new HeadlessView();
+        this.controller = new Controller(Model.mock(), this.view, this.viewThread);
+    }
+
+    @After
+    public void cleanup() throws InterruptedException {
+        this.viewThread.shutdownNow();
+        this.viewThread.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void initialPageShowsTheFirstPreviews() throws InterruptedException {
+        this.onViewThread(this.controller::userRequestedInitialPage);
+        var page = this.awaitCall("previewPage");
+        assertThat(names(this.view.calls())).containsExactly("loadingPreviews", "previewPage");
+        assertThat((List<?>) page.arguments.get(0)).hasSize(2);
+        assertThat(page.arguments.get(1)).isEqualTo(true);
+    }
+
+    @Test
+    public void clickingOnAPreviewShowsItsProduct() throws InterruptedException {
+        this.onViewThread(this.controller::userRequestedInitialPage);
+        var page = this.awaitCall("previewPage");
+        var preview = (ProductPreview) ((List<?>) page.arguments.get(0)).get(0);
+        this.onViewThread(() -> this.controller.userClickedPreview(preview));
+        var product = (Product) this.awaitCall("productPage").arguments.get(0);
+        assertThat(product.code).isEqualTo(preview.code);
+    }
+
+    @Test
+    public void malformedSearchesAreReported() throws InterruptedException {
+        this.onViewThread(() -> this.controller.userTypedSearch("lana AND"));
+        assertThat(this.awaitCall("invalidSearch").arguments).hasSize(1);
+    }
+
+    private void onViewThread(Runnable action) {
+        this.viewThread.execute(action);
+    }
+
+    // Waits for the view to get a call to the given method and returns it.
+    //
+    private HeadlessView.Call awaitCall(String name) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            for (var call : this.view.calls()) {
+                if (call.name.equals(name)) {
+                    return call;
+                }
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("The view never got a call to " + name + ", only " + this.view.calls());
+    }
+
+    private static List<String> names(List<HeadlessView.Call> calls) {
+        return calls.stream().map(call -> call.name).toList();
+    }
+}
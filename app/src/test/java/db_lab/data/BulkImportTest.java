@@ -0,0 +1,78 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public final class BulkImportTest {
+
+    @Test
+    public void csvEntriesAreParsed() {
+        var csv = String.join(
+            "\n",
+            "name,description,tags,composition",
+            "Gomitolo merino,\"Lana merino, 50g\",lana;merino,merino:0.8;seta:0.2",
+            "Ferri 7mm,,ferri,",
+            "",
+            "\"Il \"\"manuale\"\"\",\"Su due",
+            "righe\",,",
+            ""
+        );
+        var composition = new LinkedHashMap<String, Float>();
+        composition.put("merino", 0.8f);
+        composition.put("seta", 0.2f);
+        assertThat(parse(csv)).containsExactly(
+            new BulkImport.Entry("Gomitolo merino", "Lana merino, 50g", List.of("lana", "merino"), composition),
+            new BulkImport.Entry("Ferri 7mm", null, List.of("ferri"), Map.of()),
+            new BulkImport.Entry("Il \"manuale\"", "Su due\nrighe", List.of(), Map.of())
+        );
+    }
+
+    @Test
+    public void windowsLineEndingsAreSupported() {
+        var csv = "name,description,tags,composition\r\na,b,c,d:1\r\n";
+        assertThat(parse(csv)).containsExactly(
+            new BulkImport.Entry("a", "b", List.of("c"), Map.of("d", 1.0f))
+        );
+    }
+
+    @Test
+    public void malformedFilesTellWhereTheProblemIs() {
+        var header = "name,description,tags,composition\n";
+        assertThatThrownBy(() -> parse("code,name\n1,a\n")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse(header + "a,b,c,d:1\na,b\n"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Line 3");
+        assertThatThrownBy(() -> parse(header + "a,b,c,lana:tanta\n"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Line 2");
+        assertThatThrownBy(() -> parse(header + "a,b,c,lana:0.5;Lana:0.5\n"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Line 2");
+        assertThatThrownBy(() -> parse(header + "\"a,b,c,d\n"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Line 2");
+    }
+
+    @Test
+    public void namesAreComparedLikeMySQLDoes() {
+        assertThat(BulkImport.key("Lanà")).isEqualTo(BulkImport.key("lana"));
+        assertThat(BulkImport.key("COTONE")).isEqualTo(BulkImport.key("cotone"));
+        assertThat(BulkImport.key("lino")).isNotEqualTo(BulkImport.key("lana"));
+        var header = "name,description,tags,composition\n";
+        assertThatThrownBy(() -> parse(header + "a,b,c,lana:0.5;Lanà:0.5\n"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Line 2");
+    }
+
+    private static List<BulkImport.Entry> parse(String csv) {
+        var entries = new ArrayList<BulkImport.Entry>();
+        new BulkImport.CsvEntries(new StringReader(csv)).forEachRemaining(entries::add);
+        return entries;
+    }
+}
@@ -0,0 +1,43 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public final class CompositionTest {
+
+    private static final Material WOOL = new Material(1, "Lana");
+    private static final Material SILK = new Material(2, "Seta");
+    private static final Material COTTON = new Material(3, "Cotone");
+
+    @Test
+    public void materialsAreSortedByShare() {
+        var composition = Composition.of(Map.of(WOOL, 0.2f, SILK, 0.7f, COTTON, 0.1f));
+        assertThat(composition.material(0)).isEqualTo(SILK);
+        assertThat(composition.material(1)).isEqualTo(WOOL);
+        assertThat(composition.material(2)).isEqualTo(COTTON);
+        assertThat(composition.percent(0)).isEqualTo(0.7f);
+    }
+
+    @Test
+    public void compositionsBehaveLikeAnyOtherMap() {
+        var expected = new HashMap<Material, Float>(Map.of(WOOL, 0.6f, SILK, 0.4f));
+        var composition = new Composition.Builder().add(SILK, 0.4f).add(WOOL, 0.6f).build();
+        assertThat(composition).isEqualTo(expected);
+        assertThat(expected).isEqualTo(composition);
+        assertThat(composition.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(composition.get(WOOL)).isEqualTo(0.6f);
+        assertThat(composition.get(COTTON)).isNull();
+        assertThatThrownBy(() -> composition.put(COTTON, 0.1f)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void productsWithTheSameCompositionAreEqual() {
+        var first = new Product(1, "Gomitolo", "", Map.of(WOOL, 0.6f, SILK, 0.4f));
+        var second = new Product(1, "Gomitolo", "", new Composition.Builder().add(WOOL, 0.6f).add(SILK, 0.4f).build());
+        assertThat(first).isEqualTo(second);
+        assertThat(first.hashCode()).isEqualTo(second.hashCode());
+    }
+}
@@ -0,0 +1,60 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setup() {
+        this.pool = new ConnectionPool(
+            () -> DAOUtils.localMySQLConnection("tessiland", "root", ""),
+            2,
+            Duration.ofMillis(200),
+            Duration.ofMinutes(1)
+        );
+    }
+
+    @After
+    public void cleanup() {
+        this.pool.close();
+    }
+
+    @Test
+    public void returnedConnectionsAreReused() throws SQLException {
+        try (var connection = this.pool.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        try (var connection = this.pool.getConnection()) {
+            assertThat(this.pool.stats().active).isEqualTo(1);
+        }
+        var stats = this.pool.stats();
+        assertThat(stats.borrows).isEqualTo(2L);
+        assertThat(stats.active).isEqualTo(0);
+        assertThat(stats.idle).isEqualTo(1);
+    }
+
+    @Test
+    public void borrowingFromAnExhaustedPoolTimesOut() throws SQLException {
+        try (var first = this.pool.getConnection(); var second = this.pool.getConnection()) {
+            assertThatThrownBy(() -> this.pool.getConnection()).isInstanceOf(SQLTimeoutException.class);
+            assertThat(this.pool.stats().timeouts).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void closedConnectionsCannotBeUsed() throws SQLException {
+        var connection = this.pool.getConnection();
+        connection.close();
+        assertThat(connection.isClosed()).isTrue();
+        assertThatThrownBy(() -> connection.createStatement()).isInstanceOf(SQLException.class);
+    }
+}
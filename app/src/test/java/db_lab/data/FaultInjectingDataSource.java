@@ -0,0 +1,154 @@
+package db_lab.data;
+
+import static db_lab.data.JdbcProxies.proxy;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+// A data source for a database that misbehaves on demand.
+//
+// Its connections answer `FIND_PRODUCT` (with a product for any code) and
+// `PRODUCT_COMPOSITION` (always empty), but before running a query they go
+// through the next of the faults injected with `inject`, if there's one, or
+// else the one set with `always`:
+//
+//     faults.inject(Fault.fail(new SQLTransientConnectionException()));
+//     faults.always(Fault.stall());
+//
+// Stalled queries wait until `release` is called.
+//
+final class FaultInjectingDataSource {
+
+    @FunctionalInterface
+    interface Fault {
+        void apply(FaultInjectingDataSource dataSource) throws SQLException;
+
+        static Fault none() {
+            return dataSource -> {};
+        }
+
+        static Fault fail(SQLException error) {
+            return dataSource -> {
+                throw error;
+            };
+        }
+
+        static Fault stall() {
+            return dataSource -> {
+                dataSource.stalled.incrementAndGet();
+                try {
+                    dataSource.released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while stalled", e);
+                }
+            };
+        }
+    }
+
+    private static final List<String> COLUMNS = List.of("code", "name", "description");
+
+    private final ConcurrentLinkedDeque<Fault> injected = new ConcurrentLinkedDeque<>();
+    private volatile Fault always = Fault.none();
+    private final CountDownLatch released = new CountDownLatch(1);
+    // How many queries have been run (or tried to), and how many of them are
+    // stalled.
+    final AtomicInteger queries = new AtomicInteger();
+    final AtomicInteger stalled = new AtomicInteger();
+    // The timeout, in seconds, of the last query.
+    final AtomicInteger queryTimeout = new AtomicInteger();
+
+    void inject(Fault... faults) {
+        this.injected.addAll(List.of(faults));
+    }
+
+    void always(Fault fault) {
+        this.always = fault;
+    }
+
+    void release() {
+        this.released.countDown();
+    }
+
+    DataSource dataSource() {
+        return proxy(DataSource.class, (method, args) -> {
+            if (method.equals("getConnection")) {
+                return this.connection();
+            }
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private Connection connection() {
+        return proxy(Connection.class, (method, args) -> {
+            switch (method) {
+                case "prepareStatement":
+                    return this.statement((String) args[0]);
+                case "isWrapperFor":
+                    return false;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private PreparedStatement statement(String query) {
+        var code = new AtomicInteger();
+        return proxy(PreparedStatement.class, (method, args) -> {
+            switch (method) {
+                case "setObject", "setInt":
+                    code.set((Integer) args[1]);
+                    return null;
+                case "executeQuery":
+                    this.queries.incrementAndGet();
+                    var fault = this.injected.poll();
+                    (fault == null ? this.always : fault).apply(this);
+                    return this.resultSet(query, code.get());
+                case "setQueryTimeout":
+                    this.queryTimeout.set((Integer) args[0]);
+                    return null;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private ResultSet resultSet(String query, int code) {
+        List<Map<String, Object>> rows;
+        if (query.equals(Queries.FIND_PRODUCT)) {
+            rows = List.of(Map.of("code", code, "name", "product " + code, "description", ""));
+        } else if (query.equals(Queries.PRODUCT_COMPOSITION)) {
+            rows = List.of();
+        } else {
+            throw new UnsupportedOperationException(query);
+        }
+        var position = new AtomicInteger(-1);
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    return position.incrementAndGet() < rows.size();
+                case "findColumn":
+                    return COLUMNS.indexOf(args[0]) + 1;
+                case "getInt", "getString":
+                    var column = args[0] instanceof Integer index ? COLUMNS.get(index - 1) : args[0];
+                    return rows.get(position.get()).get(column);
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package db_lab.data;
+
+import java.lang.reflect.Proxy;
+
+// Builds fake JDBC objects (data sources, connections, statements, result
+// sets...) for the tests that need a database without having one: each
+// method called on the proxy is handed to a `Handler` by name, except for
+// `equals`, `hashCode` and `toString`.
+//
+//     var connection = JdbcProxies.proxy(Connection.class, (method, args) -> {
+//         switch (method) {
+//             case "close":
+//                 return null;
+//             default:
+//                 throw new UnsupportedOperationException(method);
+//         }
+//     });
+//
+public final class JdbcProxies {
+
+    private JdbcProxies() {}
+
+    @FunctionalInterface
+    public interface Handler {
+        Object handle(String method, Object[] args) throws Exception;
+    }
+
+    public static <T> T proxy(Class<T> type, Handler handler) {
+        var proxy = Proxy.newProxyInstance(
+            type.getClassLoader(),
+            new Class<?>[] { type },
+            (self, method, args) ->
+                switch (method.getName()) {
+                    case "equals" -> self == args[0];
+                    case "hashCode" -> System.identityHashCode(self);
+                    case "toString" -> type.getSimpleName();
+                    default -> handler.handle(method.getName(), args);
+                }
+        );
+        return type.cast(proxy);
+    }
+}
@@ -0,0 +1,199 @@
+package db_lab.data;
+
+import static db_lab.data.JdbcProxies.proxy;
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public final class MaterialDictionaryTest {
+
+    @Test
+    public void materialsAreLoadedOnceAndJoinedInMemory() {
+        var catalog = new FakeCatalog();
+        catalog.materials.put(1_001, "Lana");
+        catalog.materials.put(1_002, "Cotone");
+        catalog.compositions.put(1, Map.of(1_001, 0.7f, 1_002, 0.3f));
+        catalog.compositions.put(2, Map.of(1_002, 1.0f));
+
+        var first = Material.DAO.forProduct(catalog.connection(), 1);
+        assertThat(first.material(0)).isEqualTo(new Material(1_001, "Lana"));
+        assertThat(first.percent(0)).isEqualTo(0.7f);
+        assertThat(first.material(1)).isEqualTo(new Material(1_002, "Cotone"));
+        var loads = catalog.materialLoads.get();
+        assertThat(loads).isEqualTo(1);
+
+        var compositions = Material.DAO.forProducts(catalog.connection(), new int[] { 1, 2 });
+        assertThat(compositions.get(1)).isEqualTo(first);
+        // Both products are made of the very same material.
+        assertThat(compositions.get(2).material(0)).isSameAs(first.material(1));
+        assertThat(catalog.materialLoads.get()).isEqualTo(loads);
+    }
+
+    @Test
+    public void newMaterialsAreLoadedWhenFirstUsed() {
+        var catalog = new FakeCatalog();
+        catalog.materials.put(2_001, "Legno");
+        catalog.compositions.put(1, Map.of(2_001, 1.0f));
+        Material.DAO.forProduct(catalog.connection(), 1);
+        var loads = catalog.materialLoads.get();
+
+        catalog.materials.put(2_002, "Bambù");
+        catalog.compositions.put(2, Map.of(2_002, 1.0f));
+        var composition = Material.DAO.forProduct(catalog.connection(), 2);
+        assertThat(composition.material(0)).isEqualTo(new Material(2_002, "Bambù"));
+        assertThat(catalog.materialLoads.get()).isEqualTo(loads + 1);
+    }
+
+    @Test
+    public void unknownMaterialsAreAnError() {
+        var catalog = new FakeCatalog();
+        catalog.compositions.put(1, Map.of(3_001, 1.0f));
+        assertThatThrownBy(() -> Material.DAO.forProduct(catalog.connection(), 1))
+            .isInstanceOf(DAOException.class)
+            .hasMessageContaining("3001");
+    }
+
+    @Test
+    public void materialsReadInATransactionAreNotShared() {
+        var catalog = new FakeCatalog();
+        catalog.autoCommit = false;
+        catalog.materials.put(1, "Seta");
+        catalog.compositions.put(1, Map.of(1, 1.0f));
+        assertThat(Material.DAO.forProduct(catalog.connection(), 1).material(0)).isEqualTo(new Material(1, "Seta"));
+
+        // The transaction is rolled back, and its material's code ends up
+        // being used by another one.
+        catalog.autoCommit = true;
+        catalog.materials.put(1, "Lino");
+        assertThat(Material.DAO.forProduct(catalog.connection(), 1).material(0)).isEqualTo(new Material(1, "Lino"));
+    }
+
+    @Test
+    public void updatedMaterialsAreLoadedAgainOnceChecked() {
+        var catalog = new FakeCatalog();
+        catalog.materials.put(1, "Lana");
+        catalog.compositions.put(1, Map.of(1, 1.0f));
+        Material.DAO.forProduct(catalog.connection(), 1);
+        var loads = catalog.materialLoads.get();
+
+        Material.DAO.checkForUpdates(catalog.connection());
+        assertThat(catalog.materialLoads.get()).isEqualTo(loads);
+
+        catalog.update(1, "Lana merino");
+        Material.DAO.checkForUpdates(catalog.connection());
+        assertThat(catalog.materialLoads.get()).isEqualTo(loads + 1);
+        var composition = Material.DAO.forProduct(catalog.connection(), 1);
+        assertThat(composition.material(0)).isEqualTo(new Material(1, "Lana merino"));
+    }
+
+    // Just enough of a database to answer `PRODUCT_COMPOSITION`,
+    // `PRODUCTS_COMPOSITION_BATCH`, `ALL_MATERIALS` and `MATERIAL_CHANGES`.
+    // Its connections share a dictionary, like those of a `ConnectionPool`.
+    //
+    private static final class FakeCatalog {
+
+        private final Map<Integer, String> materials = new HashMap<>();
+        // The materials of each product, with their percentages.
+        private final Map<Integer, Map<Integer, Float>> compositions = new HashMap<>();
+        private final AtomicInteger materialLoads = new AtomicInteger();
+        private final MaterialDictionary dictionary = new MaterialDictionary();
+        private long materialChanges = 0;
+        private boolean autoCommit = true;
+
+        void update(int material, String description) {
+            this.materials.put(material, description);
+            this.materialChanges++;
+        }
+
+        Connection connection() {
+            return proxy(Connection.class, (method, args) -> {
+                switch (method) {
+                    case "prepareStatement":
+                        return this.statement((String) args[0]);
+                    case "isWrapperFor":
+                        return args[0] == MaterialDictionary.class;
+                    case "unwrap":
+                        return this.dictionary;
+                    case "getAutoCommit":
+                        return this.autoCommit;
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+
+        private PreparedStatement statement(String query) {
+            var codes = new ArrayList<Integer>();
+            return proxy(PreparedStatement.class, (method, args) -> {
+                switch (method) {
+                    case "setObject", "setInt":
+                        codes.add((Integer) args[1]);
+                        return null;
+                    case "executeQuery":
+                        return this.resultSet(query, this.query(query, codes));
+                    case "setQueryTimeout", "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+
+        private List<Object[]> query(String query, List<Integer> codes) {
+            var rows = new ArrayList<Object[]>();
+            if (query.equals(Queries.ALL_MATERIALS)) {
+                this.materialLoads.incrementAndGet();
+                this.materials.forEach((code, description) -> rows.add(new Object[] { code, description }));
+            } else if (query.equals(Queries.MATERIAL_CHANGES)) {
+                rows.add(new Object[] { this.materialChanges });
+            } else if (query.equals(Queries.PRODUCT_COMPOSITION) || query.equals(Queries.PRODUCTS_COMPOSITION_BATCH)) {
+                codes
+                    .stream()
+                    .distinct()
+                    .sorted()
+                    .forEach(product ->
+                        this.compositions.getOrDefault(product, Map.of())
+                            .forEach((material, percent) -> rows.add(new Object[] { product, material, percent }))
+                    );
+            } else {
+                throw new UnsupportedOperationException(query);
+            }
+            return rows;
+        }
+
+        private ResultSet resultSet(String query, List<Object[]> rows) {
+            var position = new AtomicInteger(-1);
+            var columns = query.equals(Queries.ALL_MATERIALS)
+                ? List.of("code", "description")
+                : query.equals(Queries.MATERIAL_CHANGES)
+                    ? List.of("changes")
+                    : List.of("product_code", "material_code", "percent");
+            return proxy(ResultSet.class, (method, args) -> {
+                switch (method) {
+                    case "next":
+                        return position.incrementAndGet() < rows.size();
+                    case "findColumn":
+                        return columns.indexOf(args[0]) + 1;
+                    case "getInt", "getFloat", "getString":
+                        return rows.get(position.get())[(int) args[0] - 1];
+                    case "getLong":
+                        return rows.get(position.get())[columns.indexOf(args[0])];
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public final class ProductPreviewTest {
+
+    @Test
+    public void searchesAreTranslatedIntoConditions() {
+        var parameters = new ArrayList<Object>();
+        var condition = ProductPreview.DAO.condition("(ferri OR lana) AND NOT name:gomi", parameters);
+        assertThat(condition)
+            .isEqualTo(
+                "((" + Queries.SEARCH_TAGGED + " or " + Queries.SEARCH_TAGGED + ") and not (" +
+                Queries.SEARCH_NAME_PREFIX + "))"
+            );
+        assertThat(parameters).isEqualTo(List.of("ferri", "lana", ProductPreview.DAO.namePrefix("gomi")));
+
+        parameters.clear();
+        assertThat(ProductPreview.DAO.condition("  ", parameters)).isEqualTo("true");
+        assertThat(parameters).isEmpty();
+        assertThatThrownBy(() -> ProductPreview.DAO.condition("lana AND", new ArrayList<>()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void namePrefixesOnlyMatchTheStartOfAWord() {
+        var prefix = Pattern.compile(ProductPreview.DAO.namePrefix("7½"));
+        assertThat(prefix.matcher("Ferri 7½").find()).isTrue();
+        assertThat(prefix.matcher("7½ ferri").find()).isTrue();
+        assertThat(prefix.matcher("Ferri 17½").find()).isFalse();
+        // Whatever the prefix, it's matched as it is.
+        assertThat(Pattern.compile(ProductPreview.DAO.namePrefix("a.b")).matcher("axb").find()).isFalse();
+    }
+}
@@ -0,0 +1,52 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import javax.management.ObjectName;
+import org.junit.Test;
+
+public final class QueryMetricsTest {
+
+    @Test
+    public void percentilesAreWithinTheHistogramPrecision() {
+        var histogram = new LatencyHistogram();
+        var random = new Random(42);
+        var latencies = new long[100_000];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = 1_000 + random.nextInt(10_000_000);
+            histogram.record(latencies[i]);
+        }
+        Arrays.sort(latencies);
+        for (var fraction : new double[] { 0.5, 0.99, 0.999 }) {
+            var exact = latencies[(int) Math.ceil(fraction * latencies.length) - 1];
+            var approximate = histogram.percentile(fraction);
+            assertThat(approximate).isBetween(exact, exact + exact / 16);
+        }
+        assertThat(histogram.count()).isEqualTo((long) latencies.length);
+        assertThat(histogram.max()).isEqualTo(latencies[latencies.length - 1]);
+    }
+
+    @Test
+    public void bucketsCoverAllLatencies() {
+        for (var value : new long[] { 0, 1, 15, 16, 17, 1_000, 123_456_789, Long.MAX_VALUE }) {
+            var index = LatencyHistogram.index(value);
+            assertThat(LatencyHistogram.upperBound(index)).isGreaterThanOrEqualTo(value);
+            assertThat(index == 0 || LatencyHistogram.upperBound(index - 1) < value).isTrue();
+        }
+    }
+
+    @Test
+    public void metricsArePublishedOverJmx() throws Exception {
+        var metrics = QueryMetrics.of(Queries.FIND_PRODUCT);
+        var callsBefore = metrics.getCalls();
+        metrics.record(System.nanoTime(), 3, null);
+        metrics.failed(System.nanoTime());
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var name = new ObjectName("db_lab:type=Query,name=FIND_PRODUCT");
+        assertThat(server.getAttribute(name, "Calls")).isEqualTo(callsBefore + 2);
+        assertThat(QueryMetrics.of(Queries.FIND_PRODUCT)).isSameAs(metrics);
+    }
+}
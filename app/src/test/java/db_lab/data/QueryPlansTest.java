@@ -0,0 +1,179 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+// Runs `EXPLAIN` on each of the `Queries` against a catalog big enough for
+// MySQL to pick the plans it would pick in production, and checks that none
+// of them has to go through more than `MAX_ROWS` rows with a full scan or a
+// filesort: that's what happens when a query can't use any index, or when an
+// index it relied on goes missing.
+//
+// The threshold can be changed with `-Ddb_lab.explainMaxRows=...`.
+//
+public final class QueryPlansTest {
+
+    private static final long MAX_ROWS = Long.getLong("db_lab.explainMaxRows", 1_000);
+    private static final int PRODUCTS = 5_000;
+
+    // These queries list a whole table on purpose, so they're only checked for
+    // filesorts.
+    private static final Set<String> FULL_SCANS = Set.of("LIST_PRODUCTS", "ALL_MATERIALS", "ALL_TAGS");
+
+    private static Connection connection;
+    private static Savepoint savepoint;
+
+    @BeforeClass
+    public static void setup() throws SQLException {
+        connection = DAOUtils.localMySQLConnection("tessiland", "root", "");
+        Migrations.apply(connection);
+
+        // Just like `AppTest`, the catalog is rolled back once we're done.
+        connection.setAutoCommit(false);
+        savepoint = connection.setSavepoint();
+        var entries = new ArrayList<BulkImport.Entry>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            var composition = new LinkedHashMap<String, Float>();
+            composition.put("plans material " + (i % 50), 0.5f);
+            composition.put("plans material " + (i % 50 + 50), 0.5f);
+            var tags = List.of("plans" + (i % 20), "plans" + (i % 7 + 20));
+            entries.add(new BulkImport.Entry("product " + i, "description", tags, composition));
+        }
+        BulkImport.importAll(connection, entries.iterator());
+    }
+
+    @AfterClass
+    public static void cleanup() throws SQLException {
+        if (connection != null) {
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+            }
+            connection.close();
+        }
+    }
+
+    @Test
+    public void noQueryScansTooManyRows() throws ReflectiveOperationException, SQLException {
+        var problems = new ArrayList<String>();
+        for (var field : Queries.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+                continue;
+            }
+            var query = (String) field.get(null);
+            // Only selects can be explained without side effects.
+            if (!query.strip().toLowerCase(Locale.ROOT).startsWith("select")) {
+                continue;
+            }
+            check(field.getName(), query, List.of(), problems);
+        }
+        assertThat(problems).isEmpty();
+    }
+
+    // The searches answered by the database before the search index is
+    // ready: their text depends on the search, so they're not among the
+    // `Queries`.
+    //
+    @Test
+    public void searchesDontScanTooManyRows() throws SQLException {
+        var problems = new ArrayList<String>();
+        for (var search : List.of("plans3", "plans3 AND plans21")) {
+            var parameters = new ArrayList<Object>();
+            var query = ProductPreview.DAO.searchQuery(search, parameters);
+            check(search, query, parameters, problems);
+        }
+        assertThat(problems).isEmpty();
+    }
+
+    private static void check(String name, String query, List<Object> parameters, List<String> problems)
+        throws SQLException {
+        for (var step : explain(query, parameters)) {
+            if (step.isFullScan() && step.rows > MAX_ROWS && !FULL_SCANS.contains(name)) {
+                problems.add(name + " scans " + step);
+            } else if (step.isFilesort() && step.rows > MAX_ROWS) {
+                problems.add(name + " sorts " + step);
+            }
+        }
+    }
+
+    // A row of `EXPLAIN`'s output: how MySQL reads one of the query's tables.
+    //
+    private static final class Step {
+
+        final String table;
+        final String type;
+        final long rows;
+        final String extra;
+
+        Step(String table, String type, long rows, String extra) {
+            this.table = table;
+            this.type = type == null ? "" : type;
+            this.rows = rows;
+            this.extra = extra == null ? "" : extra;
+        }
+
+        // `ALL` reads the whole table, `index` the whole of one of its
+        // indexes.
+        boolean isFullScan() {
+            return this.type.equals("ALL") || this.type.equals("index");
+        }
+
+        boolean isFilesort() {
+            return this.extra.contains("Using filesort");
+        }
+
+        @Override
+        public String toString() {
+            return Printer.stringify(
+                "Step",
+                List.of(
+                    Printer.field("table", String.valueOf(this.table)),
+                    Printer.field("type", this.type),
+                    Printer.field("rows", this.rows),
+                    Printer.field("extra", this.extra)
+                )
+            );
+        }
+    }
+
+    // Explains the query with the given parameters, the ones left out are set
+    // to 0.
+    //
+    private static List<Step> explain(String query, List<Object> parameters) throws SQLException {
+        var steps = new ArrayList<Step>();
+        try (var statement = connection.prepareStatement("explain " + query)) {
+            var count = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= count; i++) {
+                if (i <= parameters.size()) {
+                    statement.setObject(i, parameters.get(i - 1));
+                } else {
+                    statement.setInt(i, 0);
+                }
+            }
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    steps.add(
+                        new Step(
+                            resultSet.getString("table"),
+                            resultSet.getString("type"),
+                            resultSet.getLong("rows"),
+                            resultSet.getString("Extra")
+                        )
+                    );
+                }
+            }
+        }
+        return steps;
+    }
+}
@@ -0,0 +1,128 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Test;
+
+public final class ResilienceTest {
+
+    private static final Duration OPEN_FOR = Duration.ofMillis(200);
+
+    private final FaultInjectingDataSource faults = new FaultInjectingDataSource();
+
+    @After
+    public void releaseStalledQueries() {
+        this.faults.release();
+    }
+
+    @Test
+    public void transientErrorsAreRetried() {
+        var resilience = resilience(Duration.ofSeconds(5), 3, 10, false);
+        this.faults.inject(
+            FaultInjectingDataSource.Fault.fail(new SQLTransientConnectionException("Connection reset")),
+            FaultInjectingDataSource.Fault.fail(new SQLException("Deadlock found", "40001"))
+        );
+        assertThat(this.find(resilience, 1)).isPresent();
+        assertThat(resilience.stats().retries).isEqualTo(2L);
+    }
+
+    @Test
+    public void otherErrorsAreNotRetried() {
+        var resilience = resilience(Duration.ofSeconds(5), 3, 10, false);
+        this.faults.inject(FaultInjectingDataSource.Fault.fail(new SQLSyntaxErrorException("Bad query")));
+        assertThatThrownBy(() -> this.find(resilience, 1)).isInstanceOf(DAOException.class);
+        assertThat(this.faults.queries.get()).isEqualTo(1);
+        assertThat(resilience.stats().retries).isEqualTo(0L);
+        assertThat(resilience.stats().open).isFalse();
+    }
+
+    @Test
+    public void stalledQueriesGiveUpAtTheDeadline() {
+        var resilience = resilience(Duration.ofMillis(100), 3, 10, false);
+        this.faults.always(FaultInjectingDataSource.Fault.stall());
+        assertThatThrownBy(() -> this.find(resilience, 1))
+            .isInstanceOf(DAOException.class)
+            .hasCauseInstanceOf(SQLTimeoutException.class);
+        assertThat(resilience.stats().timeouts).isEqualTo(1L);
+    }
+
+    @Test
+    public void queriesTimeOutAtTheDeadline() {
+        var resilience = resilience(Duration.ofMillis(1_500), 1, 10, false);
+        this.find(resilience, 1);
+        assertThat(this.faults.queryTimeout.get()).isBetween(1, 2);
+    }
+
+    @Test
+    public void callsFailFastWhileTheDatabaseIsDown() throws InterruptedException {
+        var resilience = resilience(Duration.ofSeconds(5), 1, 3, false);
+        this.faults.always(FaultInjectingDataSource.Fault.fail(new SQLTransientConnectionException("Connection refused")));
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> this.find(resilience, 1)).isInstanceOf(DAOException.class);
+        }
+        assertThat(resilience.stats().open).isTrue();
+        var queries = this.faults.queries.get();
+        assertThatThrownBy(() -> this.find(resilience, 1)).hasMessageContaining("unavailable");
+        assertThat(this.faults.queries.get()).isEqualTo(queries);
+        assertThat(resilience.stats().rejected).isEqualTo(1L);
+
+        // Once the circuit has been open long enough, a call goes through and
+        // closes it.
+        this.faults.always(FaultInjectingDataSource.Fault.none());
+        Thread.sleep(OPEN_FOR.toMillis() + 50);
+        assertThat(this.find(resilience, 1)).isPresent();
+        assertThat(resilience.stats().open).isFalse();
+    }
+
+    @Test
+    public void errorsEscapingTheRetrialDoNotKeepTheCircuitOpen() throws InterruptedException {
+        var resilience = resilience(Duration.ofSeconds(5), 1, 1, false);
+        this.faults.always(FaultInjectingDataSource.Fault.fail(new SQLTransientConnectionException("Connection refused")));
+        assertThatThrownBy(() -> this.find(resilience, 1)).isInstanceOf(DAOException.class);
+        assertThat(resilience.stats().open).isTrue();
+
+        Thread.sleep(OPEN_FOR.toMillis() + 50);
+        assertThatThrownBy(() -> resilience.call(() -> { throw new LinkageError("Broken driver"); }))
+            .isInstanceOf(LinkageError.class);
+        this.faults.always(FaultInjectingDataSource.Fault.none());
+        assertThat(this.find(resilience, 1)).isPresent();
+        assertThat(resilience.stats().open).isFalse();
+    }
+
+    @Test
+    public void slowReadsAreHedged() {
+        var resilience = resilience(Duration.ofSeconds(30), 1, 10, true);
+        for (int code = 1; code <= Resilience.MIN_HEDGE_SAMPLES; code++) {
+            this.find(resilience, code);
+        }
+        assertThat(resilience.stats().hedges).isEqualTo(0L);
+
+        this.faults.inject(FaultInjectingDataSource.Fault.stall());
+        assertThat(this.find(resilience, 1).map(product -> product.name)).isEqualTo(Optional.of("product 1"));
+        // The first attempt is still stuck: the product came from the second.
+        assertThat(this.faults.stalled.get()).isEqualTo(1);
+        assertThat(resilience.stats().hedges).isEqualTo(1L);
+    }
+
+    private static Resilience resilience(Duration deadline, int maxAttempts, int failureThreshold, boolean hedge) {
+        return new Resilience(deadline, maxAttempts, Duration.ofMillis(1), failureThreshold, OPEN_FOR, hedge);
+    }
+
+    private Optional<Product> find(Resilience resilience, int code) {
+        var dataSource = this.faults.dataSource();
+        return resilience.read(() -> {
+            try (var connection = dataSource.getConnection()) {
+                return Product.DAO.find(connection, code);
+            } catch (SQLException e) {
+                throw new DAOException(e);
+            }
+        });
+    }
+}
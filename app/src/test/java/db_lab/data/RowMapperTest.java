@@ -0,0 +1,126 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public final class RowMapperTest {
+
+    private static final List<String> COLUMNS = List.of("code", "name", "tag_name");
+
+    private static final RowMapper<ProductPreview.Builder> PREVIEW = RowMapper.of(
+        (resultSet, columns) -> new ProductPreview.Builder(resultSet.getInt(columns[0]), resultSet.getString(columns[1])),
+        "code",
+        "name"
+    );
+
+    private static final RowMapper.Grouping<ProductPreview.Builder, ProductPreview> PREVIEWS = RowMapper.grouping(
+        "code",
+        PREVIEW,
+        RowMapper.children((preview, resultSet, columns) -> preview.add(resultSet.getString(columns[0])), "tag_name"),
+        ProductPreview.Builder::build
+    );
+
+    @Test
+    public void columnsAreLookedUpOncePerResultSet() throws SQLException {
+        var lookups = new AtomicInteger();
+        var rows = List.of(
+            new Object[] { 1, "a", null },
+            new Object[] { 2, "b", null },
+            new Object[] { 3, "c", null }
+        );
+        var names = RowMapper
+            .of((resultSet, columns) -> resultSet.getString(columns[0]), "name")
+            .list(resultSet(rows, lookups));
+        assertThat(names).containsExactly("a", "b", "c");
+        assertThat(lookups.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void firstOnlyReadsOneRow() throws SQLException {
+        var rows = List.of(new Object[] { 1, "a", null }, new Object[] { 2, "b", null });
+        var first = PREVIEW.first(resultSet(rows, new AtomicInteger()));
+        assertThat(first.map(ProductPreview.Builder::build)).isEqualTo(Optional.of(new ProductPreview(1, "a", Set.of())));
+        assertThat(PREVIEW.first(resultSet(List.of(), new AtomicInteger()))).isEmpty();
+    }
+
+    @Test
+    public void consecutiveRowsWithTheSameKeyAreGrouped() throws SQLException {
+        var rows = List.of(
+            new Object[] { 1, "a", "tag1" },
+            new Object[] { 1, "a", "tag2" },
+            new Object[] { 2, "b", null },
+            new Object[] { 3, "c", "tag1" }
+        );
+        var codes = new ArrayList<Integer>();
+        var previews = new ArrayList<ProductPreview>();
+        var read = PREVIEWS.forEach(
+            resultSet(rows, new AtomicInteger()),
+            (code, preview) -> {
+                codes.add(code);
+                previews.add(preview);
+            }
+        );
+        assertThat(read).isEqualTo(4L);
+        assertThat(codes).containsExactly(1, 2, 3);
+        assertThat(previews)
+            .containsExactly(
+                new ProductPreview(1, "a", Set.of(Tag.of("tag1"), Tag.of("tag2"))),
+                new ProductPreview(2, "b", Set.of()),
+                new ProductPreview(3, "c", Set.of(Tag.of("tag1")))
+            );
+    }
+
+    @Test
+    public void cursorsReadOneGroupAtATime() throws SQLException {
+        var rows = List.of(
+            new Object[] { 1, "a", "tag1" },
+            new Object[] { 1, "a", "tag2" },
+            new Object[] { 2, "b", null }
+        );
+        var cursor = PREVIEWS.cursor(resultSet(rows, new AtomicInteger()));
+        assertThat(cursor.hasNext()).isTrue();
+        assertThat(cursor.nextKey()).isEqualTo(1);
+        assertThat(cursor.next().tags).hasSize(2);
+        // The first row of the next preview has already been read.
+        assertThat(cursor.rows()).isEqualTo(3L);
+        assertThat(cursor.next()).isEqualTo(new ProductPreview(2, "b", Set.of()));
+        assertThat(cursor.hasNext()).isFalse();
+        assertThat(PREVIEWS.cursor(resultSet(List.of(), new AtomicInteger())).hasNext()).isFalse();
+    }
+
+    // A result set with the `COLUMNS` of `LIST_PRODUCTS`, counting how many
+    // times its columns are looked up by name.
+    //
+    private static ResultSet resultSet(List<Object[]> rows, AtomicInteger lookups) {
+        var position = new AtomicInteger(-1);
+        var proxy = Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] { ResultSet.class },
+            (self, method, args) ->
+                switch (method.getName()) {
+                    case "next" -> position.incrementAndGet() < rows.size();
+                    case "findColumn" -> {
+                        lookups.incrementAndGet();
+                        yield COLUMNS.indexOf((String) args[0]) + 1;
+                    }
+                    case "getInt", "getString" -> {
+                        if (args[0] instanceof String) {
+                            throw new AssertionError("Column " + args[0] + " read by name");
+                        }
+                        yield rows.get(position.get())[(int) args[0] - 1];
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }
+        );
+        return (ResultSet) proxy;
+    }
+}
@@ -0,0 +1,47 @@
+package db_lab.data;
+
+import static db_lab.data.JdbcProxies.proxy;
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public final class SharedConnectionTest {
+
+    private static Connection connection() {
+        return proxy(Connection.class, (method, args) -> {
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    @Test
+    public void askingAgainBeforeClosingFailsRightAway() throws SQLException {
+        var dataSource = DAOUtils.sharedDataSource(connection());
+        try (var connection = dataSource.getConnection()) {
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(IllegalStateException.class);
+        }
+        dataSource.getConnection().close();
+    }
+
+    @Test
+    public void theConnectionCanBeGivenBackFromAnyThread() throws Exception {
+        var dataSource = DAOUtils.sharedDataSource(connection());
+        var connection = dataSource.getConnection();
+        CompletableFuture.runAsync(() -> {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new DAOException(e);
+            }
+        }).get();
+        // The thread that got it can have it again, and closing the first
+        // one again doesn't give back the second one.
+        var again = dataSource.getConnection();
+        connection.close();
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(IllegalStateException.class);
+        again.close();
+        dataSource.getConnection().close();
+    }
+}
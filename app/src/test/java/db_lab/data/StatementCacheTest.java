@@ -0,0 +1,44 @@
+package db_lab.data;
+
+import static db_lab.data.JdbcProxies.proxy;
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public final class StatementCacheTest {
+
+    // A connection that keeps track of the statements it prepares.
+    //
+    private static Connection connection(List<String> prepared) {
+        return proxy(Connection.class, (method, args) -> {
+            if (method.equals("prepareStatement")) {
+                prepared.add((String) args[0]);
+                return proxy(PreparedStatement.class, (statementMethod, statementArgs) ->
+                    switch (statementMethod) {
+                        case "isClosed" -> false;
+                        case "clearParameters", "close" -> null;
+                        default -> throw new UnsupportedOperationException(statementMethod);
+                    }
+                );
+            }
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    @Test
+    public void onlyTheQueriesAreCached() throws SQLException {
+        var prepared = new ArrayList<String>();
+        var cache = new StatementCache(connection(prepared), StatementCache.DEFAULT_SIZE);
+        var search = "select p.code from PRODUCT p where p.name regexp ?";
+        for (int i = 0; i < 3; i++) {
+            cache.prepare(Queries.FIND_PRODUCT).close();
+            cache.prepare(search).close();
+        }
+        assertThat(prepared).isEqualTo(List.of(Queries.FIND_PRODUCT, search, search, search));
+    }
+}
@@ -0,0 +1,35 @@
+package db_lab.data;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+public final class TagSetTest {
+
+    @Test
+    public void canonicalTagsAreShared() {
+        assertThat(Tag.of(new String("lana"))).isSameAs(Tag.of("lana"));
+        assertThat(Material.of(1, new String("Legno"))).isSameAs(Material.of(1, "Legno"));
+    }
+
+    @Test
+    public void previewsWithTheSameTagsShareTheirTagSet() {
+        var first = new ProductPreview(1, "a", Set.of(new Tag("lana"), new Tag("materiale")));
+        var second = new ProductPreview(2, "b", new HashSet<>(Set.of(Tag.of("materiale"), Tag.of("lana"))));
+        assertThat(first.tags).isSameAs(second.tags);
+    }
+
+    @Test
+    public void tagSetsBehaveLikeAnyOtherSet() {
+        var tags = new ProductPreview(1, "a", Set.of(new Tag("ferri"), new Tag("materiale"))).tags;
+        var expected = Set.of(new Tag("ferri"), new Tag("materiale"));
+        assertThat(tags).isEqualTo(expected);
+        assertThat(expected).isEqualTo(tags);
+        assertThat(tags.hashCode()).isEqualTo(expected.hashCode());
+        assertThat(tags.contains(new Tag("ferri"))).isTrue();
+        assertThat(tags.contains(new Tag("never seen before"))).isFalse();
+        assertThatThrownBy(() -> tags.add(new Tag("lana"))).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,55 @@
+package db_lab.model;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+
+public final class ChangeLogPositionTest {
+
+    private static TreeMap<Long, Integer> changes(Map<Long, Integer> changes) {
+        return new TreeMap<>(changes);
+    }
+
+    @Test
+    public void readingEveryVersionMovesPastThem() {
+        var position = ChangeLogPosition.at(2).after(changes(Map.of(3L, 30, 4L, 40)), 4, 0);
+        assertThat(position.version).isEqualTo(4L);
+        assertThat(position.isUpToDate(4)).isTrue();
+        assertThat(position.isUpToDate(5)).isFalse();
+    }
+
+    @Test
+    public void missingVersionsAreReadAgainUntilTheyShowUp() {
+        var start = ChangeLogPosition.at(2);
+        var first = changes(Map.of(4L, 40));
+        var position = start.after(first, 4, 0);
+        assertThat(start.unread(first)).containsExactly(40);
+        // Version 3 is still being written, so it's read again next time.
+        assertThat(position.version).isEqualTo(2L);
+        assertThat(position.latest).isEqualTo(4L);
+        assertThat(position.isUpToDate(4)).isFalse();
+
+        // Only the late change is new, the other one has been read already.
+        var second = changes(Map.of(3L, 30, 4L, 40));
+        assertThat(position.unread(second)).containsExactly(30);
+        var filled = position.after(second, 4, 1);
+        assertThat(filled.version).isEqualTo(4L);
+        assertThat(position.read).isEqualTo(3L);
+        assertThat(filled.read).isEqualTo(4L);
+        assertThat(filled.isUpToDate(4)).isTrue();
+    }
+
+    @Test
+    public void gapsAreGivenUpOnAfterATimeout() {
+        var timeout = ChangeLogPosition.GAP_TIMEOUT.toNanos();
+        var position = ChangeLogPosition.at(0).after(changes(Map.of(2L, 20)), 2, 0);
+        // Later reads keep the time the gap was first seen.
+        position = position.after(changes(Map.of(2L, 20, 3L, 30)), 3, timeout);
+        assertThat(position.version).isEqualTo(0L);
+        position = position.after(changes(Map.of(2L, 20, 3L, 30)), 3, timeout + 1);
+        assertThat(position.version).isEqualTo(3L);
+        assertThat(position.isUpToDate(3)).isTrue();
+    }
+}
@@ -0,0 +1,139 @@
+package db_lab.model;
+
+import static org.assertj.core.api.Assertions.*;
+
+import db_lab.data.ProductPreview;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+// Shares a single `DBModel` between many threads, with the database replaced
+// by an in-memory `FakeCatalog` so that the threads can be made to meet where
+// they're most likely to step on each other.
+//
+public final class DBModelConcurrencyTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    public void concurrentReloadsAreCoalesced() throws InterruptedException {
+        var catalog = new FakeCatalog(10);
+        var model = new DBModel(catalog.dataSource());
+        model.loadPreviews();
+        catalog.rename(3, "renamed");
+
+        // The first reload is stopped as soon as it asks for the latest
+        // version, until all the other ones have been started.
+        var blocked = catalog.blockNextVersionCheck();
+        var results = new ConcurrentLinkedQueue<List<ProductPreview>>();
+        var threads = new ArrayList<Thread>();
+        threads.add(Thread.ofPlatform().start(() -> results.add(model.loadPreviews())));
+        assertThat(blocked.entered.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 7; i++) {
+            threads.add(Thread.ofPlatform().start(() -> results.add(model.loadPreviews())));
+        }
+        for (var thread : threads.subList(1, threads.size())) {
+            awaitWaiting(thread);
+        }
+        blocked.release.countDown();
+        for (var thread : threads) {
+            join(thread);
+        }
+
+        // One check for the first load, and a single one for all the reloads.
+        assertThat(catalog.versionChecks.get()).isEqualTo(2);
+        assertThat(results).hasSize(8);
+        for (var previews : results) {
+            assertThat(previews.get(2).name).isEqualTo("renamed");
+        }
+    }
+
+    @Test
+    public void readersAlwaysSeeConsistentPreviews() throws InterruptedException {
+        var catalog = new FakeCatalog(1_000);
+        var model = new DBModel(catalog.dataSource());
+        model.loadPreviews();
+
+        var done = new AtomicBoolean(false);
+        var problems = new ConcurrentLinkedQueue<String>();
+        var reads = new AtomicLong();
+        var threads = new ArrayList<Thread>();
+        // Readers check that each list of previews they get is sorted and
+        // never changes under their feet.
+        for (int i = 0; i < 4; i++) {
+            threads.add(
+                Thread.ofPlatform().start(() -> {
+                    while (!done.get()) {
+                        var previews = model.previews();
+                        var size = previews.size();
+                        for (int j = 1; j < size; j++) {
+                            if (previews.get(j - 1).code >= previews.get(j).code) {
+                                problems.add("Previews out of order at " + j + ": " + previews.subList(j - 1, j + 1));
+                            }
+                        }
+                        if (previews.size() != size) {
+                            problems.add("Previews changed while being read");
+                        }
+                        reads.incrementAndGet();
+                    }
+                })
+            );
+        }
+        // Writers change the catalog and keep the model up to date with it,
+        // while others load more pages.
+        var random = new Random(0);
+        var writer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 200; i++) {
+                var code = 1 + random.nextInt(catalog.lastCode());
+                switch (i % 3) {
+                    case 0 -> catalog.rename(code, "renamed " + i);
+                    case 1 -> catalog.delete(code);
+                    default -> catalog.add("added " + i);
+                }
+                model.loadPreviews();
+            }
+        });
+        var pager = Thread.ofPlatform().start(() -> {
+            while (model.hasMorePreviews()) {
+                model.loadMorePreviews();
+            }
+        });
+        join(writer);
+        join(pager);
+        done.set(true);
+        for (var thread : threads) {
+            join(thread);
+        }
+
+        assertThat(problems).isEmpty();
+        assertThat(reads.get()).isGreaterThan(0L);
+        // Once everyone's done the model knows about every change.
+        model.loadPreviews();
+        while (model.hasMorePreviews()) {
+            model.loadMorePreviews();
+        }
+        assertThat(model.previews()).isEqualTo(catalog.previews());
+    }
+
+    // Waits for the thread to end, failing if it's still running after the
+    // timeout: a thread stuck on a lock must not hang the whole build.
+    //
+    private static void join(Thread thread) throws InterruptedException {
+        thread.join(TIMEOUT.toMillis());
+        assertThat(thread.isAlive()).as("%s still running after %s", thread, TIMEOUT).isFalse();
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        var deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(thread.getState()).isEqualTo(Thread.State.WAITING);
+    }
+}
@@ -0,0 +1,65 @@
+package db_lab.model;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import org.junit.Test;
+
+// Keeps a `DBModel` up to date with a `FakeCatalog` changed between reloads.
+//
+public final class DBModelTest {
+
+    @Test
+    public void changesCommittedLateAreNotMissed() {
+        var catalog = new FakeCatalog(10);
+        var model = new DBModel(catalog.dataSource());
+        model.loadPreviews();
+
+        // The first change is given its version before the second one, but
+        // it's committed after the second one has been merged.
+        var commit = catalog.renameLater(3, "late");
+        catalog.rename(5, "early");
+        assertThat(model.loadPreviews().get(4).name).isEqualTo("early");
+        assertThat(model.previews().get(2).name).isEqualTo("product 3");
+        commit.run();
+
+        assertThat(model.loadPreviews()).isEqualTo(catalog.previews());
+    }
+
+    @Test
+    public void changesAfterTheLoadedPagesShowUpWithTheirPage() {
+        var catalog = new FakeCatalog(DBModel.PAGE_SIZE * 2);
+        var model = new DBModel(catalog.dataSource());
+        model.loadPreviews();
+        var version = model.version();
+        catalog.rename(DBModel.PAGE_SIZE + 1, "renamed");
+
+        // The loaded previews stay the same, but the change is known.
+        var loaded = model.previews();
+        assertThat(model.loadPreviews()).isSameAs(loaded);
+        assertThat(model.version()).isNotEqualTo(version);
+        model.loadMorePreviews();
+        assertThat(model.previews()).isEqualTo(catalog.previews());
+        assertThat(model.previews().get(DBModel.PAGE_SIZE).name).isEqualTo("renamed");
+    }
+
+    @Test
+    public void searchIndexesBuiltBeforeAResetAreDropped() {
+        var catalog = new FakeCatalog(10);
+        var model = new DBModel(catalog.dataSource());
+        catalog.rename(1, "alpha");
+        catalog.rename(2, "beta");
+        model.loadPreviews();
+        assertThat(model.search("name:gamma")).isEmpty();
+
+        // After the reset the versions start over, until they're back to the
+        // one the index was built at.
+        catalog.resetChanges();
+        catalog.rename(3, "gamma");
+        model.loadPreviews();
+        catalog.rename(4, "delta");
+        model.loadPreviews();
+        assertThat(model.version()).isEqualTo(2L);
+        assertThat(model.search("name:gamma")).isEqualTo(List.of(catalog.previews().get(2)));
+    }
+}
@@ -0,0 +1,249 @@
+package db_lab.model;
+
+import static db_lab.data.JdbcProxies.proxy;
+
+import db_lab.data.ProductPreview;
+import db_lab.data.Queries;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+// Just enough of a database to answer the queries used to load previews:
+// products have no tags, and each change gets its own version.
+//
+// A change can also be made by a transaction that commits later on, see
+// `renameLater`: just like MySQL does, its version is handed out right away
+// but neither the change nor its version can be seen until it's committed.
+//
+final class FakeCatalog {
+
+    private static final List<String> COLUMNS = List.of("code", "name", "tag_name", "version", "product_code");
+
+    private final TreeMap<Integer, String> products;
+    // The code of the product changed by each version, the first one is 1.
+    private final List<Integer> changes;
+    // The versions of the changes that haven't been committed yet.
+    private final Set<Long> uncommitted;
+    final AtomicInteger versionChecks;
+    private Blocked blocked;
+
+    FakeCatalog(int size) {
+        this.products = new TreeMap<>();
+        this.changes = new ArrayList<>();
+        this.uncommitted = new HashSet<>();
+        this.versionChecks = new AtomicInteger();
+        for (int code = 1; code <= size; code++) {
+            this.products.put(code, "product " + code);
+        }
+    }
+
+    synchronized int lastCode() {
+        return this.products.isEmpty() ? 0 : this.products.lastKey();
+    }
+
+    synchronized void rename(int code, String name) {
+        if (this.products.replace(code, name) != null) {
+            this.changes.add(code);
+        }
+    }
+
+    synchronized void delete(int code) {
+        if (this.products.remove(code) != null) {
+            this.changes.add(code);
+        }
+    }
+
+    synchronized void add(String name) {
+        var code = this.lastCode() + 1;
+        this.products.put(code, name);
+        this.changes.add(code);
+    }
+
+    // Empties the change log, the next change is version 1 again.
+    //
+    synchronized void resetChanges() {
+        this.changes.clear();
+        this.uncommitted.clear();
+    }
+
+    // Renames the product in a transaction that's only committed when the
+    // returned action is run.
+    //
+    synchronized Runnable renameLater(int code, String name) {
+        this.changes.add(code);
+        var version = (long) this.changes.size();
+        this.uncommitted.add(version);
+        return () -> {
+            synchronized (this) {
+                this.products.replace(code, name);
+                this.uncommitted.remove(version);
+            }
+        };
+    }
+
+    synchronized List<ProductPreview> previews() {
+        var previews = new ArrayList<ProductPreview>();
+        this.products.forEach((code, name) -> previews.add(new ProductPreview(code, name, Set.of())));
+        return previews;
+    }
+
+    synchronized Blocked blockNextVersionCheck() {
+        this.blocked = new Blocked();
+        return this.blocked;
+    }
+
+    DataSource dataSource() {
+        return proxy(DataSource.class, (method, args) -> {
+            if (method.equals("getConnection")) {
+                return this.connection();
+            }
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private List<Map<String, Object>> query(String query, List<Object> parameters) throws InterruptedException {
+        Blocked blocked = null;
+        if (query.equals(Queries.LATEST_PRODUCT_CHANGE)) {
+            this.versionChecks.incrementAndGet();
+            synchronized (this) {
+                blocked = this.blocked;
+                this.blocked = null;
+            }
+        }
+        if (blocked != null) {
+            blocked.entered.countDown();
+            blocked.release.await();
+        }
+        synchronized (this) {
+            var rows = new ArrayList<Map<String, Object>>();
+            if (query.equals(Queries.LATEST_PRODUCT_CHANGE)) {
+                var latest = (long) this.changes.size();
+                while (this.uncommitted.contains(latest)) {
+                    latest--;
+                }
+                rows.add(Map.of("version", latest));
+            } else if (query.equals(Queries.LIST_PRODUCTS)) {
+                this.products.forEach((code, name) -> rows.add(row(code, name)));
+            } else if (query.equals(Queries.LIST_PRODUCTS_PAGE)) {
+                var afterCode = ((Number) parameters.get(0)).intValue();
+                var limit = ((Number) parameters.get(1)).intValue();
+                this.products
+                    .tailMap(afterCode, false)
+                    .entrySet()
+                    .stream()
+                    .limit(limit)
+                    .forEach(product -> rows.add(row(product.getKey(), product.getValue())));
+            } else if (query.equals(Queries.PRODUCT_CHANGES)) {
+                var from = ((Number) parameters.get(0)).longValue();
+                var to = ((Number) parameters.get(1)).longValue();
+                for (var version = from + 1; version <= to; version++) {
+                    if (!this.uncommitted.contains(version)) {
+                        rows.add(Map.of("version", version, "product_code", this.changes.get((int) version - 1)));
+                    }
+                }
+            } else if (query.equals(Queries.FIND_PREVIEWS_BATCH)) {
+                for (var code : new TreeSet<>(parameters)) {
+                    var name = this.products.get((Integer) code);
+                    if (name != null) {
+                        rows.add(row((Integer) code, name));
+                    }
+                }
+            } else {
+                throw new UnsupportedOperationException("Unexpected query " + query);
+            }
+            return rows;
+        }
+    }
+
+    private static Map<String, Object> row(int code, String name) {
+        var row = new HashMap<String, Object>();
+        row.put("code", code);
+        row.put("name", name);
+        row.put("tag_name", null);
+        return row;
+    }
+
+    private Connection connection() {
+        return proxy(Connection.class, (method, args) -> {
+            switch (method) {
+                case "prepareStatement":
+                    return this.statement((String) args[0]);
+                case "isWrapperFor":
+                    return false;
+                case "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private PreparedStatement statement(String query) {
+        var parameters = new ArrayList<Object>();
+        return proxy(PreparedStatement.class, (method, args) -> {
+            switch (method) {
+                case "setObject", "setInt", "setLong", "setString":
+                    var index = (int) args[0];
+                    while (parameters.size() < index) {
+                        parameters.add(null);
+                    }
+                    parameters.set(index - 1, args[1]);
+                    return null;
+                case "executeQuery":
+                    return this.resultSet(this.query(query, parameters));
+                case "setQueryTimeout", "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    // Columns can be read by name or by their index in `COLUMNS`.
+    //
+    private ResultSet resultSet(List<Map<String, Object>> rows) {
+        var position = new AtomicInteger(-1);
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    return position.incrementAndGet() < rows.size();
+                case "findColumn":
+                    return COLUMNS.indexOf(args[0]) + 1;
+                case "getInt":
+                    return (Integer) column(rows.get(position.get()), args[0]);
+                case "getLong":
+                    return (Long) column(rows.get(position.get()), args[0]);
+                case "getString":
+                    return (String) column(rows.get(position.get()), args[0]);
+                case "getStatement", "close":
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private static Object column(Map<String, Object> row, Object column) {
+        return row.get(column instanceof Integer index ? COLUMNS.get(index - 1) : column);
+    }
+
+    // Stops the next check of the latest version as soon as it starts, until
+    // it's released.
+    //
+    static final class Blocked {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+    }
+}
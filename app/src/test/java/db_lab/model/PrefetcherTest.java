@@ -0,0 +1,93 @@
+package db_lab.model;
+
+import static org.assertj.core.api.Assertions.*;
+
+import db_lab.data.Product;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public final class PrefetcherTest {
+
+    private static Optional<Product> product(int code) {
+        return Optional.of(new Product(code, "product " + code, "", Map.of()));
+    }
+
+    private static Optional<Product> unexpectedLoad(int code) {
+        throw new AssertionError("Product " + code + " should have been prefetched");
+    }
+
+    @Test
+    public void prefetchedProductsAreNotLoadedAgain() {
+        var loads = new AtomicInteger();
+        var prefetcher = new Prefetcher(
+            code -> {
+                loads.incrementAndGet();
+                return product(code);
+            },
+            2,
+            10,
+            Duration.ofMinutes(1),
+            System::nanoTime,
+            Runnable::run
+        );
+        prefetcher.prefetch(1);
+        prefetcher.prefetch(1);
+        assertThat(prefetcher.get(1, PrefetcherTest::unexpectedLoad)).isEqualTo(product(1));
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(prefetcher.stats().hits).isEqualTo(1L);
+
+        // Each prefetched product is only handed out once.
+        assertThat(prefetcher.get(1, PrefetcherTest::product)).isEqualTo(product(1));
+        assertThat(prefetcher.stats().hits).isEqualTo(1L);
+    }
+
+    @Test
+    public void expiredPrefetchesAreWasted() {
+        var now = new AtomicLong(0);
+        var prefetcher = new Prefetcher(PrefetcherTest::product, 2, 10, Duration.ofSeconds(1), now::get, Runnable::run);
+        prefetcher.prefetch(1);
+        prefetcher.prefetch(2);
+        now.set(Duration.ofSeconds(2).toNanos());
+        var loads = new AtomicInteger();
+        prefetcher.get(1, code -> {
+            loads.incrementAndGet();
+            return product(code);
+        });
+        assertThat(loads.get()).isEqualTo(1);
+        var stats = prefetcher.stats();
+        assertThat(stats.hits).isEqualTo(0L);
+        assertThat(stats.wasted).isEqualTo(2L);
+        assertThat(stats.size).isEqualTo(0);
+    }
+
+    @Test
+    public void prefetchesAreSkippedWhenAllLoadsAreBusy() {
+        // Loads only run when the test says so.
+        var pending = new ArrayList<Runnable>();
+        var prefetcher = new Prefetcher(PrefetcherTest::product, 2, 10, Duration.ofMinutes(1), System::nanoTime, pending::add);
+        prefetcher.prefetch(1);
+        prefetcher.prefetch(2);
+        prefetcher.prefetch(3);
+        assertThat(pending).hasSize(2);
+        assertThat(prefetcher.stats().skipped).isEqualTo(1L);
+
+        pending.forEach(Runnable::run);
+        prefetcher.prefetch(3);
+        assertThat(pending).hasSize(3);
+    }
+
+    @Test
+    public void invalidatedPrefetchesAreNotHandedOut() {
+        var prefetcher = new Prefetcher(PrefetcherTest::product, 2, 10, Duration.ofMinutes(1), System::nanoTime, Runnable::run);
+        prefetcher.prefetch(1);
+        prefetcher.invalidate(1);
+        var updated = Optional.of(new Product(1, "updated", "", Map.of()));
+        assertThat(prefetcher.get(1, code -> updated)).isEqualTo(updated);
+        assertThat(prefetcher.stats().wasted).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,105 @@
+package db_lab.model;
+
+import static org.assertj.core.api.Assertions.*;
+
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class PreviewSnapshotTest {
+
+    private static final List<ProductPreview> PREVIEWS = List.of(
+        new ProductPreview(1, "Ferri 7½", Set.of(new Tag("ferri"), new Tag("materiale"))),
+        new ProductPreview(3, "Gomitolo lana merino", Set.of(new Tag("materiale"), new Tag("lana"))),
+        new ProductPreview(7, "Manuale", Set.of())
+    );
+
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("snapshot-test");
+        this.file = this.directory.resolve("previews.snapshot");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(this.directory);
+    }
+
+    @Test
+    public void savedPreviewsCanBeOpenedAgain() throws IOException {
+        PreviewSnapshot.write(this.file, 42, true, PREVIEWS);
+        var snapshot = PreviewSnapshot.open(this.file);
+        assertThat(snapshot).isPresent();
+        assertThat(snapshot.get().version).isEqualTo(42L);
+        assertThat(snapshot.get().hasMorePreviews).isTrue();
+        assertThat(snapshot.get().previews()).isEqualTo(PREVIEWS);
+    }
+
+    @Test
+    public void missingSnapshotsAreIgnored() {
+        assertThat(PreviewSnapshot.open(this.file)).isEmpty();
+    }
+
+    @Test
+    public void corruptedSnapshotsAreIgnored() throws IOException {
+        PreviewSnapshot.write(this.file, 42, false, PREVIEWS);
+        var bytes = Files.readAllBytes(this.file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(this.file, bytes);
+        assertThat(PreviewSnapshot.open(this.file)).isEmpty();
+    }
+
+    @Test
+    public void bigPreviewsAreSavedWhole() throws IOException {
+        // More tags than fit in a byte, tag positions and a name longer than
+        // fit in a short.
+        var manyTags = new HashSet<Tag>();
+        for (int i = 0; i < 300; i++) {
+            manyTags.add(new Tag("tag " + i));
+        }
+        var previews = new ArrayList<ProductPreview>();
+        previews.add(new ProductPreview(1, "x".repeat(70_000), manyTags));
+        for (int i = 0; i < 70_000; i++) {
+            previews.add(new ProductPreview(2 + i, "product " + i, Set.of(new Tag("own tag " + i))));
+        }
+        PreviewSnapshot.write(this.file, 42, false, previews);
+        assertThat(PreviewSnapshot.open(this.file).get().previews()).isEqualTo(previews);
+    }
+
+    @Test
+    public void savesAreCoalesced() {
+        var saver = new SnapshotSaver(this.file, Duration.ofHours(1));
+        saver.save(1, true, PREVIEWS.subList(0, 1));
+        saver.save(2, true, PREVIEWS.subList(0, 2));
+        saver.save(3, false, PREVIEWS);
+        assertThat(Files.exists(this.file)).isFalse();
+
+        saver.flush();
+        var snapshot = PreviewSnapshot.open(this.file);
+        assertThat(snapshot.get().version).isEqualTo(3L);
+        assertThat(snapshot.get().previews()).isEqualTo(PREVIEWS);
+    }
+
+    @Test
+    public void snapshotsInAnotherFormatAreIgnored() throws IOException {
+        PreviewSnapshot.write(this.file, 42, false, PREVIEWS);
+        var bytes = Files.readAllBytes(this.file);
+        bytes[7] = (byte) (PreviewSnapshot.FORMAT_VERSION + 1);
+        Files.write(this.file, bytes);
+        assertThat(PreviewSnapshot.open(this.file)).isEmpty();
+    }
+}
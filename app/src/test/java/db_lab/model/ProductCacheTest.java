@@ -0,0 +1,108 @@
+package db_lab.model;
+
+import static org.assertj.core.api.Assertions.*;
+
+import db_lab.data.Product;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public final class ProductCacheTest {
+
+    private static Optional<Product> product(int code) {
+        return Optional.of(new Product(code, "product " + code, "", Map.of()));
+    }
+
+    @Test
+    public void cachedProductsAreNotLoadedAgain() {
+        var cache = new ProductCache(10, Duration.ofMinutes(1));
+        var loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.get(1, code -> {
+                loads.incrementAndGet();
+                return product(code);
+            })).isEqualTo(product(1));
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.stats().hits).isEqualTo(2L);
+        assertThat(cache.stats().misses).isEqualTo(1L);
+    }
+
+    @Test
+    public void expiredProductsAreLoadedAgain() {
+        var now = new AtomicLong(0);
+        var cache = new ProductCache(10, Duration.ofSeconds(1), now::get);
+        var loads = new AtomicInteger();
+        cache.get(1, code -> {
+            loads.incrementAndGet();
+            return product(code);
+        });
+        now.set(Duration.ofSeconds(2).toNanos());
+        cache.get(1, code -> {
+            loads.incrementAndGet();
+            return product(code);
+        });
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidatedProductsAreLoadedAgain() {
+        var cache = new ProductCache(10, Duration.ofMinutes(1));
+        cache.get(1, ProductCacheTest::product);
+        cache.invalidate(1);
+        cache.get(1, ProductCacheTest::product);
+        assertThat(cache.stats().misses).isEqualTo(2L);
+    }
+
+    @Test
+    public void frequentlyUsedProductsAreNotEvicted() {
+        var cache = new ProductCache(2, Duration.ofMinutes(1));
+        for (int i = 0; i < 5; i++) {
+            cache.get(1, ProductCacheTest::product);
+            cache.get(2, ProductCacheTest::product);
+        }
+        // Products seen only once don't take the place of the popular ones.
+        for (int code = 3; code < 100; code++) {
+            cache.get(code, ProductCacheTest::product);
+        }
+        var hitsBefore = cache.stats().hits;
+        cache.get(1, ProductCacheTest::product);
+        cache.get(2, ProductCacheTest::product);
+        assertThat(cache.stats().hits - hitsBefore).isEqualTo(2L);
+        assertThat(cache.stats().size).isEqualTo(2);
+    }
+
+    @Test
+    public void concurrentMissesLoadTheProductOnce() throws Exception {
+        var cache = new ProductCache(10, Duration.ofMinutes(1));
+        var loads = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var results = new ArrayList<Future<Optional<Product>>>();
+            for (int i = 0; i < 50; i++) {
+                results.add(executor.submit(() -> cache.get(1, code -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return product(code);
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (var result : results) {
+                assertThat(result.get()).isEqualTo(product(1));
+            }
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+}
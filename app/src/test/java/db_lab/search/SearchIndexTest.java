@@ -0,0 +1,89 @@
+package db_lab.search;
+
+import static org.assertj.core.api.Assertions.*;
+
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public final class SearchIndexTest {
+
+    private static final SearchIndex INDEX = SearchIndex.of(
+        List.of(
+            preview(4, "Gomitolo lana misto acrilico", "materiale", "lana", "acrilico"),
+            preview(1, "Ferri 7½", "ferri", "materiale"),
+            preview(3, "Gomitolo lana merino", "materiale", "lana"),
+            preview(2, "Uncinetto 5mm", "uncinetti", "materiale"),
+            preview(5, "Manuale del punto croce")
+        )
+    );
+
+    private static ProductPreview preview(int code, String name, String... tags) {
+        return new ProductPreview(code, name, Arrays.stream(tags).map(Tag::new).collect(Collectors.toSet()));
+    }
+
+    private static List<Integer> codes(String query) {
+        return INDEX.search(query).stream().map(preview -> preview.code).collect(Collectors.toList());
+    }
+
+    @Test
+    public void emptySearchMatchesEverything() {
+        assertThat(codes("")).isEqualTo(List.of(1, 2, 3, 4, 5));
+        assertThat(codes("   ")).isEqualTo(List.of(1, 2, 3, 4, 5));
+    }
+
+    @Test
+    public void tagsCanBeCombined() {
+        assertThat(codes("lana")).isEqualTo(List.of(3, 4));
+        assertThat(codes("lana AND materiale")).isEqualTo(List.of(3, 4));
+        assertThat(codes("lana materiale")).isEqualTo(List.of(3, 4));
+        assertThat(codes("ferri OR uncinetti")).isEqualTo(List.of(1, 2));
+        assertThat(codes("lana AND NOT acrilico")).isEqualTo(List.of(3));
+        assertThat(codes("NOT materiale")).isEqualTo(List.of(5));
+        assertThat(codes("(ferri OR lana) AND NOT acrilico")).isEqualTo(List.of(1, 3));
+        assertThat(codes("ferri OR lana AND acrilico")).isEqualTo(List.of(1, 4));
+        assertThat(codes("LANA and Acrilico")).isEqualTo(List.of(4));
+        assertThat(codes("never seen before")).isEqualTo(List.of());
+    }
+
+    @Test
+    public void namesAreSearchedByPrefix() {
+        assertThat(codes("name:gomi")).isEqualTo(List.of(3, 4));
+        assertThat(codes("name:m")).isEqualTo(List.of(3, 4, 5));
+        assertThat(codes("name:Gomitolo NOT acrilico")).isEqualTo(List.of(3));
+        assertThat(codes("name:zzz")).isEqualTo(List.of());
+    }
+
+    @Test
+    public void malformedSearchesAreRejected() {
+        assertThatThrownBy(() -> INDEX.search("lana AND")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> INDEX.search("(lana")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> INDEX.search("lana)")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> INDEX.search("OR lana")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void denseAndSparseSetsGiveTheSameResults() {
+        var universe = 1000;
+        var evens = new IntSet.Builder(universe);
+        var fewOdds = new IntSet.Builder(universe);
+        for (int i = 0; i < universe; i += 2) {
+            evens.add(i);
+        }
+        for (int i = 1; i < 30; i += 2) {
+            fewOdds.add(i);
+        }
+        var dense = evens.build();
+        var sparse = fewOdds.build();
+        assertThat(dense.and(sparse).isEmpty()).isTrue();
+        assertThat(dense.or(sparse).size()).isEqualTo(500 + 15);
+        assertThat(IntSet.all(universe).andNot(dense).size()).isEqualTo(500);
+        assertThat(sparse.andNot(dense).size()).isEqualTo(15);
+        assertThat(dense.contains(998)).isTrue();
+        assertThat(dense.contains(999)).isFalse();
+        assertThat(IntSet.all(universe).size()).isEqualTo(universe);
+    }
+}
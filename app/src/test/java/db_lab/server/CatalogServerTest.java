@@ -0,0 +1,230 @@
+package db_lab.server;
+
+import static org.assertj.core.api.Assertions.*;
+
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import db_lab.model.Model;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class CatalogServerTest {
+
+    private CatalogServer server;
+    private HttpClient client;
+
+    @Before
+    public void start() throws IOException {
+        this.server = CatalogServer.start(Model.mock(), new InetSocketAddress("localhost", 0), Duration.ofHours(1));
+        this.client = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void stop() {
+        this.server.close();
+    }
+
+    @Test
+    public void pagesOfPreviewsAreServedAsJson() throws IOException, InterruptedException {
+        var response = this.get("/previews?after=1&limit=1", null);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).contains("application/json; charset=utf-8");
+        assertThat(response.body()).startsWith("[{\"code\":2,\"name\":\"Uncinetto 5mm\"");
+    }
+
+    @Test
+    public void productsAreServedAsJson() throws IOException, InterruptedException {
+        var response = this.get("/products/1", null);
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body())
+            .isEqualTo(
+                "{\"code\":1,\"name\":\"Ferri 7½\"," +
+                "\"description\":\"Ferri da maglia dimensione 7½ ideale per sciarpe e maglioni di lana\"," +
+                "\"composition\":[{\"material\":\"Legno\",\"percent\":1.0}]}"
+            );
+    }
+
+    @Test
+    public void unchangedResponsesAreNotSentAgain() throws IOException, InterruptedException {
+        var first = this.get("/products/1", null);
+        var etag = first.headers().firstValue("ETag").orElseThrow();
+        var second = this.get("/products/1", etag);
+        assertThat(second.statusCode()).isEqualTo(304);
+        assertThat(second.body()).isEmpty();
+        assertThat(this.get("/products/2", etag).statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    public void pagesAreBuiltAgainWhenTheModelChanges() throws IOException, InterruptedException {
+        var model = new ChangingModel();
+        try (var server = CatalogServer.start(model, new InetSocketAddress("localhost", 0), Duration.ofHours(1))) {
+            var path = "http://localhost:" + server.port() + "/previews?after=1&limit=1";
+            var first = this.get(URI.create(path), null);
+            var etag = first.headers().firstValue("ETag").orElseThrow();
+            assertThat(this.get(URI.create(path), etag).statusCode()).isEqualTo(304);
+            assertThat(model.pages.get()).isEqualTo(1);
+
+            // The page is after the loaded previews, but it's built again
+            // all the same.
+            model.version++;
+            var second = this.get(URI.create(path), etag);
+            assertThat(second.statusCode()).isEqualTo(200);
+            assertThat(second.headers().firstValue("ETag")).isPresent().isNotEqualTo(Optional.of(etag));
+            assertThat(model.pages.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void pagesBuiltWhileTheModelChangesAreNotKept() throws Exception {
+        var model = new ChangingModel();
+        try (var server = CatalogServer.start(model, new InetSocketAddress("localhost", 0), Duration.ofHours(1))) {
+            var base = "http://localhost:" + server.port();
+            var path = URI.create(base + "/previews?after=1&limit=1");
+            model.blocked = new CountDownLatch(1);
+            var request = HttpRequest.newBuilder(path).build();
+            var slow = this.client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            while (model.pages.get() == 0) {
+                Thread.sleep(1);
+            }
+
+            // The model changes while the page is being built, and another
+            // request drops the cached responses before it's done.
+            model.version++;
+            assertThat(this.get(URI.create(base + "/previews"), null).statusCode()).isEqualTo(200);
+            model.blocked.countDown();
+            assertThat(slow.get().headers().firstValue("ETag").orElseThrow()).startsWith("\"0-");
+
+            var latest = this.get(path, null);
+            assertThat(latest.headers().firstValue("ETag").orElseThrow()).startsWith("\"1-");
+            assertThat(model.pages.get()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void errorsHaveTheirOwnStatus() throws IOException, InterruptedException {
+        assertThat(this.get("/products/100", null).statusCode()).isEqualTo(404);
+        assertThat(this.get("/products/abc", null).statusCode()).isEqualTo(400);
+        assertThat(this.get("/previews?limit=0", null).statusCode()).isEqualTo(400);
+        var search = "/search?q=" + URLEncoder.encode("lana AND", StandardCharsets.UTF_8);
+        assertThat(this.get(search, null).statusCode()).isEqualTo(400);
+        assertThat(this.get("/nothing/here", null).statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    public void bodiesWorthCompressingAreGzipped() throws IOException {
+        var json = Json.error("x".repeat(Response.MIN_GZIP_SIZE));
+        var response = Response.json(200, json);
+        assertThat(response.gzipped).isPresent();
+        assertThat(response.gzippedEtag).isNotEqualTo(response.etag);
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(response.gzipped.get()))) {
+            assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(json);
+        }
+        // Both tags stand for the same content.
+        assertThat(response.matches(response.gzippedEtag)).isTrue();
+        assertThat(response.matches(response.etag)).isTrue();
+
+        assertThat(Response.json(200, Json.error("short")).gzipped).isEmpty();
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        return this.get(URI.create("http://localhost:" + this.server.port() + path), ifNoneMatch);
+    }
+
+    private HttpResponse<String> get(URI uri, String ifNoneMatch) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(uri);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return this.client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // The mocked model, with a version that can be changed and counting the
+    // pages it's asked for. While `blocked` is set, pages wait for it.
+    //
+    private static final class ChangingModel implements Model {
+
+        private final Model model = Model.mock();
+        private volatile long version = 0;
+        private final AtomicInteger pages = new AtomicInteger();
+        private volatile CountDownLatch blocked;
+
+        @Override
+        public Optional<Product> find(int productCode) {
+            return this.model.find(productCode);
+        }
+
+        @Override
+        public void prefetch(int productCode) {}
+
+        @Override
+        public Map<Integer, Product> findAll(int[] productCodes) {
+            return this.model.findAll(productCodes);
+        }
+
+        @Override
+        public List<ProductPreview> previews() {
+            return this.model.previews();
+        }
+
+        @Override
+        public boolean loadedPreviews() {
+            return this.model.loadedPreviews();
+        }
+
+        @Override
+        public List<ProductPreview> loadPreviews() {
+            return this.model.loadPreviews();
+        }
+
+        @Override
+        public List<ProductPreview> loadMorePreviews() {
+            return this.model.loadMorePreviews();
+        }
+
+        @Override
+        public boolean hasMorePreviews() {
+            return this.model.hasMorePreviews();
+        }
+
+        @Override
+        public List<ProductPreview> previews(int afterCode, int limit) {
+            this.pages.incrementAndGet();
+            var blocked = this.blocked;
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return this.model.previews(afterCode, limit);
+        }
+
+        @Override
+        public List<ProductPreview> search(String query) {
+            return this.model.search(query);
+        }
+
+        @Override
+        public long version() {
+            return this.version;
+        }
+    }
+}
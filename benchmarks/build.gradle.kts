@@ -0,0 +1,80 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    jmh(project(":app"))
+    jmh(libs.h2)
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+}
+
+// The sizes of the catalogs the database benchmarks are run against, they can
+// be changed from the command line:
+//
+//     ./gradlew :benchmarks:jmh -PcatalogSizes=1000,100000
+//
+val catalogSizes = (findProperty("catalogSizes") as String? ?: "1000,10000").split(",")
+
+jmh {
+    // Results are written as JSON so that runs of different releases can be
+    // compared with one another.
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    benchmarkParameters.put("catalogSize", objects.listProperty<String>().value(catalogSizes))
+    // Reports how much each operation allocates next to how long it takes.
+    profilers.add("gc")
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+}
+
+// Measures the heap taken by a catalog of previews, see `PreviewFootprint`.
+tasks.register<JavaExec>("footprint") {
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "db_lab.benchmarks.PreviewFootprint"
+}
+
+// Simulates many users browsing the catalog at once, see `LoadGenerator`:
+// ./gradlew :benchmarks:loadTest -Pusers=1000 -Pinteractions=20 -PcatalogSize=10000
+tasks.register<JavaExec>("loadTest") {
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "db_lab.benchmarks.LoadGenerator"
+    args(
+        providers.gradleProperty("users").getOrElse("1000"),
+        providers.gradleProperty("interactions").getOrElse("20"),
+        providers.gradleProperty("catalogSize").getOrElse("10000"),
+    )
+}
+
+// Measures how many requests for cached product pages the `CatalogServer`
+// serves, see `ServerLoadTest`:
+// ./gradlew :benchmarks:serverLoadTest -Pclients=64 -Pseconds=10 -PcatalogSize=10000
+tasks.register<JavaExec>("serverLoadTest") {
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "db_lab.benchmarks.ServerLoadTest"
+    systemProperty("sun.net.httpserver.nodelay", "true")
+    args(
+        providers.gradleProperty("clients").getOrElse("64"),
+        providers.gradleProperty("seconds").getOrElse("10"),
+        providers.gradleProperty("catalogSize").getOrElse("10000"),
+    )
+}
+
+// Compares the bytes sent and allocated to load compositions with and without
+// joining their materials, see `ReferenceDataFootprint`:
+// ./gradlew :benchmarks:referenceData -PcatalogSize=10000
+tasks.register<JavaExec>("referenceData") {
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "db_lab.benchmarks.ReferenceDataFootprint"
+    args(providers.gradleProperty("catalogSize").getOrElse("10000"))
+}
@@ -0,0 +1,75 @@
+package db_lab.benchmarks;
+
+import db_lab.data.BulkImport;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Measures how many products per second `BulkImport` can write, with their
+// compositions and tags, into an empty catalog.
+//
+// H2 is much faster to write to than a real MySQL daemon, so this is mostly
+// useful to compare different versions of the import with each other: the
+// real throughput is the one printed by `app import catalog.csv`.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BulkImportBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    private List<BulkImport.Entry> entries;
+    private Catalog catalog;
+
+    @Setup(Level.Trial)
+    public void generateEntries() {
+        var random = new Random(42);
+        var description = "A product description. ".repeat(10);
+        this.entries = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            var tags = new ArrayList<String>();
+            for (int t = random.nextInt(4); t > 0; t--) {
+                tags.add("tag" + random.nextInt(Catalog.TAGS * 2));
+            }
+            var composition = new LinkedHashMap<String, Float>();
+            var materials = 1 + random.nextInt(3);
+            for (int m = 0; m < materials; m++) {
+                composition.put("material " + (1 + random.nextInt(Catalog.MATERIALS * 2)), 1.0f / materials);
+            }
+            this.entries.add(new BulkImport.Entry("product " + i, description, tags, composition));
+        }
+    }
+
+    // Each iteration imports into a new catalog, so that the tables don't keep
+    // on growing from one iteration to the next.
+    //
+    @Setup(Level.Iteration)
+    public void setup() throws SQLException {
+        this.catalog = Catalog.create(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws SQLException {
+        this.catalog.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTS)
+    public BulkImport.Report importProducts() {
+        return BulkImport.importAll(this.catalog.connection, this.entries.iterator());
+    }
+}
@@ -0,0 +1,169 @@
+package db_lab.benchmarks;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Random;
+
+// An in-memory H2 database (running in MySQL compatibility mode) standing in
+// for the real MySQL one, with the same schema as `tessiland.ddl` (plus the
+// indexes and the change log added by its `Migrations`) and seeded with a
+// catalog of `size` products.
+//
+// This way the benchmarks don't need a running MySQL daemon and always run
+// against the same data: the catalog is generated from a fixed seed.
+// H2 can't run the change log's triggers, so `PRODUCT_CHANGE` stays empty:
+// that's fine since the catalog never changes once seeded.
+//
+public final class Catalog implements AutoCloseable {
+
+    public static final int MATERIALS = 50;
+    public static final int TAGS = 20;
+
+    private static final String SCHEMA =
+        """
+        create table TAG (
+            name varchar(32) not null,
+            constraint tag_pk primary key (name)
+        );
+
+        create table MATERIAL (
+            code int not null auto_increment,
+            description varchar(64) not null,
+            constraint material_pk primary key (code)
+        );
+
+        create table PRODUCT (
+            code int not null auto_increment,
+            name varchar(64) not null,
+            description varchar(5000),
+            constraint product_pk primary key (code)
+        );
+
+        create table COMPOSITION (
+            product_code int not null,
+            material_code int not null,
+            percent float(1) not null,
+            constraint composition_pk primary key (product_code, material_code),
+            constraint composition_references_material foreign key (material_code) references MATERIAL (code),
+            constraint composition_references_product foreign key (product_code) references PRODUCT (code)
+        );
+
+        create table TAGGED (
+            product_code int not null,
+            tag_name varchar(32) not null,
+            constraint tagged_pk primary key (tag_name, product_code),
+            constraint tagged_references_tag foreign key (tag_name) references TAG (name),
+            constraint tagged_references_product foreign key (product_code) references PRODUCT (code)
+        );
+
+        create table PRODUCT_CHANGE (
+            version bigint not null auto_increment,
+            product_code int not null,
+            constraint product_change_pk primary key (version)
+        );
+
+        create index tagged_by_product on TAGGED (product_code, tag_name);
+        create index composition_by_material on COMPOSITION (material_code);
+        """;
+
+    public final int size;
+    public final Connection connection;
+
+    private Catalog(int size, Connection connection) {
+        this.size = size;
+        this.connection = connection;
+    }
+
+    public static Catalog create(int size) throws SQLException {
+        var url = "jdbc:h2:mem:tessiland_" + size + "_" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        var connection = DriverManager.getConnection(url, "sa", "");
+        try (var statement = connection.createStatement()) {
+            statement.execute(SCHEMA);
+        }
+        seed(connection, size);
+        return new Catalog(size, connection);
+    }
+
+    // Opens another connection to the same database.
+    //
+    public Connection newConnection() throws SQLException {
+        return DriverManager.getConnection(this.connection.getMetaData().getURL(), "sa", "");
+    }
+
+    // Product codes go from 1 to `size`: this returns the i-th one, wrapping
+    // around so that benchmarks can just keep on incrementing a counter.
+    //
+    public int productCode(long i) {
+        return (int) (Math.floorMod(i, this.size) + 1);
+    }
+
+    private static void seed(Connection connection, int size) throws SQLException {
+        var random = new Random(42);
+        connection.setAutoCommit(false);
+        try (var tags = connection.prepareStatement("insert into TAG values (?)")) {
+            for (int i = 0; i < TAGS; i++) {
+                tags.setString(1, "tag" + i);
+                tags.addBatch();
+            }
+            tags.executeBatch();
+        }
+        try (var materials = connection.prepareStatement("insert into MATERIAL values (?, ?)")) {
+            for (int i = 1; i <= MATERIALS; i++) {
+                materials.setInt(1, i);
+                materials.setString(2, "material " + i);
+                materials.addBatch();
+            }
+            materials.executeBatch();
+        }
+        try (
+            var products = connection.prepareStatement("insert into PRODUCT values (?, ?, ?)");
+            var compositions = connection.prepareStatement("insert into COMPOSITION values (?, ?, ?)");
+            var tagged = connection.prepareStatement("insert into TAGGED values (?, ?)");
+        ) {
+            var description = "A product description. ".repeat(10);
+            for (int code = 1; code <= size; code++) {
+                products.setInt(1, code);
+                products.setString(2, "product " + code);
+                products.setString(3, description);
+                products.addBatch();
+
+                var materialsCount = 1 + random.nextInt(3);
+                var firstMaterial = 1 + random.nextInt(MATERIALS - materialsCount);
+                for (int m = 0; m < materialsCount; m++) {
+                    compositions.setInt(1, code);
+                    compositions.setInt(2, firstMaterial + m);
+                    compositions.setFloat(3, 1.0f / materialsCount);
+                    compositions.addBatch();
+                }
+
+                var tagsCount = random.nextInt(4);
+                var firstTag = random.nextInt(TAGS - tagsCount);
+                for (int t = 0; t < tagsCount; t++) {
+                    tagged.setInt(1, code);
+                    tagged.setString(2, "tag" + (firstTag + t));
+                    tagged.addBatch();
+                }
+
+                if (code % 1_000 == 0) {
+                    products.executeBatch();
+                    compositions.executeBatch();
+                    tagged.executeBatch();
+                }
+            }
+            products.executeBatch();
+            compositions.executeBatch();
+            tagged.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (var statement = this.connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+        this.connection.close();
+    }
+}
@@ -0,0 +1,96 @@
+package db_lab.benchmarks;
+
+import db_lab.data.ConnectionPool;
+import db_lab.data.ProductPreview;
+import db_lab.model.DBModel;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+// Measures how reading the previews of a single model shared by many threads
+// scales with the number of threads: since reads never wait for one another
+// the throughput should grow with the number of cores.
+// The `readWhileReloading` group also has a thread reloading the previews all
+// the time, which readers shouldn't notice.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentModelBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int catalogSize;
+
+    private Catalog catalog;
+    private ConnectionPool pool;
+    private DBModel model;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        this.catalog = Catalog.create(this.catalogSize);
+        this.pool = new ConnectionPool(this.catalog::newConnection, 4, Duration.ofSeconds(5), Duration.ofMinutes(5));
+        this.model = new DBModel(this.pool);
+        this.model.loadPreviews();
+        while (this.model.hasMorePreviews()) {
+            this.model.loadMorePreviews();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.pool.close();
+        this.catalog.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<ProductPreview> readOneThread() {
+        return this.model.previews();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public List<ProductPreview> readTwoThreads() {
+        return this.model.previews();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<ProductPreview> readFourThreads() {
+        return this.model.previews();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<ProductPreview> readAllCores() {
+        return this.model.previews();
+    }
+
+    @Benchmark
+    @Group("readWhileReloading")
+    @GroupThreads(3)
+    public List<ProductPreview> read() {
+        return this.model.previews();
+    }
+
+    @Benchmark
+    @Group("readWhileReloading")
+    @GroupThreads(1)
+    public List<ProductPreview> reload() {
+        return this.model.loadPreviews();
+    }
+}
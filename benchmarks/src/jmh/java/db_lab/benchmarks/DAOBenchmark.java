@@ -0,0 +1,132 @@
+package db_lab.benchmarks;
+
+import db_lab.data.ConnectionPool;
+import db_lab.data.DAOUtils;
+import db_lab.data.Material;
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Benchmarks each of the DAOs against catalogs of different sizes.
+//
+// The DAOs are given a connection with a statement cache, just like the ones
+// the model borrows from a `ConnectionPool`.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DAOBenchmark {
+
+    // How many products are looked up by the batch benchmarks.
+    private static final int BATCH = 1_000;
+
+    @Param({ "1000", "10000" })
+    public int catalogSize;
+
+    private Catalog catalog;
+    private Connection connection;
+    // Streams need a connection of their own.
+    private ConnectionPool pool;
+    private int[] batch;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        this.catalog = Catalog.create(this.catalogSize);
+        this.connection = DAOUtils.sharedDataSource(this.catalog.connection).getConnection();
+        this.pool = new ConnectionPool(this.catalog::newConnection, 1, Duration.ofSeconds(5), Duration.ofMinutes(5));
+        this.batch = new int[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            this.batch[i] = this.catalog.productCode(i * 7L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.pool.close();
+        this.catalog.close();
+    }
+
+    @Benchmark
+    public Set<Tag> tagsOfProduct() {
+        return Tag.DAO.ofProduct(this.connection, this.catalog.productCode(this.next++));
+    }
+
+    @Benchmark
+    public Map<Material, Float> compositionOfProduct() {
+        return Material.DAO.forProduct(this.connection, this.catalog.productCode(this.next++));
+    }
+
+    @Benchmark
+    public Optional<Product> findProduct() {
+        return Product.DAO.find(this.connection, this.catalog.productCode(this.next++));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<Integer, Product> findAllProducts() {
+        return Product.DAO.findAll(this.connection, this.batch);
+    }
+
+    // The same products loaded by `findAllProducts`, but one at a time.
+    //
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void findProductsOneByOne(Blackhole blackhole) {
+        for (var code : this.batch) {
+            blackhole.consume(Product.DAO.find(this.connection, code));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<ProductPreview> listPreviews() {
+        return ProductPreview.DAO.list(this.connection);
+    }
+
+    // The same previews listed by `listPreviews`, read one at a time from a
+    // stream: compare their `gc.alloc.rate.norm` to see how much memory the
+    // list takes.
+    //
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void streamPreviews(Blackhole blackhole) {
+        try (var previews = ProductPreview.DAO.stream(this.pool)) {
+            previews.forEach(blackhole::consume);
+        }
+    }
+
+    // How long it takes to get hold of the first preview of the stream, which
+    // shouldn't depend on the size of the catalog.
+    //
+    @Benchmark
+    public Optional<ProductPreview> firstStreamedPreview() {
+        try (var previews = ProductPreview.DAO.stream(this.pool)) {
+            return previews.findFirst();
+        }
+    }
+
+    @Benchmark
+    public List<ProductPreview> previewsPage() {
+        return ProductPreview.DAO.page(this.connection, this.catalog.productCode(this.next++), 100);
+    }
+}
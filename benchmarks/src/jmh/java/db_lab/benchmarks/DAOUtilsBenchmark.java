@@ -0,0 +1,86 @@
+package db_lab.benchmarks;
+
+import db_lab.data.DAOUtils;
+import db_lab.data.Queries;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Compares preparing and binding a statement from scratch each time, boxing
+// its parameter (`DAOUtils.prepare` on a plain connection), with reusing the
+// statement cached by the connection and binding an `int` directly.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DAOUtilsBenchmark {
+
+    @Param({ "1000" })
+    public int catalogSize;
+
+    private Catalog catalog;
+    private Connection uncached;
+    private Connection cached;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        this.catalog = Catalog.create(this.catalogSize);
+        this.uncached = this.catalog.connection;
+        this.cached = DAOUtils.sharedDataSource(this.catalog.connection).getConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.catalog.close();
+    }
+
+    @Benchmark
+    public void prepareUncachedBoxed(Blackhole blackhole) throws SQLException {
+        var code = this.catalog.productCode(this.next++);
+        try (var statement = DAOUtils.prepare(this.uncached, Queries.FIND_PRODUCT, (Object) code)) {
+            blackhole.consume(statement);
+        }
+    }
+
+    @Benchmark
+    public void prepareCachedInt(Blackhole blackhole) throws SQLException {
+        var code = this.catalog.productCode(this.next++);
+        try (var statement = DAOUtils.prepare(this.cached, Queries.FIND_PRODUCT, code)) {
+            blackhole.consume(statement);
+        }
+    }
+
+    @Benchmark
+    public void executeUncachedBoxed(Blackhole blackhole) throws SQLException {
+        var code = this.catalog.productCode(this.next++);
+        try (
+            var statement = DAOUtils.prepare(this.uncached, Queries.FIND_PRODUCT, (Object) code);
+            var resultSet = statement.executeQuery();
+        ) {
+            blackhole.consume(resultSet.next());
+        }
+    }
+
+    @Benchmark
+    public void executeCachedInt(Blackhole blackhole) throws SQLException {
+        var code = this.catalog.productCode(this.next++);
+        try (
+            var statement = DAOUtils.prepare(this.cached, Queries.FIND_PRODUCT, code);
+            var resultSet = statement.executeQuery();
+        ) {
+            blackhole.consume(resultSet.next());
+        }
+    }
+}
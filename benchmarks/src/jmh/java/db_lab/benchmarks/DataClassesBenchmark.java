@@ -0,0 +1,126 @@
+package db_lab.benchmarks;
+
+import db_lab.data.Material;
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Benchmarks `equals`, `hashCode` and `toString` of the data classes.
+//
+// `equals` is always called on two equal (but distinct) objects, since that's
+// the case where all the fields have to be compared.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DataClassesBenchmark {
+
+    private Tag tag;
+    private Tag otherTag;
+    private Material material;
+    private Material otherMaterial;
+    private ProductPreview preview;
+    private ProductPreview otherPreview;
+    private Product product;
+    private Product otherProduct;
+
+    @Setup
+    public void setup() {
+        this.tag = tag();
+        this.otherTag = tag();
+        this.material = material(1);
+        this.otherMaterial = material(1);
+        this.preview = preview();
+        this.otherPreview = preview();
+        this.product = product();
+        this.otherProduct = product();
+    }
+
+    private static Tag tag() {
+        return new Tag(new String("materiale"));
+    }
+
+    private static Material material(int code) {
+        return new Material(code, new String("Lana merino"));
+    }
+
+    private static ProductPreview preview() {
+        return new ProductPreview(1, "Gomitolo lana merino", Set.of(new Tag("materiale"), new Tag("lana"), tag()));
+    }
+
+    private static Product product() {
+        var description = "Gomitolo lana merino 100%, senza trattamenti. ".repeat(100);
+        var composition = Map.of(material(1), 0.6f, material(2), 0.3f, material(3), 0.1f);
+        return new Product(1, "Gomitolo lana merino", description, composition);
+    }
+
+    @Benchmark
+    public boolean tagEquals() {
+        return this.tag.equals(this.otherTag);
+    }
+
+    @Benchmark
+    public int tagHashCode() {
+        return this.tag.hashCode();
+    }
+
+    @Benchmark
+    public String tagToString() {
+        return this.tag.toString();
+    }
+
+    @Benchmark
+    public boolean materialEquals() {
+        return this.material.equals(this.otherMaterial);
+    }
+
+    @Benchmark
+    public int materialHashCode() {
+        return this.material.hashCode();
+    }
+
+    @Benchmark
+    public String materialToString() {
+        return this.material.toString();
+    }
+
+    @Benchmark
+    public boolean previewEquals() {
+        return this.preview.equals(this.otherPreview);
+    }
+
+    @Benchmark
+    public int previewHashCode() {
+        return this.preview.hashCode();
+    }
+
+    @Benchmark
+    public String previewToString() {
+        return this.preview.toString();
+    }
+
+    @Benchmark
+    public boolean productEquals() {
+        return this.product.equals(this.otherProduct);
+    }
+
+    @Benchmark
+    public int productHashCode() {
+        return this.product.hashCode();
+    }
+
+    @Benchmark
+    public String productToString() {
+        return this.product.toString();
+    }
+}
@@ -0,0 +1,272 @@
+package db_lab.benchmarks;
+
+import db_lab.Controller;
+import db_lab.HeadlessView;
+import db_lab.data.ConnectionPool;
+import db_lab.data.ProductPreview;
+import db_lab.model.DBModel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Simulates many users using the application at the same time, each with their
+// own `Controller` (and `HeadlessView`) but all of them sharing the same model,
+// just like a server would. It reports the throughput and the latency
+// percentiles of each kind of interaction.
+//
+// Each user starts from the previews page and then goes on clicking around at
+// random (from a fixed seed, so that runs can be compared with one another):
+// looking at products, searching, loading more previews. The latency of an
+// interaction goes from the moment the controller is told about it to the
+// moment the view gets the page it leads to. Interactions that don't end
+// within `INTERACTION_TIMEOUT` are counted apart, and their latency recorded
+// as the timeout itself: leaving them out would make the percentiles look
+// better the worse the application does.
+//
+//     ./gradlew :benchmarks:loadTest -Pusers=1000 -Pinteractions=20 -PcatalogSize=10000
+//
+public final class LoadGenerator {
+
+    private static final Duration INTERACTION_TIMEOUT = Duration.ofSeconds(30);
+    private static final int POOL_SIZE = 10;
+
+    private enum Interaction {
+        INITIAL_PAGE(Set.of("previewPage", "failedToLoadPreviews")),
+        CLICK_PREVIEW(Set.of("productPage", "failedToLoadProduct")),
+        BACK(Set.of("previewPage", "failedToLoadPreviews")),
+        SEARCH(Set.of("searchResults", "invalidSearch", "failedToSearch")),
+        CLEAR_SEARCH(Set.of("searchCleared")),
+        LOAD_MORE(Set.of("morePreviews", "failedToLoadPreviews"));
+
+        // The calls to the view that mark the end of the interaction.
+        private final Set<String> outcomes;
+
+        Interaction(Set<String> outcomes) {
+            this.outcomes = outcomes;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        var interactions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        var catalogSize = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        try (
+            var catalog = Catalog.create(catalogSize);
+            var pool = new ConnectionPool(catalog::newConnection, POOL_SIZE, Duration.ofSeconds(5), Duration.ofMinutes(5));
+        ) {
+            var model = new DBModel(pool);
+            var latencies = new EnumMap<Interaction, List<Long>>(Interaction.class);
+            var failures = new EnumMap<Interaction, Long>(Interaction.class);
+            var timeouts = new EnumMap<Interaction, Long>(Interaction.class);
+            for (var interaction : Interaction.values()) {
+                latencies.put(interaction, new ArrayList<>());
+                failures.put(interaction, 0L);
+                timeouts.put(interaction, 0L);
+            }
+
+            var start = System.nanoTime();
+            try (var threads = Executors.newVirtualThreadPerTaskExecutor()) {
+                var runs = new ArrayList<CompletableFuture<User>>();
+                for (int i = 0; i < users; i++) {
+                    var user = new User(model, new Random(i));
+                    runs.add(CompletableFuture.supplyAsync(() -> user.run(interactions), threads));
+                }
+                for (var run : runs) {
+                    var user = run.join();
+                    user.latencies.forEach((interaction, userLatencies) -> latencies.get(interaction).addAll(userLatencies));
+                    user.failures.forEach((interaction, count) -> failures.merge(interaction, count, Long::sum));
+                    user.timeouts.forEach((interaction, count) -> timeouts.merge(interaction, count, Long::sum));
+                }
+            }
+            var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            System.out.printf(
+                "%d users, %d interactions each, %d products, in %.1f s%n",
+                users,
+                interactions,
+                catalogSize,
+                elapsed.toNanos() / 1e9
+            );
+            System.out.printf(
+                "%-14s %8s %8s %9s %10s %10s %10s %10s%n",
+                "interaction",
+                "count",
+                "failed",
+                "timed out",
+                "per sec",
+                "p50 ms",
+                "p99 ms",
+                "p999 ms"
+            );
+            for (var interaction : Interaction.values()) {
+                var sorted = latencies.get(interaction).stream().mapToLong(Long::longValue).toArray();
+                Arrays.sort(sorted);
+                System.out.printf(
+                    "%-14s %8d %8d %9d %10.1f %10.2f %10.2f %10.2f%n",
+                    interaction,
+                    sorted.length,
+                    failures.get(interaction),
+                    timeouts.get(interaction),
+                    sorted.length / (elapsed.toNanos() / 1e9),
+                    percentile(sorted, 0.5) / 1e6,
+                    percentile(sorted, 0.99) / 1e6,
+                    percentile(sorted, 0.999) / 1e6
+                );
+            }
+            System.out.println(model.cacheStats());
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        var rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    // A simulated user, with their own controller and view. The controller is
+    // only ever called from the user's own view thread, just like the Swing
+    // one is only called from the event dispatch thread.
+    //
+    private static final class User {
+
+        private final Random random;
+        private final Controller controller;
+        private final ExecutorService viewThread;
+        private final AtomicReference<Pending> pending;
+        private final EnumMap<Interaction, List<Long>> latencies;
+        private final EnumMap<Interaction, Long> failures;
+        // Interactions that timed out, also counted as failures.
+        private final EnumMap<Interaction, Long> timeouts;
+        // What the view is currently showing.
+        private List<ProductPreview> shown;
+        private boolean hasMore;
+        private boolean onProductPage;
+        private boolean searching;
+
+        User(DBModel model, Random random) {
+            this.random = random;
+            this.viewThread = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+            this.pending = new AtomicReference<>();
+            this.latencies = new EnumMap<>(Interaction.class);
+            this.failures = new EnumMap<>(Interaction.class);
+            this.timeouts = new EnumMap<>(Interaction.class);
+            this.shown = List.of();
+            var view = new HeadlessView(this::viewCalled);
+            this.controller = new Controller(model, view, this.viewThread);
+        }
+
+        User run(int interactions) {
+            try {
+                this.interact(Interaction.INITIAL_PAGE, this.controller::userRequestedInitialPage);
+                for (int i = 0; i < interactions; i++) {
+                    this.next();
+                }
+                return this;
+            } finally {
+                this.viewThread.shutdown();
+            }
+        }
+
+        private void next() {
+            if (this.onProductPage) {
+                this.interact(Interaction.BACK, this.controller::userClickedBack);
+            } else if (this.shown.isEmpty() && this.searching) {
+                this.interact(Interaction.CLEAR_SEARCH, () -> this.controller.userTypedSearch(""));
+            } else if (this.shown.isEmpty()) {
+                this.interact(Interaction.INITIAL_PAGE, this.controller::userClickedReloadPreviews);
+            } else {
+                var choice = this.random.nextInt(4);
+                if (choice == 0) {
+                    var query = "tag" + this.random.nextInt(Catalog.TAGS);
+                    this.interact(Interaction.SEARCH, () -> this.controller.userTypedSearch(query));
+                } else if (choice == 1 && this.hasMore && !this.searching) {
+                    this.interact(Interaction.LOAD_MORE, this.controller::userClickedLoadMorePreviews);
+                } else {
+                    var preview = this.shown.get(this.random.nextInt(this.shown.size()));
+                    this.interact(Interaction.CLICK_PREVIEW, () -> this.controller.userClickedPreview(preview));
+                }
+            }
+        }
+
+        // Tells the controller about the interaction (on the view thread) and
+        // waits for the view to show its outcome.
+        //
+        private void interact(Interaction interaction, Runnable action) {
+            var outcome = new Pending(interaction);
+            this.pending.set(outcome);
+            var start = System.nanoTime();
+            this.viewThread.execute(action);
+            try {
+                var call = outcome.call.get(INTERACTION_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS);
+                this.latencies.computeIfAbsent(interaction, i -> new ArrayList<>()).add(System.nanoTime() - start);
+                if (call.name.startsWith("failed") || call.name.equals("invalidSearch")) {
+                    this.failures.merge(interaction, 1L, Long::sum);
+                }
+            } catch (TimeoutException e) {
+                this.latencies.computeIfAbsent(interaction, i -> new ArrayList<>()).add(INTERACTION_TIMEOUT.toNanos());
+                this.timeouts.merge(interaction, 1L, Long::sum);
+                this.failures.merge(interaction, 1L, Long::sum);
+            } catch (ExecutionException e) {
+                this.failures.merge(interaction, 1L, Long::sum);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // Called on the view thread.
+        //
+        @SuppressWarnings("unchecked")
+        private void viewCalled(HeadlessView.Call call) {
+            switch (call.name) {
+                case "previewPage", "searchCleared" -> {
+                    this.shown = (List<ProductPreview>) call.arguments.get(0);
+                    this.hasMore = (Boolean) call.arguments.get(1);
+                    this.onProductPage = false;
+                    this.searching = false;
+                }
+                case "morePreviews" -> {
+                    var more = new ArrayList<>(this.shown);
+                    more.addAll((List<ProductPreview>) call.arguments.get(0));
+                    this.shown = more;
+                    this.hasMore = (Boolean) call.arguments.get(1);
+                }
+                case "searchResults" -> {
+                    this.shown = (List<ProductPreview>) call.arguments.get(0);
+                    this.searching = true;
+                }
+                case "productPage" -> this.onProductPage = true;
+                default -> {}
+            }
+            var outcome = this.pending.get();
+            if (outcome != null && outcome.interaction.outcomes.contains(call.name)) {
+                outcome.call.complete(call);
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        private final Interaction interaction;
+        private final CompletableFuture<HeadlessView.Call> call;
+
+        private Pending(Interaction interaction) {
+            this.interaction = interaction;
+            this.call = new CompletableFuture<>();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package db_lab.benchmarks;
+
+import db_lab.data.DAOUtils;
+import db_lab.data.Product;
+import db_lab.data.ProductPreview;
+import db_lab.model.DBModel;
+import db_lab.model.Model;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Compares product lookups through the database backed model (with the product
+// cache large enough to hold all the products, or too small to hold any of
+// them) with the ones of the in-memory mocked model.
+// It also measures reloading the previews of a catalog that hasn't changed
+// since they were loaded.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int catalogSize;
+
+    private Catalog catalog;
+    private Model cachedModel;
+    private Model uncachedModel;
+    private Model mockedModel;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        this.catalog = Catalog.create(this.catalogSize);
+        var dataSource = DAOUtils.sharedDataSource(this.catalog.connection);
+        this.cachedModel = new DBModel(dataSource, this.catalogSize, Duration.ofHours(1));
+        this.uncachedModel = new DBModel(dataSource, 1, Duration.ZERO);
+        this.mockedModel = Model.mock();
+        this.cachedModel.loadPreviews();
+        while (this.cachedModel.hasMorePreviews()) {
+            this.cachedModel.loadMorePreviews();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.catalog.close();
+    }
+
+    @Benchmark
+    public Optional<Product> cachedDBModelFind() {
+        return this.cachedModel.find(this.catalog.productCode(this.next++));
+    }
+
+    @Benchmark
+    public Optional<Product> uncachedDBModelFind() {
+        return this.uncachedModel.find(this.catalog.productCode(this.next++));
+    }
+
+    @Benchmark
+    public List<ProductPreview> reloadUnchangedPreviews() {
+        return this.cachedModel.loadPreviews();
+    }
+
+    @Benchmark
+    public Optional<Product> mockedModelFind() {
+        return this.mockedModel.find((int) (this.next++ % 4) + 1);
+    }
+}
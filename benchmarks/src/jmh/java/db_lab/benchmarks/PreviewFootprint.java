@@ -0,0 +1,89 @@
+package db_lab.benchmarks;
+
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+// Measures how much heap a catalog of previews takes, comparing the current
+// `ProductPreview` (canonical tags in interned, dictionary-encoded tag sets)
+// with the way previews used to be stored: each one with its own `HashSet` of
+// freshly allocated `Tag`s, as read from the database.
+//
+// Run it with `./gradlew :benchmarks:footprint`, optionally passing the number
+// of previews with `--args=<previews>` (100 000 by default).
+//
+public final class PreviewFootprint {
+
+    // How previews used to store their tags.
+    private static final class LegacyPreview {
+
+        private final int code;
+        private final String name;
+        private final Set<Tag> tags;
+
+        private LegacyPreview(int code, String name, Set<Tag> tags) {
+            this.code = code;
+            this.name = name;
+            this.tags = Collections.unmodifiableSet(new HashSet<>(tags));
+        }
+    }
+
+    public static void main(String[] args) {
+        var previews = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        var legacy = measure(previews, (code) -> {
+            var tags = tagsOf(code, name -> new Tag(new String(name)));
+            return new LegacyPreview(code, "product " + code, tags);
+        });
+        var compact = measure(previews, (code) -> {
+            var tags = tagsOf(code, name -> Tag.of(new String(name)));
+            return new ProductPreview(code, "product " + code, tags);
+        });
+        System.out.printf("%d previews%n", previews);
+        System.out.printf("  HashSet of fresh tags:           %8.1f MB%n", legacy / 1e6);
+        System.out.printf("  interned dictionary-encoded set: %8.1f MB%n", compact / 1e6);
+        System.out.printf("  reduction:                       %8.1f %%%n", 100.0 * (legacy - compact) / legacy);
+    }
+
+    // The same tags for each product as the benchmarks' `Catalog`: between zero
+    // and three consecutive tags out of twenty.
+    //
+    private static Set<Tag> tagsOf(int code, Function<String, Tag> newTag) {
+        var random = new Random(code);
+        var tagsCount = random.nextInt(4);
+        var firstTag = random.nextInt(Catalog.TAGS - tagsCount);
+        var tags = new HashSet<Tag>();
+        for (int t = 0; t < tagsCount; t++) {
+            tags.add(newTag.apply("tag" + (firstTag + t)));
+        }
+        return tags;
+    }
+
+    private static long measure(int count, IntFunction<Object> newPreview) {
+        var before = usedHeap();
+        var previews = new ArrayList<Object>(count);
+        for (int code = 1; code <= count; code++) {
+            previews.add(newPreview.apply(code));
+        }
+        var after = usedHeap();
+        // Keep the previews alive until after the measurement.
+        if (previews.size() != count) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,66 @@
+package db_lab.benchmarks;
+
+import db_lab.data.Product;
+import db_lab.data.Queries;
+import db_lab.data.QueryMetrics;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+// Measures the overhead of recording the metrics of a query: on its own (from
+// one and from many threads updating the same metrics) and compared with the
+// cost of the simplest instrumented DAO method.
+//
+// Run with the `gc` profiler (it's enabled in `build.gradle.kts`) the
+// recording benchmarks should report `gc.alloc.rate.norm` of 0 bytes/op.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryMetricsBenchmark {
+
+    @Param({ "1000" })
+    public int catalogSize;
+
+    private Catalog catalog;
+    private QueryMetrics metrics;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        this.catalog = Catalog.create(this.catalogSize);
+        this.metrics = QueryMetrics.of(Queries.FIND_PRODUCT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        this.catalog.close();
+    }
+
+    @Benchmark
+    public void record() {
+        this.metrics.record(System.nanoTime(), 1, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordConcurrently() {
+        this.metrics.record(System.nanoTime(), 1, null);
+    }
+
+    @Benchmark
+    public Optional<Product> instrumentedFind() {
+        return Product.DAO.find(this.catalog.connection, this.catalog.productCode(this.next++));
+    }
+}
@@ -0,0 +1,155 @@
+package db_lab.benchmarks;
+
+import db_lab.data.Composition;
+import db_lab.data.DAOUtils;
+import db_lab.data.Material;
+import db_lab.data.Queries;
+import db_lab.data.RowMapper;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+// Compares loading the compositions of the whole catalog the way
+// `Material.DAO.forProducts` used to, with the database joining each row to
+// its material, with the current key-only query whose material codes are
+// looked up in memory. For each one it reports:
+//
+// - the bytes of the rows as MySQL would send them with its text protocol: a
+//   4 bytes header for each row, and each value as text prefixed by its
+//   length. Packet and protocol overheads are left out;
+// - the bytes allocated for each product, client side.
+//
+// H2 already keeps its rows as Java objects, while MySQL's driver decodes a
+// new string for each description it's asked for: the allocations saved with
+// MySQL are even more than the ones reported here.
+//
+// Run it with `./gradlew :benchmarks:referenceData`, optionally passing the
+// size of the catalog with `-PcatalogSize=<products>` (10 000 by default).
+//
+public final class ReferenceDataFootprint {
+
+    // `Queries.PRODUCTS_COMPOSITION_BATCH` before compositions were only
+    // loaded with the codes of their materials.
+    private static final String JOINED_COMPOSITION_BATCH =
+        """
+        select   c.product_code, m.code, m.description, c.percent
+        from     COMPOSITION c
+        join     MATERIAL m on m.code = c.material_code
+        where    c.product_code in (%s)
+        order by c.product_code
+        """.formatted(String.join(", ", Collections.nCopies(Queries.BATCH_SIZE, "?")));
+
+    // How `Material.DAO` used to read the rows of `JOINED_COMPOSITION_BATCH`.
+    private static final RowMapper.Grouping<Composition.Builder, Composition> JOINED_COMPOSITIONS = RowMapper.grouping(
+        "product_code",
+        RowMapper.of((resultSet, columns) -> new Composition.Builder()),
+        RowMapper.children(
+            (composition, resultSet, columns) ->
+                composition.add(
+                    Material.of(resultSet.getInt(columns[0]), resultSet.getString(columns[1])),
+                    resultSet.getFloat(columns[2])
+                ),
+            "code",
+            "description",
+            "percent"
+        ),
+        Composition.Builder::build
+    );
+
+    // Runs before measuring anything, so that the JIT has compiled both ways.
+    private static final int WARM_UP_RUNS = 5;
+
+    public static void main(String[] args) throws SQLException {
+        var catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        try (var catalog = Catalog.create(catalogSize)) {
+            var connection = catalog.connection;
+            System.out.printf("%d products%n", catalogSize);
+            System.out.printf(
+                "  joined with MATERIAL: %8.1f KB sent, %6.0f bytes allocated per product%n",
+                wireBytes(connection, JOINED_COMPOSITION_BATCH, catalogSize) / 1e3,
+                allocatedBytes(() -> loadJoined(connection, catalogSize)) / catalogSize
+            );
+            System.out.printf(
+                "  material codes only:  %8.1f KB sent, %6.0f bytes allocated per product%n",
+                wireBytes(connection, Queries.PRODUCTS_COMPOSITION_BATCH, catalogSize) / 1e3,
+                allocatedBytes(() -> loadKeysOnly(connection, catalogSize)) / catalogSize
+            );
+        }
+    }
+
+    private interface Load {
+        void run() throws SQLException;
+    }
+
+    private static long wireBytes(Connection connection, String query, int catalogSize) throws SQLException {
+        var bytes = 0L;
+        for (var batch : batches(catalogSize)) {
+            try (var statement = connection.prepareStatement(query)) {
+                DAOUtils.bindBatch(statement, batch, Queries.BATCH_SIZE);
+                try (var resultSet = statement.executeQuery()) {
+                    bytes += wireBytes(resultSet);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long wireBytes(ResultSet resultSet) throws SQLException {
+        var columns = resultSet.getMetaData().getColumnCount();
+        var bytes = 0L;
+        while (resultSet.next()) {
+            bytes += 4;
+            for (int i = 1; i <= columns; i++) {
+                var value = resultSet.getString(i);
+                var length = value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+                // Values shorter than 251 bytes have a single byte length.
+                bytes += (length < 251 ? 1 : 3) + length;
+            }
+        }
+        return bytes;
+    }
+
+    private static double allocatedBytes(Load load) throws SQLException {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            load.run();
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var before = threads.getCurrentThreadAllocatedBytes();
+        load.run();
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    private static void loadKeysOnly(Connection connection, int catalogSize) {
+        for (var batch : batches(catalogSize)) {
+            Material.DAO.forProducts(connection, batch);
+        }
+    }
+
+    private static void loadJoined(Connection connection, int catalogSize) throws SQLException {
+        for (var batch : batches(catalogSize)) {
+            try (var statement = connection.prepareStatement(JOINED_COMPOSITION_BATCH)) {
+                DAOUtils.bindBatch(statement, batch, Queries.BATCH_SIZE);
+                try (var resultSet = statement.executeQuery()) {
+                    var compositions = new HashMap<Integer, Composition>();
+                    JOINED_COMPOSITIONS.forEach(resultSet, compositions::put);
+                }
+            }
+        }
+    }
+
+    private static int[][] batches(int catalogSize) {
+        var codes = new int[catalogSize];
+        Arrays.setAll(codes, i -> i + 1);
+        var batches = new int[(catalogSize + Queries.BATCH_SIZE - 1) / Queries.BATCH_SIZE][];
+        for (int i = 0; i < batches.length; i++) {
+            var from = i * Queries.BATCH_SIZE;
+            batches[i] = Arrays.copyOfRange(codes, from, Math.min(catalogSize, from + Queries.BATCH_SIZE));
+        }
+        return batches;
+    }
+}
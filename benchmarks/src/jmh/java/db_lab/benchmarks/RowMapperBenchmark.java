@@ -0,0 +1,120 @@
+package db_lab.benchmarks;
+
+import db_lab.data.ProductPreview;
+import db_lab.data.Queries;
+import db_lab.data.RowMapper;
+import db_lab.data.Tag;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Measures how long it takes to turn the rows of `LIST_PRODUCTS` into
+// previews, reading the columns by name on every row (the way the DAOs used
+// to) or with a `RowMapper` that looks them up once.
+//
+// The rows are read once from H2 and kept in memory, so that only the mapping
+// is measured and not the query.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RowMapperBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    private static final RowMapper.Grouping<Preview, ProductPreview> PREVIEWS = RowMapper.grouping(
+        "code",
+        RowMapper.of(
+            (resultSet, columns) -> new Preview(resultSet.getInt(columns[0]), resultSet.getString(columns[1])),
+            "code",
+            "name"
+        ),
+        RowMapper.children((preview, resultSet, columns) -> preview.add(resultSet.getString(columns[0])), "tag_name"),
+        Preview::build
+    );
+
+    private CachedRowSet rows;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        try (
+            var catalog = Catalog.create(PRODUCTS);
+            var statement = catalog.connection.prepareStatement(Queries.LIST_PRODUCTS);
+            var resultSet = statement.executeQuery();
+        ) {
+            this.rows = RowSetProvider.newFactory().createCachedRowSet();
+            this.rows.populate(resultSet);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTS)
+    public List<ProductPreview> byName() throws SQLException {
+        this.rows.beforeFirst();
+        var previews = new ArrayList<ProductPreview>();
+        var code = 0;
+        String name = null;
+        var tags = new HashSet<Tag>();
+        while (this.rows.next()) {
+            var rowCode = this.rows.getInt("code");
+            if (name != null && rowCode != code) {
+                previews.add(new ProductPreview(code, name, tags));
+                tags.clear();
+            }
+            code = rowCode;
+            name = this.rows.getString("name");
+            var tagName = this.rows.getString("tag_name");
+            if (tagName != null) {
+                tags.add(Tag.of(tagName));
+            }
+        }
+        if (name != null) {
+            previews.add(new ProductPreview(code, name, tags));
+        }
+        return previews;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PRODUCTS)
+    public List<ProductPreview> mapped() throws SQLException {
+        this.rows.beforeFirst();
+        return PREVIEWS.list(this.rows);
+    }
+
+    private static final class Preview {
+
+        private final int code;
+        private final String name;
+        private final List<Tag> tags;
+
+        private Preview(int code, String name) {
+            this.code = code;
+            this.name = name;
+            this.tags = new ArrayList<>(4);
+        }
+
+        private void add(String tagName) {
+            if (tagName != null) {
+                this.tags.add(Tag.of(tagName));
+            }
+        }
+
+        private ProductPreview build() {
+            return new ProductPreview(this.code, this.name, Set.copyOf(this.tags));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package db_lab.benchmarks;
+
+import db_lab.data.ProductPreview;
+import db_lab.data.Tag;
+import db_lab.search.SearchIndex;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Benchmarks searching an in-memory `SearchIndex`.
+//
+// The search doesn't touch the database, so the previews are generated in
+// memory: this way we can try it on catalogs way bigger than the ones used by
+// the database benchmarks. Like `Catalog` each product has a few of 20 tags,
+// and its name is made of two common words and a unique one.
+//
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {
+        "gomitolo",
+        "lana",
+        "merino",
+        "ferri",
+        "uncinetto",
+        "cotone",
+        "seta",
+        "misto",
+        "acrilico",
+        "filato",
+    };
+
+    @Param({ "1000000" })
+    public int products;
+
+    @Param({ "tag1 AND tag2", "tag1 OR tag2 NOT tag3", "(tag1 tag2) OR (tag3 tag4)", "name:gom tag5" })
+    public String query;
+
+    private SearchIndex index;
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        var tags = new ArrayList<Tag>();
+        for (int i = 0; i < 20; i++) {
+            tags.add(new Tag("tag" + i));
+        }
+        var previews = new ArrayList<ProductPreview>(this.products);
+        for (int code = 1; code <= this.products; code++) {
+            var productTags = new HashSet<Tag>();
+            for (int i = random.nextInt(4); i > 0; i--) {
+                productTags.add(tags.get(random.nextInt(tags.size())));
+            }
+            var name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + code;
+            previews.add(new ProductPreview(code, name, productTags));
+        }
+        this.index = SearchIndex.of(previews);
+    }
+
+    @Benchmark
+    public List<ProductPreview> search() {
+        return this.index.search(this.query);
+    }
+
+    // Goes through the results as the preview list would when showing the
+    // first rows.
+    //
+    @Benchmark
+    public int searchAndReadFirstPage() {
+        var results = this.index.search(this.query);
+        var read = 0;
+        for (int i = 0; i < Math.min(results.size(), 100); i++) {
+            read += results.get(i).code;
+        }
+        return read;
+    }
+}
@@ -0,0 +1,185 @@
+package db_lab.benchmarks;
+
+import db_lab.data.ConnectionPool;
+import db_lab.model.DBModel;
+import db_lab.model.Model;
+import db_lab.server.CatalogServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+// Hammers a local `CatalogServer` with requests for the pages of a few popular
+// products, which the server should answer straight from its cache, and
+// reports the requests per second and the latency percentiles.
+//
+// After a warm up, it runs twice: first the clients always ask for the whole
+// page, then they send back the ETag they got so the server can answer
+// `304 Not Modified`.
+//
+//     ./gradlew :benchmarks:serverLoadTest -Pclients=64 -Pseconds=10 -PcatalogSize=10000
+//
+public final class ServerLoadTest {
+
+    // How many different products the clients ask for.
+    private static final int POPULAR_PRODUCTS = 100;
+    private static final int POOL_SIZE = 10;
+
+    public static void main(String[] args) throws Exception {
+        var clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        var duration = Duration.ofSeconds(args.length > 1 ? Integer.parseInt(args[1]) : 10);
+        var catalogSize = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        try (
+            var catalog = Catalog.create(catalogSize);
+            var pool = new ConnectionPool(catalog::newConnection, POOL_SIZE, Duration.ofSeconds(5), Duration.ofMinutes(5));
+        ) {
+            var codes = new int[Math.min(POPULAR_PRODUCTS, catalogSize)];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = catalog.productCode(i * (catalogSize / codes.length));
+            }
+            run(new DBModel(pool), clients, duration, codes);
+        }
+    }
+
+    static void run(Model model, int clients, Duration duration, int[] codes) throws IOException {
+        try (var server = CatalogServer.start(model, new InetSocketAddress("localhost", 0), Duration.ofMinutes(1))) {
+            var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            var base = "http://localhost:" + server.port() + "/products/";
+            // Warms up the server's caches, and gets the ETags to send back.
+            var etags = new HashMap<Integer, String>();
+            for (var code : codes) {
+                var response = send(client, base + code, null);
+                etags.put(code, response.headers().firstValue("ETag").orElse(null));
+            }
+            // Until the JIT has compiled both the server and the clients the
+            // numbers are way off, so the first run isn't reported.
+            load(client, base, codes, etags, clients, duration);
+            System.out.printf(
+                "%d clients, %d s each run, %d popular products%n",
+                clients,
+                duration.toSeconds(),
+                codes.length
+            );
+            System.out.printf(
+                "%-12s %10s %10s %10s %10s  %s%n",
+                "run",
+                "req/s",
+                "p50 ms",
+                "p99 ms",
+                "p999 ms",
+                "statuses"
+            );
+            report("full", load(client, base, codes, Map.of(), clients, duration));
+            report("conditional", load(client, base, codes, etags, clients, duration));
+        }
+    }
+
+    private static Result load(
+        HttpClient client,
+        String base,
+        int[] codes,
+        Map<Integer, String> etags,
+        int clients,
+        Duration duration
+    ) {
+        var runs = new ArrayList<CompletableFuture<Result>>();
+        var start = System.nanoTime();
+        var deadline = start + duration.toNanos();
+        try (var threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                var random = new Random(i);
+                runs.add(
+                    CompletableFuture.supplyAsync(
+                        () -> {
+                            var result = new Result();
+                            while (System.nanoTime() < deadline) {
+                                var code = codes[random.nextInt(codes.length)];
+                                var sent = System.nanoTime();
+                                var status = send(client, base + code, etags.get(code)).statusCode();
+                                result.record(System.nanoTime() - sent, status);
+                            }
+                            return result;
+                        },
+                        threads
+                    )
+                );
+            }
+        }
+        var total = new Result();
+        runs.forEach(run -> total.add(run.join()));
+        total.elapsedNanos = System.nanoTime() - start;
+        return total;
+    }
+
+    private static HttpResponse<byte[]> send(HttpClient client, String url, String etag) {
+        var request = HttpRequest.newBuilder(URI.create(url)).header("Accept-Encoding", "gzip");
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        try {
+            return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void report(String run, Result result) {
+        var sorted = Arrays.copyOf(result.latencies, result.count);
+        Arrays.sort(sorted);
+        System.out.printf(
+            "%-12s %10.0f %10.2f %10.2f %10.2f  %s%n",
+            run,
+            result.count / (result.elapsedNanos / 1e9),
+            percentile(sorted, 0.5) / 1e6,
+            percentile(sorted, 0.99) / 1e6,
+            percentile(sorted, 0.999) / 1e6,
+            result.statuses
+        );
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        var rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static final class Result {
+
+        private long[] latencies = new long[1_024];
+        private int count;
+        private final TreeMap<Integer, Integer> statuses = new TreeMap<>();
+        private long elapsedNanos;
+
+        void record(long latency, int status) {
+            if (this.count == this.latencies.length) {
+                this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+            }
+            this.latencies[this.count++] = latency;
+            this.statuses.merge(status, 1, Integer::sum);
+        }
+
+        void add(Result other) {
+            this.latencies = Arrays.copyOf(this.latencies, Math.max(this.latencies.length, this.count + other.count));
+            System.arraycopy(other.latencies, 0, this.latencies, this.count, other.count);
+            this.count += other.count;
+            other.statuses.forEach((status, count) -> this.statuses.merge(status, count, Integer::sum));
+        }
+    }
+}
@@ -11,4 +11,4 @@ plugins {
 }
 
 rootProject.name = "db_lab"
-include("app")
+include("app", "benchmarks")